@@ -0,0 +1,153 @@
+package possportstore;
+
+import java.util.Arrays;
+
+/**
+ * Finds products by barcode, for scanner input at the register.
+ * <p>
+ * Barcodes are GTINs (EAN-8, UPC-A, EAN-13, GTIN-14): 8 to 14 digits, which fit in a
+ * {@code long}. The index is an open-addressing hash table over a {@code long[]} of
+ * barcodes and a parallel array of products, so a lookup hashes one number and probes
+ * a few adjacent slots, with no string hashing, boxing or allocation. Leading zeros are
+ * not significant, as in the GTIN standard: a UPC-A code and the same code scanned as
+ * EAN-13 find the same product.
+ * </p>
+ * <p>
+ * The index is updated product by product on add and delete. All methods are
+ * synchronized, like the {@link ProductCatalog}.
+ * </p>
+ */
+public class BarcodeIndex {
+
+    /** Barcode value of a product that has none. */
+    public static final long NONE = 0;
+
+    private static final int MIN_DIGITS = 8;
+    private static final int MAX_DIGITS = 14;
+
+    private long[] keys = new long[64];   // NONE marks a free slot
+    private Product[] values = new Product[64];
+    private int size;
+
+    /**
+     * Parses scanned or typed text as a barcode.
+     * @param text The text, e.g. {@code "7401234567895"}.
+     * @return The barcode, or {@link #NONE} if the text is not 8 to 14 digits (or all zeros).
+     */
+    public static long parse(String text) {
+        if (text == null) return NONE;
+        int length = text.length();
+        if (length < MIN_DIGITS || length > MAX_DIGITS) return NONE;
+        long code = 0;
+        for (int i = 0; i < length; i++) {
+            char c = text.charAt(i);
+            if (c < '0' || c > '9') return NONE;
+            code = code * 10 + (c - '0');
+        }
+        return code;
+    }
+
+    /**
+     * Indexes the barcode of a product, if it has one.
+     * @param p The product.
+     * @return false if another product already has the same barcode (nothing changes), true otherwise.
+     */
+    public synchronized boolean add(Product p) {
+        long code = p.getBarcode();
+        if (code == NONE) return true;
+        int slot = slotOf(code);
+        if (keys[slot] == code) return values[slot] == p;
+
+        keys[slot] = code;
+        values[slot] = p;
+        if (++size * 2 > keys.length) resize(keys.length * 2);
+        return true;
+    }
+
+    /**
+     * Removes the barcode of a product from the index.
+     * @param p The product.
+     */
+    public synchronized void remove(Product p) {
+        long code = p.getBarcode();
+        if (code == NONE) return;
+        int slot = slotOf(code);
+        if (keys[slot] != code || values[slot] != p) return;
+
+        // Shift later entries of the same probe run back, so no lookup stops at a hole
+        int mask = keys.length - 1;
+        int hole = slot;
+        for (int i = (hole + 1) & mask; keys[i] != NONE; i = (i + 1) & mask) {
+            int home = hash(keys[i]) & mask;
+            if (((i - home) & mask) >= ((i - hole) & mask)) {
+                keys[hole] = keys[i];
+                values[hole] = values[i];
+                hole = i;
+            }
+        }
+        keys[hole] = NONE;
+        values[hole] = null;
+        size--;
+    }
+
+    /**
+     * Finds the product with a barcode.
+     * @param code The barcode.
+     * @return The product, or null if no product has that barcode.
+     */
+    public synchronized Product find(long code) {
+        if (code == NONE) return null;
+        int slot = slotOf(code);
+        return (keys[slot] == code) ? values[slot] : null;
+    }
+
+    /**
+     * Gets the number of indexed barcodes.
+     * @return The barcode count.
+     */
+    public synchronized int size() { return size; }
+
+    /**
+     * Empties the index.
+     */
+    public synchronized void clear() {
+        Arrays.fill(keys, NONE);
+        Arrays.fill(values, null);
+        size = 0;
+    }
+
+    // --- Internals ---
+
+    /**
+     * Gets the slot holding a barcode, or the free slot where it would go.
+     */
+    private int slotOf(long code) {
+        int mask = keys.length - 1;
+        int slot = hash(code) & mask;
+        while (keys[slot] != NONE && keys[slot] != code) {
+            slot = (slot + 1) & mask;
+        }
+        return slot;
+    }
+
+    private void resize(int capacity) {
+        long[] oldKeys = keys;
+        Product[] oldValues = values;
+        keys = new long[capacity];
+        values = new Product[capacity];
+        for (int i = 0; i < oldKeys.length; i++) {
+            if (oldKeys[i] == NONE) continue;
+            int slot = slotOf(oldKeys[i]);
+            keys[slot] = oldKeys[i];
+            values[slot] = oldValues[i];
+        }
+    }
+
+    /**
+     * Mixes all bits of a barcode, so codes that differ only in their last digits spread out.
+     */
+    private static int hash(long code) {
+        long h = code * 0x9E3779B97F4A7C15L;
+        return (int) (h ^ (h >>> 32));
+    }
+}
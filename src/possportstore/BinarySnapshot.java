@@ -0,0 +1,478 @@
+package possportstore;
+
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.time.Instant;
+import java.time.ZoneId;
+import java.time.ZonedDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.*;
+import java.util.function.Consumer;
+import possportstore.Sale.Invoice;
+import possportstore.Sale.InvoiceItem;
+
+/**
+ * Versioned binary snapshot format for products and invoices.
+ * <p>
+ * A snapshot is a header ({@code magic, version, kind}), a table of the distinct
+ * strings it uses (product IDs and names, cashiers, enum names...) and the records,
+ * which refer to strings by their index in the table. Snapshots of an older version
+ * are still read; they are always written in the current one. Numbers are stored as
+ * fixed-width ints, longs and doubles, and invoice dates as epoch milliseconds, so
+ * loading does no text parsing at all: the file is memory-mapped and read field by
+ * field.
+ * </p>
+ * <p>
+ * Invoice dates are kept in the text form of {@code Date.toString()}. A date is stored
+ * as milliseconds only when formatting those milliseconds gives back exactly the same
+ * text; otherwise (e.g. a date written in another time zone) the text itself goes in
+ * the string table, so a snapshot always converts back to the original text format.
+ * </p>
+ */
+public class BinarySnapshot {
+
+    private static final int MAGIC = 0x50535342; // "PSSB"
+    private static final int VERSION = 4; // 2: products carry a barcode; 3: products snapshots carry a journal generation; 4: invoice amounts in cents
+    private static final byte KIND_PRODUCTS = 1;
+    private static final byte KIND_INVOICES = 2;
+    private static final long DATE_AS_TEXT = Long.MIN_VALUE;
+
+    private static final DateTimeFormatter DATE_FORMAT =
+            DateTimeFormatter.ofPattern("EEE MMM dd HH:mm:ss zzz yyyy", Locale.US);
+
+    /** Journal generation of a products snapshot that does not record one. */
+    public static final long NO_GENERATION = -1;
+
+    private BinarySnapshot() {}
+
+    // --- Products ---
+
+    /**
+     * The products of a snapshot, with the inventory journal generation they include.
+     */
+    public static class ProductsSnapshot {
+        private final List<Product> products;
+        private final long journalGeneration;
+
+        ProductsSnapshot(List<Product> products, long journalGeneration) {
+            this.products = products;
+            this.journalGeneration = journalGeneration;
+        }
+
+        /**
+         * Gets the products.
+         * @return The products, in snapshot order.
+         */
+        public List<Product> getProducts() { return products; }
+
+        /**
+         * Gets the last inventory journal generation whose records the snapshot includes.
+         * @return The generation, or {@link #NO_GENERATION} for a snapshot older than version 3.
+         */
+        public long getJournalGeneration() { return journalGeneration; }
+    }
+
+    /**
+     * Writes the inventory as a binary snapshot, replacing the file atomically.
+     * @param products          The products to write.
+     * @param journalGeneration The last inventory journal generation the products include.
+     * @param file              The snapshot file.
+     * @throws IOException if the file could not be written.
+     */
+    public static void writeProducts(Collection<Product> products, long journalGeneration, File file) throws IOException {
+        StringTable strings = new StringTable();
+        ByteArrayOutputStream body = new ByteArrayOutputStream();
+        DataOutputStream out = new DataOutputStream(body);
+        out.writeLong(journalGeneration);
+
+        int count = 0;
+        for (Product p : products) {
+            if (!(p instanceof Shoe || p instanceof Clothe || p instanceof Accessories)) continue;
+            out.writeInt(strings.indexOf(p.getClass().getSimpleName()));
+            out.writeInt(strings.indexOf(p.getIdProduct()));
+            out.writeInt(strings.indexOf(p.getName()));
+            out.writeInt(strings.indexOf(p.getDescription()));
+            out.writeDouble(p.getPrice());
+            out.writeInt(p.getStock());
+            out.writeInt(p.getReorderLevel());
+            out.writeLong(p.getBarcode());
+            if (p instanceof Shoe s) {
+                out.writeInt(strings.indexOf(s.getSize()));
+                out.writeInt(strings.indexOf(s.getColor()));
+                out.writeInt(strings.indexOf(s.getType().name()));
+            } else if (p instanceof Clothe c) {
+                out.writeInt(strings.indexOf(c.getSize()));
+                out.writeInt(strings.indexOf(c.getColor()));
+                out.writeInt(strings.indexOf(c.getType().name()));
+            } else if (p instanceof Accessories a) {
+                out.writeInt(strings.indexOf(a.getBrand()));
+                out.writeInt(strings.indexOf(a.getType().name()));
+            }
+            count++;
+        }
+        out.flush();
+        writeFile(file, KIND_PRODUCTS, strings, count, body);
+    }
+
+    /**
+     * Reads a binary products snapshot.
+     * @param file The snapshot file.
+     * @return The products, in snapshot order.
+     * @throws IOException if the file is unreadable or not a products snapshot.
+     */
+    public static List<Product> readProducts(File file) throws IOException {
+        return readProductsSnapshot(file).getProducts();
+    }
+
+    /**
+     * Reads a binary products snapshot with the journal generation it includes.
+     * @param file The snapshot file.
+     * @return The products and their journal generation.
+     * @throws IOException if the file is unreadable or not a products snapshot.
+     */
+    public static ProductsSnapshot readProductsSnapshot(File file) throws IOException {
+        ByteBuffer in = mapFile(file);
+        String[] strings = readHeader(in, KIND_PRODUCTS);
+        int version = in.getShort(4); // Right after the magic
+        int count = in.getInt();
+        long journalGeneration = (version >= 3) ? in.getLong() : NO_GENERATION;
+        List<Product> products = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            if (in.remaining() < 4) throw new IOException("Truncated snapshot file");
+            String type = strings[in.getInt()];
+            String id = strings[in.getInt()];
+            String name = strings[in.getInt()];
+            String desc = strings[in.getInt()];
+            double price = in.getDouble();
+            int stock = in.getInt();
+            int reorderLevel = in.getInt();
+            long barcode = (version >= 2) ? in.getLong() : BarcodeIndex.NONE;
+            Product p = switch (type) {
+                case "Shoe" -> new Shoe(id, name, price, stock, desc, strings[in.getInt()], strings[in.getInt()],
+                        Shoe.TypeShoe.valueOf(strings[in.getInt()]));
+                case "Clothe" -> new Clothe(id, name, price, stock, desc, strings[in.getInt()], strings[in.getInt()],
+                        Clothe.TypeClothe.valueOf(strings[in.getInt()]));
+                case "Accessories" -> new Accessories(id, name, price, stock, desc, strings[in.getInt()],
+                        Accessories.TypeAccessories.valueOf(strings[in.getInt()]));
+                default -> throw new IOException("Unknown product type in snapshot: " + type);
+            };
+            p.setReorderLevel(reorderLevel);
+            p.setBarcode(barcode);
+            products.add(p);
+        }
+        return new ProductsSnapshot(products, journalGeneration);
+    }
+
+    // --- Invoices ---
+
+    /**
+     * Writes invoices as a binary snapshot, replacing the file atomically.
+     * @param invoices The invoices to write, in history order.
+     * @param file     The snapshot file.
+     * @throws IOException if the file could not be written.
+     */
+    public static void writeInvoices(List<Invoice> invoices, File file) throws IOException {
+        StringTable strings = new StringTable();
+        ByteArrayOutputStream body = new ByteArrayOutputStream(invoices.size() * 64);
+        DataOutputStream out = new DataOutputStream(body);
+        ZoneId zone = ZoneId.systemDefault();
+
+        for (Invoice invoice : invoices) {
+            out.writeInt(invoice.id);
+            out.writeLong(invoice.totalCents);
+            long millis = toEpochMillis(invoice.date, zone);
+            out.writeLong(millis);
+            if (millis == DATE_AS_TEXT) out.writeInt(strings.indexOf(invoice.date));
+            out.writeInt(strings.indexOf(invoice.cashier));
+            out.writeDouble(invoice.globalDiscount);
+
+            InvoiceItem[] items = (invoice.items != null) ? invoice.items : new InvoiceItem[0];
+            out.writeInt(items.length);
+            for (InvoiceItem item : items) {
+                if (item == null) {
+                    out.writeInt(-1);
+                    continue;
+                }
+                out.writeInt(strings.indexOf(item.productId));
+                out.writeInt(strings.indexOf(item.productName));
+                out.writeInt(item.quantity);
+                out.writeLong(item.lineCents);
+                out.writeDouble(item.discountPercent);
+            }
+        }
+        out.flush();
+        writeFile(file, KIND_INVOICES, strings, invoices.size(), body);
+    }
+
+    /**
+     * Reads a binary invoice snapshot.
+     * @param file    The snapshot file.
+     * @param handler Callback invoked once per invoice, in history order.
+     * @return The number of invoices read.
+     * @throws IOException if the file is unreadable or not an invoice snapshot.
+     */
+    public static int readInvoices(File file, Consumer<Invoice> handler) throws IOException {
+        ByteBuffer in = mapFile(file);
+        String[] strings = readHeader(in, KIND_INVOICES);
+        boolean cents = in.getShort(4) >= 4; // Older versions store amounts as doubles, and unit prices
+        DateText dates = new DateText(ZoneId.systemDefault());
+        int count = in.getInt();
+        for (int i = 0; i < count; i++) {
+            if (in.remaining() < 4) throw new IOException("Truncated snapshot file");
+            int id = in.getInt();
+            long totalCents = cents ? in.getLong() : Money.of(in.getDouble());
+            long millis = in.getLong();
+            String date = (millis == DATE_AS_TEXT) ? strings[in.getInt()] : dates.format(millis);
+            String cashier = strings[in.getInt()];
+            double globalDisc = in.getDouble();
+
+            InvoiceItem[] items = new InvoiceItem[in.getInt()];
+            for (int k = 0; k < items.length; k++) {
+                int productId = in.getInt();
+                if (productId == -1) continue;
+                String productName = strings[in.getInt()];
+                int quantity = in.getInt();
+                long lineCents = cents ? in.getLong() : Money.times(Money.of(in.getDouble()), quantity);
+                items[k] = new InvoiceItem(strings[productId], productName, quantity, lineCents, in.getDouble());
+            }
+            handler.accept(new Invoice(id, totalCents, date, cashier, globalDisc, items));
+        }
+        return count;
+    }
+
+    // --- Text Import / Export ---
+
+    /**
+     * Converts a products text file (the productos.txt format) into a binary snapshot.
+     * @param textFile   The text file, in the platform charset.
+     * @param binaryFile The snapshot file to write.
+     * @throws IOException if either file cannot be accessed.
+     */
+    public static void importProducts(File textFile, File binaryFile) throws IOException {
+        List<Product> products = new ArrayList<>();
+        long journalGeneration = NO_GENERATION;
+        try (RecordReader reader = new RecordReader(textFile, Charset.defaultCharset(), false)) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                if (line.isEmpty()) continue;
+                if (StoreSystem.isGenerationLine(line)) {
+                    journalGeneration = StoreSystem.parseGenerationLine(line);
+                    continue;
+                }
+                Product p = StoreSystem.parseProduct(line);
+                if (p != null) products.add(p);
+            }
+        }
+        writeProducts(products, journalGeneration, binaryFile);
+    }
+
+    /**
+     * Converts a binary products snapshot back into the productos.txt text format.
+     * @param binaryFile The snapshot file.
+     * @param textFile   The text file to write, in the platform charset.
+     * @throws IOException if either file cannot be accessed.
+     */
+    public static void exportProducts(File binaryFile, File textFile) throws IOException {
+        ProductsSnapshot snapshot = readProductsSnapshot(binaryFile);
+        try (PrintWriter writer = new PrintWriter(new OutputStreamWriter(new FileOutputStream(textFile)))) {
+            if (snapshot.getJournalGeneration() != NO_GENERATION) {
+                writer.println(StoreSystem.formatGenerationLine(snapshot.getJournalGeneration()));
+            }
+            for (Product p : snapshot.getProducts()) {
+                writer.println(StoreSystem.formatProduct(p));
+            }
+        }
+    }
+
+    /**
+     * Converts an invoice text file (one invoice line per row) into a binary snapshot.
+     * @param textFile   The text file, in UTF-8.
+     * @param binaryFile The snapshot file to write.
+     * @throws IOException if either file cannot be accessed.
+     */
+    public static void importInvoices(File textFile, File binaryFile) throws IOException {
+        List<Invoice> invoices = new ArrayList<>();
+        try (RecordReader reader = new RecordReader(textFile, StandardCharsets.UTF_8, false)) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                if (line.isEmpty()) continue;
+                try {
+                    Invoice invoice = Sale.parseInvoice(line);
+                    if (invoice != null) invoices.add(invoice);
+                } catch (Exception e) {
+                    System.err.println("Skipping invalid invoice line: " + line);
+                }
+            }
+        }
+        writeInvoices(invoices, binaryFile);
+    }
+
+    /**
+     * Converts a binary invoice snapshot back into the text format, one invoice line per row.
+     * @param binaryFile The snapshot file.
+     * @param textFile   The text file to write, in UTF-8.
+     * @throws IOException if either file cannot be accessed.
+     */
+    public static void exportInvoices(File binaryFile, File textFile) throws IOException {
+        try (Writer writer = new BufferedWriter(new OutputStreamWriter(new FileOutputStream(textFile), StandardCharsets.UTF_8))) {
+            IOException[] failure = {null};
+            readInvoices(binaryFile, invoice -> {
+                if (failure[0] != null) return;
+                try {
+                    writer.write(invoice.toString());
+                    writer.write('\n');
+                } catch (IOException e) {
+                    failure[0] = e;
+                }
+            });
+            if (failure[0] != null) throw failure[0];
+        }
+    }
+
+    /**
+     * Command-line migration tool.
+     * <p>
+     * Usage: {@code BinarySnapshot import-products|export-products|import-invoices|export-invoices <from> <to>}
+     * </p>
+     *
+     * @param args The command and the source and target files.
+     */
+    public static void main(String[] args) {
+        if (args.length != 3) {
+            System.err.println("Usage: BinarySnapshot import-products|export-products|import-invoices|export-invoices <from> <to>");
+            return;
+        }
+        File from = new File(args[1]);
+        File to = new File(args[2]);
+        try {
+            switch (args[0]) {
+                case "import-products" -> importProducts(from, to);
+                case "export-products" -> exportProducts(from, to);
+                case "import-invoices" -> importInvoices(from, to);
+                case "export-invoices" -> exportInvoices(from, to);
+                default -> System.err.println("Unknown command: " + args[0]);
+            }
+        } catch (IOException e) {
+            System.err.println("ERROR converting " + from + ": " + e.getMessage());
+        }
+    }
+
+    // --- Internals ---
+
+    /**
+     * Assigns each distinct string a position in the snapshot's string table.
+     */
+    private static class StringTable {
+        private final Map<String, Integer> indexes = new HashMap<>();
+        private final List<String> strings = new ArrayList<>();
+
+        int indexOf(String s) {
+            String value = (s != null) ? s : "";
+            Integer index = indexes.get(value);
+            if (index == null) {
+                index = strings.size();
+                indexes.put(value, index);
+                strings.add(value);
+            }
+            return index;
+        }
+    }
+
+    private static void writeFile(File file, byte kind, StringTable strings, int count, ByteArrayOutputStream body) throws IOException {
+        File temp = new File(file.getPath() + ".tmp");
+        try (FileOutputStream fos = new FileOutputStream(temp);
+             DataOutputStream out = new DataOutputStream(new BufferedOutputStream(fos, 64 * 1024))) {
+            out.writeInt(MAGIC);
+            out.writeShort(VERSION);
+            out.writeByte(kind);
+            out.writeInt(strings.strings.size());
+            for (String s : strings.strings) {
+                byte[] bytes = s.getBytes(StandardCharsets.UTF_8);
+                out.writeInt(bytes.length);
+                out.write(bytes);
+            }
+            out.writeInt(count);
+            body.writeTo(out);
+            out.flush();
+            fos.getFD().sync();
+        }
+        Files.move(temp.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    private static ByteBuffer mapFile(File file) throws IOException {
+        try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+            return channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+        }
+    }
+
+    private static String[] readHeader(ByteBuffer in, byte kind) throws IOException {
+        try {
+            if (in.getInt() != MAGIC) throw new IOException("Not a snapshot file");
+            int version = in.getShort();
+            if (version < 1 || version > VERSION) throw new IOException("Unsupported snapshot version " + version);
+            if (in.get() != kind) throw new IOException("Wrong snapshot kind");
+
+            String[] strings = new String[in.getInt()];
+            for (int i = 0; i < strings.length; i++) {
+                byte[] bytes = new byte[in.getInt()];
+                in.get(bytes);
+                strings[i] = new String(bytes, StandardCharsets.UTF_8);
+            }
+            return strings;
+        } catch (RuntimeException e) {
+            throw new IOException("Truncated snapshot file", e);
+        }
+    }
+
+    /**
+     * Formats epoch milliseconds as {@code Date.toString()} text, reusing the formatted
+     * minute: consecutive invoices mostly fall in the same minute, so usually only the
+     * seconds change.
+     */
+    private static class DateText {
+        private static final int SECONDS_START = 17; // "EEE MMM dd HH:mm:" is fixed width
+
+        private final ZoneId zone;
+        private long cachedMinute = Long.MIN_VALUE;
+        private String prefix;
+        private String suffix;
+
+        DateText(ZoneId zone) {
+            this.zone = zone;
+        }
+
+        String format(long millis) {
+            long minute = Math.floorDiv(millis, 60_000L);
+            if (minute != cachedMinute) {
+                String text = formatDate(millis, zone);
+                prefix = text.substring(0, SECONDS_START);
+                suffix = text.substring(SECONDS_START + 2);
+                cachedMinute = minute;
+            }
+            int seconds = (int) (Math.floorMod(millis, 60_000L) / 1000);
+            return prefix + (char) ('0' + seconds / 10) + (char) ('0' + seconds % 10) + suffix;
+        }
+    }
+
+    /**
+     * Converts a {@code Date.toString()} text to epoch milliseconds, if it formats back identically.
+     */
+    private static long toEpochMillis(String date, ZoneId zone) {
+        try {
+            long millis = ZonedDateTime.parse(date, DATE_FORMAT).toInstant().toEpochMilli();
+            return formatDate(millis, zone).equals(date) ? millis : DATE_AS_TEXT;
+        } catch (Exception e) {
+            return DATE_AS_TEXT;
+        }
+    }
+
+    private static String formatDate(long millis, ZoneId zone) {
+        return DATE_FORMAT.format(Instant.ofEpochMilli(millis).atZone(zone));
+    }
+}
@@ -0,0 +1,127 @@
+package possportstore;
+
+import possportstore.CurrentSale.CartItem;
+import possportstore.Sale.Invoice;
+
+/**
+ * One checkout, taken from stock and recorded as a single unit.
+ * <p>
+ * The steps are:
+ * </p>
+ * <ol>
+ *   <li>{@link #reserve()} takes every cart line from stock, or none of them;</li>
+ *   <li>the invoice is durably appended to the invoice log, which is the commit point;</li>
+ *   <li>{@link #commit(Invoice)} marks the checkout done, or {@link #rollback()} puts
+ *       the reserved units back if the invoice could not be written.</li>
+ * </ol>
+ * <p>
+ * Once its invoice is in the log a checkout is never lost: the stock change is also
+ * journaled, and {@link StoreSystem} re-applies it from the invoice at startup if that
+ * journal record did not reach the disk.
+ * </p>
+ * <p>
+ * The products and quantities are copied when the checkout starts, so the cashier
+ * may edit or clear the cart while the invoice waits for the disk.
+ * </p>
+ */
+public class CheckoutTransaction {
+
+    /**
+     * Lifecycle of a checkout.
+     */
+    public enum State { OPEN, RESERVED, COMMITTED, ROLLED_BACK }
+
+    private final Product[] products;
+    private final int[] quantities;
+    private State state;
+    private Invoice invoice;
+
+    /**
+     * Starts a checkout for the lines of a cart.
+     * @param items The cart lines.
+     */
+    public CheckoutTransaction(CartItem[] items) {
+        this.products = new Product[items.length];
+        this.quantities = new int[items.length];
+        for (int i = 0; i < items.length; i++) {
+            products[i] = items[i].getProduct();
+            quantities[i] = items[i].getQuantity();
+        }
+        this.state = State.OPEN;
+    }
+
+    /**
+     * Reserves every line from stock, all or nothing.
+     * @throws IllegalArgumentException if a product does not have enough stock; nothing is reserved then.
+     * @throws IllegalStateException if the checkout was already reserved.
+     */
+    public void reserve() {
+        if (state != State.OPEN) throw new IllegalStateException("Checkout already " + state);
+
+        for (int i = 0; i < products.length; i++) {
+            if (!products[i].tryReserve(quantities[i])) {
+                release(i);
+                state = State.ROLLED_BACK;
+                throw new IllegalArgumentException("Insufficient stock for product: " + products[i].getName());
+            }
+        }
+        state = State.RESERVED;
+    }
+
+    /**
+     * Marks the checkout as committed once its invoice has been durably written.
+     * @param invoice The written invoice.
+     */
+    public void commit(Invoice invoice) {
+        if (state != State.RESERVED) throw new IllegalStateException("Checkout not reserved: " + state);
+        this.invoice = invoice;
+        this.state = State.COMMITTED;
+    }
+
+    /**
+     * Puts every reserved unit back into stock. Does nothing unless the checkout is reserved.
+     */
+    public void rollback() {
+        if (state != State.RESERVED) return;
+        release(products.length);
+        state = State.ROLLED_BACK;
+    }
+
+    /**
+     * Gets the number of lines in this checkout.
+     * @return The line count.
+     */
+    public int getLineCount() { return products.length; }
+
+    /**
+     * Gets the product of a line.
+     * @param line The line index.
+     * @return The product.
+     */
+    public Product getProduct(int line) { return products[line]; }
+
+    /**
+     * Gets the quantity of a line, as it was when the checkout started.
+     * @param line The line index.
+     * @return The quantity.
+     */
+    public int getQuantity(int line) { return quantities[line]; }
+
+    /**
+     * Gets the state of this checkout.
+     * @return The {@link State}.
+     */
+    public State getState() { return state; }
+
+    /**
+     * Gets the invoice written for this checkout.
+     * @return The invoice, or null until committed.
+     */
+    public Invoice getInvoice() { return invoice; }
+
+    private void release(int lines) {
+        for (int j = lines - 1; j >= 0; j--) {
+            products[j].release(quantities[j]);
+        }
+    }
+}
@@ -1,10 +1,23 @@
 package possportstore;
 
-import java.util.Arrays;
-import javax.swing.JOptionPane;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
 
 /**
  * Manages the current transaction, including the shopping cart, discounts, and total calculation.
+ * <p>
+ * Cart lines are kept in the order they were added, with no limit on their number, so
+ * wholesale and team orders with hundreds of lines fit. Each line knows its position,
+ * so a screen can find the row of a product, or the line of a row, without walking the
+ * cart. The subtotal is kept running: each change adds the difference it makes to its
+ * own line, so adding or discounting a line costs the same however long the cart is.
+ * </p>
+ * <p>
+ * Amounts are worked out in whole cents with {@link Money}, so the running sums are
+ * exact and always equal a fresh sum of the lines.
+ * </p>
  */
 public class CurrentSale {
 
@@ -15,7 +28,10 @@ public class CurrentSale {
         private Product product;
         private int quantity;
         private double discountPercent; // 0.0 to 1.0 (e.g., 0.10 for 10%)
-        
+        private long subtotalCents;     // What this line adds to the cart subtotal
+        private long listCents;         // What this line adds to the cart's list-price total
+        private int index;              // Position in the cart, in the order lines were added
+
         /**
          * Constructs a CartItem.
          * @param product  The product to add.
@@ -31,30 +47,46 @@ public class CurrentSale {
         public Product getProduct() { return product; }
         /** Gets the quantity. */
         public int getQuantity() { return quantity; }
-        /** Sets the quantity. */
-        public void setQuantity(int quantity) { this.quantity = quantity; }
-        
+        /** Sets the quantity. Changed through the cart, so its subtotal stays right. */
+        void setQuantity(int quantity) { this.quantity = quantity; }
+
         /** Gets the discount percentage for this item (0.0 - 1.0). */
         public double getDiscountPercent() { return discountPercent; }
-        /** Sets the discount percentage. */
-        public void setDiscountPercent(double discountPercent) { this.discountPercent = discountPercent; }
-        
+        /** Sets the discount percentage. Changed through the cart, so its subtotal stays right. */
+        void setDiscountPercent(double discountPercent) { this.discountPercent = discountPercent; }
+
         /** * Calculates the total price for this line item *after* item discount.
          * Note: Global discount is applied later to the subtotal.
          */
         public double getItemSubtotal() {
-            double basePrice = product.getPrice() * quantity;
-            return basePrice * (1.0 - discountPercent); 
+            return Money.toDouble(getItemSubtotalCents());
+        }
+
+        /**
+         * Calculates the total price for this line item after item discount, in cents.
+         * @return The line subtotal in cents.
+         */
+        public long getItemSubtotalCents() {
+            return Money.discount(getListPriceCents(), discountPercent);
+        }
+
+        /**
+         * Calculates the price of this line before any discount, in cents.
+         * @return The list price times the quantity, in cents.
+         */
+        public long getListPriceCents() {
+            return Money.times(Money.of(product.getPrice()), quantity);
         }
     }
-    
-    private static final int MAX_ITEMS = 50; 
-    private CartItem[] items = new CartItem[MAX_ITEMS];
-    private int itemCount = 0;
-    private double currentTotal = 0.0;
+
+    private final Map<String, CartItem> items = new HashMap<>();
+    private final List<CartItem> lines = new ArrayList<>();
+    private long subtotalCents = 0;    // Sum of the line subtotals, kept running
+    private long listCents = 0;        // Sum of the line list prices, kept running
+    private long totalCents = 0;
     private double globalDiscountPercent = 0.0; // 0.0 to 1.0
-    
-    private final User authenticatedUser; 
+
+    private final User authenticatedUser;
 
     /**
      * Initializes a new sale session for a specific user.
@@ -66,56 +98,91 @@ public class CurrentSale {
 
     /** Gets the user performing the sale. */
     public User getAuthenticatedUser() { return authenticatedUser; }
-    
+
     /** Gets the current total after ALL discounts (Item + Global). */
-    public double getCurrentTotal() { return currentTotal; }
-    
+    public double getCurrentTotal() { return Money.toDouble(totalCents); }
+
+    /**
+     * Gets the current total after all discounts, before tax.
+     * @return The total in cents.
+     */
+    public long getCurrentTotalCents() { return totalCents; }
+
+    /**
+     * Gets the total of the cart at list prices, before any discount.
+     * @return The list-price total in cents.
+     */
+    public long getListTotalCents() { return listCents; }
+
     /** Gets the global discount percentage. */
     public double getGlobalDiscountPercent() { return globalDiscountPercent; }
-    
+
     /** Sets the global discount percentage (0.0 to 1.0). */
-    public void setGlobalDiscountPercent(double globalDiscountPercent) { 
+    public void setGlobalDiscountPercent(double globalDiscountPercent) {
         this.globalDiscountPercent = globalDiscountPercent;
         updateTotal();
     }
-    
+
     /**
      * Retrieves the list of items currently in the cart.
-     * @return An array of {@link CartItem}.
+     * @return An array of {@link CartItem}, in the order they were added.
      */
     public CartItem[] getItems() {
-        return Arrays.copyOf(items, itemCount);
+        return lines.toArray(new CartItem[0]);
     }
 
     /**
-     * Adds a product to the cart. 
+     * Gets the number of lines in the cart.
+     * @return The line count.
+     */
+    public int getItemCount() { return items.size(); }
+
+    /**
+     * Finds the cart line of a product.
+     * @param productId The product ID.
+     * @return The line, or null if the product is not in the cart.
+     */
+    public CartItem getItem(String productId) { return items.get(productId); }
+
+    /**
+     * Gets the cart line at a position.
+     * @param index The position, in the order of {@link #getItems()}.
+     * @return The line, or null if the index is out of range.
+     */
+    public CartItem getItem(int index) {
+        return (index >= 0 && index < lines.size()) ? lines.get(index) : null;
+    }
+
+    /**
+     * Finds the position of a product's line.
+     * @param productId The product ID.
+     * @return The position, in the order of {@link #getItems()}, or -1 if the product is not in the cart.
+     */
+    public int indexOf(String productId) {
+        CartItem item = items.get(productId);
+        return (item != null) ? item.index : -1;
+    }
+
+    /**
+     * Adds a product to the cart.
      * If the product exists, updates the quantity.
      *
      * @param product  The product to add.
      * @param quantity The quantity to add.
      */
     public void addItem(Product product, int quantity) {
-        int existingIndex = -1;
-        for (int i = 0; i < itemCount; i++) {
-            if (items[i].getProduct().equals(product)) {
-                existingIndex = i;
-                break;
-            }
-        }
-        
-        if (existingIndex != -1) {
-            items[existingIndex].setQuantity(items[existingIndex].getQuantity() + quantity);
+        CartItem item = items.get(product.getIdProduct());
+        if (item == null) {
+            item = new CartItem(product, quantity);
+            item.index = lines.size();
+            items.put(product.getIdProduct(), item);
+            lines.add(item);
         } else {
-            if (itemCount < MAX_ITEMS) {
-                items[itemCount] = new CartItem(product, quantity);
-                itemCount++;
-            } else {
-                JOptionPane.showMessageDialog(null, "Cart full.", "Error", JOptionPane.ERROR_MESSAGE);
-            }
+            item.setQuantity(item.getQuantity() + quantity);
         }
-        updateTotal();
+        lineChanged(item);
     }
-    
+
     /**
      * Removes one unit of a product from the cart.
      * If quantity reaches zero, the item line is removed entirely.
@@ -123,65 +190,88 @@ public class CurrentSale {
      * @param product The product to remove.
      */
     public void removeItem(Product product) {
-        int indexToRemove = -1;
-        for (int i = 0; i < itemCount; i++) {
-            if (items[i].getProduct().equals(product)) {
-                indexToRemove = i;
-                break;
+        CartItem item = items.get(product.getIdProduct());
+        if (item != null) setItemQuantity(product, item.getQuantity() - 1);
+    }
+
+    /**
+     * Sets the quantity of a product in the cart.
+     * @param product  The product.
+     * @param quantity The new quantity; 0 or less removes the line.
+     */
+    public void setItemQuantity(Product product, int quantity) {
+        CartItem item = items.get(product.getIdProduct());
+        if (item == null) return;
+
+        if (quantity <= 0) {
+            items.remove(product.getIdProduct());
+            lines.remove(item.index);
+            for (int i = item.index; i < lines.size(); i++) {
+                lines.get(i).index = i;
             }
+            subtotalCents -= item.subtotalCents;
+            listCents -= item.listCents;
+            updateTotal();
+        } else {
+            item.setQuantity(quantity);
+            lineChanged(item);
         }
+    }
 
-        if (indexToRemove != -1) {
-            int newQuantity = items[indexToRemove].getQuantity() - 1;
-            
-            if (newQuantity <= 0) {
-                // Shift array to remove item
-                for (int i = indexToRemove; i < itemCount - 1; i++) {
-                    items[i] = items[i + 1];
-                }
-                items[itemCount - 1] = null; 
-                itemCount--;
-            } else {
-                items[indexToRemove].setQuantity(newQuantity);
-            }
+    /**
+     * Applies a discount to a product in the cart.
+     * @param product The product.
+     * @param percent The discount percentage (0.0 - 1.0).
+     */
+    public void setItemDiscount(Product product, double percent) {
+        CartItem item = items.get(product.getIdProduct());
+        if (item != null) {
+            item.setDiscountPercent(percent);
+            lineChanged(item);
         }
-        updateTotal();
     }
-    
+
     /**
      * Applies a discount to a specific item in the cart.
-     * @param index The index of the item.
+     * @param index The index of the item, in the order of {@link #getItems()}.
      * @param percent The discount percentage (0.0 - 1.0).
      */
     public void setItemDiscount(int index, double percent) {
-        if (index >= 0 && index < itemCount) {
-            items[index].setDiscountPercent(percent);
-            updateTotal();
-        }
+        CartItem item = getItem(index);
+        if (item != null) setItemDiscount(item.getProduct(), percent);
+    }
+
+    /**
+     * Moves the running subtotal by the change in one line's subtotal.
+     */
+    private void lineChanged(CartItem item) {
+        long lineSubtotal = item.getItemSubtotalCents();
+        long lineList = item.getListPriceCents();
+        subtotalCents += lineSubtotal - item.subtotalCents;
+        listCents += lineList - item.listCents;
+        item.subtotalCents = lineSubtotal;
+        item.listCents = lineList;
+        updateTotal();
     }
-    
+
     /**
-     * Recalculates the total price of the sale.
+     * Recalculates the total price of the sale from the running subtotal.
      * Formula: Sum(ItemSubtotals) * (1 - GlobalDiscount)
      */
     private void updateTotal() {
-        double subtotal = 0.0;
-        for (int i = 0; i < itemCount; i++) {
-            subtotal += items[i].getItemSubtotal();
-        }
         // Apply global discount to the sum of discounted items
-        currentTotal = subtotal * (1.0 - globalDiscountPercent);
+        totalCents = Money.discount(subtotalCents, globalDiscountPercent);
     }
-    
+
     /**
      * Clears all items and resets discounts.
      */
     public void clear() {
-        for (int i = 0; i < itemCount; i++) {
-            items[i] = null;
-        }
-        itemCount = 0;
+        items.clear();
+        lines.clear();
+        subtotalCents = 0;
+        listCents = 0;
         globalDiscountPercent = 0.0;
-        currentTotal = 0.0;
+        totalCents = 0;
     }
-}
\ No newline at end of file
+}
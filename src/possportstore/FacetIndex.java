@@ -0,0 +1,355 @@
+package possportstore;
+
+import java.util.*;
+
+/**
+ * Bitmap index for browsing the catalog by category, type, size, color and brand.
+ * <p>
+ * Every product gets a fixed position, and every facet value ("RUNNING", size "42",
+ * color "Negro") a bitmap with one bit per position. A query such as "RUNNING shoes,
+ * size 42, in stock" is then an OR of the chosen values within each facet and an AND
+ * across facets, 64 products per machine word. The same words give the live count
+ * shown on each filter chip: how many products would match if that value were also
+ * chosen, with the other facets' choices applied.
+ * </p>
+ * <p>
+ * Bitmaps are plain {@code long} arrays, only as long as the highest position set in
+ * them, so a rare value is small even in a catalog of hundreds of thousands of
+ * products. Positions are never reused, which keeps results in catalog order; a
+ * deleted product only leaves its bits cleared.
+ * </p>
+ * <p>
+ * The index follows the {@link InventoryModel}, so stock changes and new or deleted
+ * products are reflected as they happen. All methods are synchronized, like the
+ * {@link ProductCatalog}.
+ * </p>
+ */
+public class FacetIndex implements InventoryModel.Listener {
+
+    /**
+     * The attributes products can be filtered by.
+     */
+    public enum Facet {
+        CATEGORY, TYPE, SIZE, COLOR, BRAND;
+
+        /**
+         * Gets the value of this facet for a product.
+         * @param p The product.
+         * @return The value, or null if the product does not have this attribute.
+         */
+        public String valueOf(Product p) {
+            String value = switch (this) {
+                case CATEGORY -> {
+                    StoreMetrics.Category category = StoreMetrics.Category.of(p);
+                    yield (category != null) ? category.name() : null;
+                }
+                case TYPE -> (p instanceof Shoe s) ? s.getType().name()
+                           : (p instanceof Clothe c) ? c.getType().name()
+                           : (p instanceof Accessories a) ? a.getType().name() : null;
+                case SIZE -> (p instanceof Shoe s) ? s.getSize() : (p instanceof Clothe c) ? c.getSize() : null;
+                case COLOR -> (p instanceof Shoe s) ? s.getColor() : (p instanceof Clothe c) ? c.getColor() : null;
+                case BRAND -> (p instanceof Accessories a) ? a.getBrand() : null;
+            };
+            if (value == null || value.isBlank()) return null;
+            return value.trim();
+        }
+    }
+
+    /**
+     * The filter chips chosen: any of the chosen values within a facet, all facets together.
+     */
+    public static class Query {
+        private final EnumMap<Facet, Set<String>> selected = new EnumMap<>(Facet.class);
+        private boolean inStockOnly;
+
+        /**
+         * Chooses or un-chooses a facet value.
+         * @param facet The facet.
+         * @param value The value.
+         */
+        public void toggle(Facet facet, String value) {
+            Set<String> values = selected.computeIfAbsent(facet, f -> new TreeSet<>());
+            if (!values.remove(value)) values.add(value);
+            if (values.isEmpty()) selected.remove(facet);
+        }
+
+        /**
+         * Checks whether a facet value is chosen.
+         * @param facet The facet.
+         * @param value The value.
+         * @return true if chosen.
+         */
+        public boolean isSelected(Facet facet, String value) {
+            Set<String> values = selected.get(facet);
+            return values != null && values.contains(value);
+        }
+
+        /**
+         * Checks whether any facet value is chosen.
+         * @return true if the query filters by some facet.
+         */
+        public boolean hasSelection() { return !selected.isEmpty(); }
+
+        /**
+         * Un-chooses every facet value. The in-stock setting is kept.
+         */
+        public void clear() { selected.clear(); }
+
+        /**
+         * Gets whether only products in stock match.
+         * @return true if out-of-stock products are left out.
+         */
+        public boolean isInStockOnly() { return inStockOnly; }
+
+        /**
+         * Sets whether only products in stock match.
+         * @param inStockOnly true to leave out-of-stock products out.
+         */
+        public void setInStockOnly(boolean inStockOnly) { this.inStockOnly = inStockOnly; }
+
+        /**
+         * Checks one product against the query without the index, e.g. for a single changed product.
+         * @param p The product.
+         * @return true if the product matches.
+         */
+        public boolean matches(Product p) {
+            if (inStockOnly && p.getStock() <= 0) return false;
+            for (Map.Entry<Facet, Set<String>> entry : selected.entrySet()) {
+                String value = entry.getKey().valueOf(p);
+                if (value == null || !entry.getValue().contains(value)) return false;
+            }
+            return true;
+        }
+    }
+
+    /**
+     * The products matching a query, with the count of every facet value.
+     */
+    public static class Result {
+        private final List<Product> products;
+        private final EnumMap<Facet, Map<String, Integer>> counts;
+
+        Result(List<Product> products, EnumMap<Facet, Map<String, Integer>> counts) {
+            this.products = products;
+            this.counts = counts;
+        }
+
+        /**
+         * Gets the matching products.
+         * @return The products, in catalog order.
+         */
+        public List<Product> getProducts() { return products; }
+
+        /**
+         * Gets the values of a facet, with how many products each would match if also chosen.
+         * @param facet The facet.
+         * @return The values in sorted order; values with no products are left out unless chosen.
+         */
+        public Map<String, Integer> getCounts(Facet facet) { return counts.get(facet); }
+    }
+
+    private final Map<String, Integer> positions = new HashMap<>();
+    private final List<Product> products = new ArrayList<>();      // By position; null once deleted
+    private final List<String[]> indexedValues = new ArrayList<>(); // By position, one per facet
+    private final EnumMap<Facet, NavigableMap<String, long[]>> bitmaps = new EnumMap<>(Facet.class);
+    private long[] live = new long[0];
+    private long[] inStock = new long[0];
+
+    /**
+     * Creates an empty index.
+     */
+    public FacetIndex() {
+        for (Facet facet : Facet.values()) {
+            bitmaps.put(facet, new TreeMap<>());
+        }
+    }
+
+    /**
+     * Indexes a product, or re-indexes it if it is already known.
+     * @param p The product.
+     */
+    public synchronized void add(Product p) {
+        Integer position = positions.get(p.getIdProduct());
+        if (position != null && products.get(position) == p) {
+            refresh(position, p);
+            return;
+        }
+        if (position != null) remove(products.get(position));
+
+        int newPosition = products.size();
+        positions.put(p.getIdProduct(), newPosition);
+        products.add(p);
+        indexedValues.add(new String[Facet.values().length]);
+        live = set(live, newPosition);
+        refresh(newPosition, p);
+    }
+
+    /**
+     * Removes a product from the index.
+     * @param p The product.
+     */
+    public synchronized void remove(Product p) {
+        Integer position = positions.get(p.getIdProduct());
+        if (position == null || products.get(position) != p) return;
+
+        positions.remove(p.getIdProduct());
+        String[] values = indexedValues.get(position);
+        for (Facet facet : Facet.values()) {
+            unindex(facet, values[facet.ordinal()], position);
+            values[facet.ordinal()] = null;
+        }
+        clear(live, position);
+        clear(inStock, position);
+        products.set(position, null);
+    }
+
+    /**
+     * Finds the products matching a query and counts every facet value.
+     *
+     * @param query The chosen filters.
+     * @return The matching products and the facet counts.
+     */
+    public synchronized Result query(Query query) {
+        long[] base = live.clone();
+        if (query.inStockOnly) and(base, inStock);
+
+        // What each facet with chosen values lets through: the OR of those values
+        EnumMap<Facet, long[]> chosen = new EnumMap<>(Facet.class);
+        for (Map.Entry<Facet, Set<String>> entry : query.selected.entrySet()) {
+            long[] union = new long[base.length];
+            for (String value : entry.getValue()) {
+                long[] bits = bitmaps.get(entry.getKey()).get(value);
+                if (bits != null) or(union, bits);
+            }
+            chosen.put(entry.getKey(), union);
+        }
+
+        long[] matching = base.clone();
+        for (long[] union : chosen.values()) and(matching, union);
+
+        // A value's count applies every other facet's choice, so chips show what choosing it would give
+        EnumMap<Facet, Map<String, Integer>> counts = new EnumMap<>(Facet.class);
+        for (Facet facet : Facet.values()) {
+            long[] mask = matching;
+            if (chosen.containsKey(facet)) {
+                mask = base.clone();
+                for (Map.Entry<Facet, long[]> other : chosen.entrySet()) {
+                    if (other.getKey() != facet) and(mask, other.getValue());
+                }
+            }
+            Map<String, Integer> valueCounts = new LinkedHashMap<>();
+            for (Map.Entry<String, long[]> entry : bitmaps.get(facet).entrySet()) {
+                int count = andCount(entry.getValue(), mask);
+                if (count > 0 || query.isSelected(facet, entry.getKey())) valueCounts.put(entry.getKey(), count);
+            }
+            counts.put(facet, valueCounts);
+        }
+
+        List<Product> result = new ArrayList<>();
+        for (int w = 0; w < matching.length; w++) {
+            for (long word = matching[w]; word != 0; word &= word - 1) {
+                result.add(products.get(w * 64 + Long.numberOfTrailingZeros(word)));
+            }
+        }
+        return new Result(result, counts);
+    }
+
+    /**
+     * Gets the number of indexed products.
+     * @return The product count.
+     */
+    public synchronized int size() { return positions.size(); }
+
+    // --- Inventory Events ---
+
+    @Override
+    public void productAdded(Product product) { add(product); }
+
+    @Override
+    public void productRemoved(Product product) { remove(product); }
+
+    @Override
+    public synchronized void productChanged(Product product) {
+        Integer position = positions.get(product.getIdProduct());
+        if (position != null && products.get(position) == product) refresh(position, product);
+    }
+
+    // --- Internals ---
+
+    /**
+     * Brings the bits of one product up to date with its stock and attributes.
+     */
+    private void refresh(int position, Product p) {
+        if (p.getStock() > 0) {
+            inStock = set(inStock, position);
+        } else {
+            clear(inStock, position);
+        }
+
+        String[] values = indexedValues.get(position);
+        for (Facet facet : Facet.values()) {
+            String value = facet.valueOf(p);
+            String old = values[facet.ordinal()];
+            if (Objects.equals(value, old)) continue;
+            unindex(facet, old, position);
+            if (value != null) {
+                NavigableMap<String, long[]> facetValues = bitmaps.get(facet);
+                facetValues.put(value, set(facetValues.getOrDefault(value, new long[0]), position));
+            }
+            values[facet.ordinal()] = value;
+        }
+    }
+
+    private void unindex(Facet facet, String value, int position) {
+        if (value == null) return;
+        NavigableMap<String, long[]> values = bitmaps.get(facet);
+        long[] bits = values.get(value);
+        if (bits == null) return;
+        clear(bits, position);
+        if (isEmpty(bits)) values.remove(value);
+    }
+
+    /**
+     * Sets a bit, growing the bitmap if needed; the caller keeps the returned array.
+     */
+    private static long[] set(long[] bits, int position) {
+        int word = position >>> 6;
+        if (word >= bits.length) {
+            bits = Arrays.copyOf(bits, Math.max(word + 1, bits.length + (bits.length >> 1)));
+        }
+        bits[word] |= 1L << position;
+        return bits;
+    }
+
+    private static void clear(long[] bits, int position) {
+        int word = position >>> 6;
+        if (word < bits.length) bits[word] &= ~(1L << position);
+    }
+
+    private static boolean isEmpty(long[] bits) {
+        for (long word : bits) {
+            if (word != 0) return false;
+        }
+        return true;
+    }
+
+    /** Keeps in {@code target} only the bits also in {@code bits}. */
+    private static void and(long[] target, long[] bits) {
+        int shared = Math.min(target.length, bits.length);
+        for (int i = 0; i < shared; i++) target[i] &= bits[i];
+        Arrays.fill(target, shared, target.length, 0);
+    }
+
+    /** Adds to {@code target} the bits of {@code bits} that fit in it. */
+    private static void or(long[] target, long[] bits) {
+        int shared = Math.min(target.length, bits.length);
+        for (int i = 0; i < shared; i++) target[i] |= bits[i];
+    }
+
+    private static int andCount(long[] a, long[] b) {
+        int shared = Math.min(a.length, b.length);
+        int count = 0;
+        for (int i = 0; i < shared; i++) count += Long.bitCount(a[i] & b[i]);
+        return count;
+    }
+}
@@ -0,0 +1,264 @@
+package possportstore;
+
+/**
+ * Regex-free tokenizer over one delimited record line.
+ * <p>
+ * Walks the line from left to right; each {@code next...} call reads the field up to
+ * the given delimiter (or the end of the line) and moves past it. Numbers are parsed
+ * straight from the characters, so only String fields allocate. Used in place of
+ * {@code String.split} for products ({@code ;}), invoices ({@code ;}, {@code |},
+ * {@code :}) and users.
+ * </p>
+ */
+public class FieldCursor {
+
+    // Powers of ten that are exact doubles, for the fast decimal path
+    private static final double[] POWERS_OF_TEN = {
+        1e0, 1e1, 1e2, 1e3, 1e4, 1e5, 1e6, 1e7, 1e8, 1e9, 1e10,
+        1e11, 1e12, 1e13, 1e14, 1e15, 1e16, 1e17, 1e18, 1e19, 1e20, 1e21, 1e22
+    };
+    private static final long MAX_EXACT_MANTISSA = 1L << 53;
+
+    private String line;
+    private int position;
+    private int end;
+    private char delimiter;
+
+    /**
+     * Creates a cursor at the start of a line.
+     * @param line The record line.
+     */
+    public FieldCursor(String line) {
+        reset(line);
+    }
+
+    /**
+     * Moves the cursor to the start of another line, so one cursor can be reused per file.
+     * @param line The record line.
+     */
+    public void reset(String line) {
+        this.line = line;
+        this.position = 0;
+        this.end = line.length();
+        this.delimiter = 0;
+    }
+
+    /**
+     * Checks whether any characters remain after the last field read.
+     * @return true if there is another field.
+     */
+    public boolean hasNext() { return position < end; }
+
+    /**
+     * Gets the delimiter that ended the last field read.
+     * @return The delimiter, or 0 if the field ran to the end of the line.
+     */
+    public char getDelimiter() { return delimiter; }
+
+    /**
+     * Reads the next field as a String.
+     * @param sep The field delimiter.
+     * @return The field text (empty if the field is empty or the line is exhausted).
+     */
+    public String nextString(char sep) {
+        return nextString(sep, sep);
+    }
+
+    /**
+     * Reads the next field as a String, ending at either of two delimiters.
+     * @param sep The field delimiter.
+     * @param alt An alternative delimiter, e.g. the end of an enclosing group.
+     * @return The field text.
+     */
+    public String nextString(char sep, char alt) {
+        int from = position;
+        int to = fieldEnd(sep, alt);
+        return line.substring(from, to);
+    }
+
+    /**
+     * Reads the next field as an int.
+     * @param sep The field delimiter.
+     * @return The value.
+     * @throws NumberFormatException if the field is not a valid int.
+     */
+    public int nextInt(char sep) {
+        return nextInt(sep, sep);
+    }
+
+    /**
+     * Reads the next field as an int, ending at either of two delimiters.
+     * @param sep The field delimiter.
+     * @param alt An alternative delimiter.
+     * @return The value.
+     * @throws NumberFormatException if the field is not a valid int.
+     */
+    public int nextInt(char sep, char alt) {
+        int from = position;
+        int to = fieldEnd(sep, alt);
+        long value = parseLong(from, to);
+        if (value < Integer.MIN_VALUE || value > Integer.MAX_VALUE) throw invalid(from, to);
+        return (int) value;
+    }
+
+    /**
+     * Reads the next field as a long.
+     * @param sep The field delimiter.
+     * @return The value.
+     * @throws NumberFormatException if the field is not a valid long of up to 18 digits.
+     */
+    public long nextLong(char sep) {
+        return nextLong(sep, sep);
+    }
+
+    /**
+     * Reads the next field as a long, ending at either of two delimiters.
+     * @param sep The field delimiter.
+     * @param alt An alternative delimiter.
+     * @return The value.
+     * @throws NumberFormatException if the field is not a valid long of up to 18 digits.
+     */
+    public long nextLong(char sep, char alt) {
+        int from = position;
+        int to = fieldEnd(sep, alt);
+        return parseLong(from, to);
+    }
+
+    /**
+     * Reads the next field as a double.
+     * @param sep The field delimiter.
+     * @return The value.
+     * @throws NumberFormatException if the field is not a valid number.
+     */
+    public double nextDouble(char sep) {
+        return nextDouble(sep, sep);
+    }
+
+    /**
+     * Reads the next field as a double, ending at either of two delimiters.
+     * <p>
+     * Plain decimals such as {@code 55000.0} are converted without allocating; the
+     * result is exact because mantissa and power of ten are both exact doubles.
+     * Anything else (exponents, very long numbers) goes through {@link Double#parseDouble}.
+     * </p>
+     *
+     * @param sep The field delimiter.
+     * @param alt An alternative delimiter.
+     * @return The value.
+     * @throws NumberFormatException if the field is not a valid number.
+     */
+    public double nextDouble(char sep, char alt) {
+        int from = position;
+        int to = fieldEnd(sep, alt);
+
+        int i = from;
+        boolean negative = false;
+        if (i < to && (line.charAt(i) == '-' || line.charAt(i) == '+')) {
+            negative = line.charAt(i) == '-';
+            i++;
+        }
+        long mantissa = 0;
+        int digits = 0;
+        int fractionDigits = -1;
+        for (; i < to; i++) {
+            char c = line.charAt(i);
+            if (c >= '0' && c <= '9') {
+                mantissa = mantissa * 10 + (c - '0');
+                digits++;
+                if (fractionDigits >= 0) fractionDigits++;
+                if (mantissa >= MAX_EXACT_MANTISSA) break;
+            } else if (c == '.' && fractionDigits < 0) {
+                fractionDigits = 0;
+            } else {
+                break;
+            }
+        }
+        if (i == to && digits > 0 && mantissa < MAX_EXACT_MANTISSA && fractionDigits < POWERS_OF_TEN.length) {
+            double value = (fractionDigits > 0) ? mantissa / POWERS_OF_TEN[fractionDigits] : (double) mantissa;
+            return negative ? -value : value;
+        }
+        return Double.parseDouble(line.substring(from, to));
+    }
+
+    /**
+     * Counts the groups left in the line, e.g. the invoice items separated by {@code '|'}.
+     * @param sep The group delimiter.
+     * @return The number of groups from the cursor to the end of the line, 0 if none remain.
+     */
+    public int countRemaining(char sep) {
+        if (position >= end) return 0;
+        int count = 1;
+        for (int i = position; i < end; i++) {
+            if (line.charAt(i) == sep) count++;
+        }
+        return count;
+    }
+
+    /**
+     * Gets the current position, to return to later with {@link #rewind(int)}.
+     * @return The position.
+     */
+    public int mark() { return position; }
+
+    /**
+     * Returns to a position obtained from {@link #mark()}.
+     * @param mark The position.
+     */
+    public void rewind(int mark) {
+        this.position = mark;
+        this.delimiter = 0;
+    }
+
+    /**
+     * Skips the rest of the current group, up to and past the next occurrence of a delimiter.
+     * @param sep The delimiter.
+     */
+    public void skipPast(char sep) {
+        if (delimiter == sep) return;
+        fieldEnd(sep, sep);
+    }
+
+    // --- Internals ---
+
+    /**
+     * Finds the end of the current field and moves past its delimiter.
+     * @return The index just after the field's last character.
+     */
+    private int fieldEnd(char sep, char alt) {
+        int i = position;
+        while (i < end) {
+            char c = line.charAt(i);
+            if (c == sep || c == alt) {
+                delimiter = c;
+                position = i + 1;
+                return i;
+            }
+            i++;
+        }
+        delimiter = 0;
+        position = end;
+        return end;
+    }
+
+    private long parseLong(int from, int to) {
+        int i = from;
+        boolean negative = false;
+        if (i < to && (line.charAt(i) == '-' || line.charAt(i) == '+')) {
+            negative = line.charAt(i) == '-';
+            i++;
+        }
+        if (i == to || to - i > 18) throw invalid(from, to);
+
+        long value = 0;
+        for (; i < to; i++) {
+            char c = line.charAt(i);
+            if (c < '0' || c > '9') throw invalid(from, to);
+            value = value * 10 + (c - '0');
+        }
+        return negative ? -value : value;
+    }
+
+    private NumberFormatException invalid(int from, int to) {
+        return new NumberFormatException("For input string: \"" + line.substring(from, to) + "\"");
+    }
+}
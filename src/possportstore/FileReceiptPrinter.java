@@ -0,0 +1,57 @@
+package possportstore;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Printer stand-in that appends every receipt to a text file.
+ * <p>
+ * Lets the store run and the {@link PrintQueue} be measured without a receipt printer
+ * attached. An optional delay per receipt imitates the speed of a real thermal printer.
+ * </p>
+ */
+public class FileReceiptPrinter implements ReceiptPrinter {
+
+    private static final byte[] SEPARATOR = "\n========================================\n\n".getBytes(StandardCharsets.UTF_8);
+
+    private final File file;
+    private final long delayMs;
+
+    /**
+     * Creates a printer that writes as fast as the disk allows.
+     * @param file The file receipts are appended to.
+     */
+    public FileReceiptPrinter(File file) {
+        this(file, 0);
+    }
+
+    /**
+     * Creates a printer that takes some time per receipt, like a physical printer.
+     * @param file    The file receipts are appended to.
+     * @param delayMs The time each receipt takes, in milliseconds.
+     */
+    public FileReceiptPrinter(File file, long delayMs) {
+        this.file = file;
+        this.delayMs = delayMs;
+    }
+
+    @Override
+    public void print(int invoiceId, byte[] receipt) throws IOException {
+        if (delayMs > 0) {
+            try {
+                Thread.sleep(delayMs);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new InterruptedIOException("Interrupted while printing invoice " + invoiceId);
+            }
+        }
+        try (OutputStream out = new FileOutputStream(file, true)) {
+            out.write(receipt);
+            out.write(SEPARATOR);
+        }
+    }
+}
@@ -0,0 +1,122 @@
+package possportstore;
+
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+/**
+ * Observable inventory: tells views which products were added, removed or changed.
+ * <p>
+ * The model listens to the stock of every product in the catalog and passes each
+ * change on to the {@link LowStockTracker} and then to its own listeners, naming only
+ * the product concerned. A view can therefore update the one entry a sale or a return
+ * touched instead of reloading the whole catalog.
+ * </p>
+ * <p>
+ * Notifications arrive on whichever thread made the change (a register, the invoice
+ * writer, the store I/O thread); Swing listeners must move to the Event Dispatch
+ * Thread themselves.
+ * </p>
+ */
+public class InventoryModel implements StockListener {
+
+    /**
+     * Receives notice of changes to the inventory.
+     */
+    public interface Listener {
+        /**
+         * Called after a product was added to the catalog.
+         * @param product The product.
+         */
+        void productAdded(Product product);
+
+        /**
+         * Called after a product was deleted from the catalog.
+         * @param product The product.
+         */
+        void productRemoved(Product product);
+
+        /**
+         * Called after the stock or another attribute of a product changed.
+         * @param product The product, to be read again for its current values.
+         */
+        void productChanged(Product product);
+    }
+
+    private final LowStockTracker lowStockTracker;
+    private final List<Listener> listeners = new CopyOnWriteArrayList<>();
+
+    /**
+     * Creates the model.
+     * @param lowStockTracker The tracker kept up to date with every stock change.
+     */
+    public InventoryModel(LowStockTracker lowStockTracker) {
+        this.lowStockTracker = lowStockTracker;
+    }
+
+    /**
+     * Starts observing a product that is already in the catalog, e.g. at startup.
+     * @param p The product.
+     */
+    void track(Product p) {
+        p.setStockListener(this);
+        lowStockTracker.refresh(p);
+    }
+
+    /**
+     * Starts observing a newly added product and announces it.
+     * @param p The product.
+     */
+    void productAdded(Product p) {
+        track(p);
+        for (Listener listener : listeners) {
+            listener.productAdded(p);
+        }
+    }
+
+    /**
+     * Stops observing a deleted product and announces it.
+     * @param p The product.
+     */
+    void productRemoved(Product p) {
+        p.setStockListener(null);
+        lowStockTracker.untrack(p);
+        for (Listener listener : listeners) {
+            listener.productRemoved(p);
+        }
+    }
+
+    /**
+     * Announces a change to a product other than its stock, e.g. its reorder level.
+     * @param p The product.
+     */
+    void productChanged(Product p) {
+        lowStockTracker.refresh(p);
+        notifyChanged(p);
+    }
+
+    @Override
+    public void stockChanged(Product product, int oldStock, int newStock) {
+        lowStockTracker.stockChanged(product, oldStock, newStock);
+        notifyChanged(product);
+    }
+
+    // --- Listeners ---
+
+    /**
+     * Registers an inventory listener.
+     * @param listener The listener.
+     */
+    public void addListener(Listener listener) { listeners.add(listener); }
+
+    /**
+     * Unregisters an inventory listener.
+     * @param listener The listener.
+     */
+    public void removeListener(Listener listener) { listeners.remove(listener); }
+
+    private void notifyChanged(Product p) {
+        for (Listener listener : listeners) {
+            listener.productChanged(p);
+        }
+    }
+}
@@ -0,0 +1,95 @@
+package possportstore;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.StandardOpenOption;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Read-only, memory-mapped view of the closed invoice segments.
+ * <p>
+ * A closed segment never changes, so it can be mapped once and read at any byte
+ * offset without a file read or a buffer copy. Together with the segment's
+ * {@link InvoiceIndex} (invoice ID to byte offset), this reaches any old invoice by
+ * decoding just its own line; the rest of the segment stays in the page cache of the
+ * operating system and never reaches the heap.
+ * </p>
+ * <p>
+ * Only the most recently used mappings are kept; the others are dropped and mapped
+ * again on the next access.
+ * </p>
+ */
+public class InvoiceArchive {
+
+    private static final int MAX_MAPPED_SEGMENTS = 32;
+
+    private final File directory;
+    private final Map<String, MappedByteBuffer> mappings;
+
+    /**
+     * Creates an archive over the segment files of a log directory.
+     * @param directory The invoice log directory.
+     */
+    public InvoiceArchive(File directory) {
+        this.directory = directory;
+        this.mappings = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, MappedByteBuffer> eldest) {
+                return size() > MAX_MAPPED_SEGMENTS;
+            }
+        };
+    }
+
+    /**
+     * Reads the line starting at a byte offset of a closed segment.
+     *
+     * @param segmentName The segment file name.
+     * @param offset      The byte offset of the line, as recorded in the segment's index.
+     * @return The line without its terminator, or null if the offset is past the last complete line.
+     * @throws IOException if the segment cannot be mapped.
+     */
+    public synchronized String readLine(String segmentName, long offset) throws IOException {
+        MappedByteBuffer buffer = map(segmentName);
+        if (offset < 0 || offset >= buffer.limit()) return null;
+
+        int start = (int) offset;
+        int end = start;
+        while (end < buffer.limit() && buffer.get(end) != '\n') end++;
+        if (end == buffer.limit()) return null; // Torn tail, never a complete invoice
+
+        int length = end - start;
+        if (length > 0 && buffer.get(end - 1) == '\r') length--;
+        byte[] bytes = new byte[length];
+        buffer.get(start, bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Drops every mapping, e.g. when the log is reopened.
+     */
+    public synchronized void clear() {
+        mappings.clear();
+    }
+
+    // --- Internals ---
+
+    private MappedByteBuffer map(String segmentName) throws IOException {
+        MappedByteBuffer buffer = mappings.get(segmentName);
+        if (buffer != null) return buffer;
+
+        File file = new File(directory, segmentName);
+        try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+            long size = channel.size();
+            if (size > Integer.MAX_VALUE) {
+                throw new IOException("Segment too large to map: " + segmentName);
+            }
+            buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, size);
+        }
+        mappings.put(segmentName, buffer);
+        return buffer;
+    }
+}
@@ -0,0 +1,154 @@
+package possportstore;
+
+import java.io.*;
+import java.util.Arrays;
+
+/**
+ * Primary-key index of the invoices in one log segment.
+ * <p>
+ * Maps an invoice ID to its line number and byte offset within the segment file.
+ * Invoice IDs inside a segment form a dense range, so the index is a pair of
+ * primitive arrays addressed directly by {@code id - firstId}: lookups are constant
+ * time and cost 12 bytes per invoice, with no boxing.
+ * </p>
+ * <p>
+ * The index of a closed segment is saved next to it in a {@code .idx} file, so it
+ * can be loaded without reading the segment itself.
+ * </p>
+ */
+public class InvoiceIndex {
+
+    private static final int FILE_MAGIC = 0x49445831; // "IDX1"
+
+    private int firstId;
+    private int[] lines;
+    private long[] offsets;
+    private int count;
+
+    /**
+     * Creates an empty index.
+     */
+    public InvoiceIndex() {
+        this.lines = new int[0];
+        this.offsets = new long[0];
+    }
+
+    /**
+     * Gets the number of invoices indexed.
+     * @return The entry count.
+     */
+    public int size() { return count; }
+
+    /**
+     * Adds an invoice to the index.
+     *
+     * @param id     The invoice ID.
+     * @param line   The line number of the invoice within the segment.
+     * @param offset The byte offset of the invoice line within the segment file.
+     */
+    public void add(int id, int line, long offset) {
+        if (count == 0 && lines.length == 0) {
+            firstId = id;
+        }
+        if (id < firstId) {
+            rebase(id);
+        }
+        int slot = id - firstId;
+        if (slot >= lines.length) {
+            grow(slot + 1);
+        }
+        if (lines[slot] == -1) count++;
+        lines[slot] = line;
+        offsets[slot] = offset;
+    }
+
+    /**
+     * Gets the line number of an invoice.
+     * @param id The invoice ID.
+     * @return The line number, or -1 if the invoice is not in this segment.
+     */
+    public int lineOf(int id) {
+        int slot = id - firstId;
+        return (slot < 0 || slot >= lines.length) ? -1 : lines[slot];
+    }
+
+    /**
+     * Gets the byte offset of an invoice.
+     * @param id The invoice ID.
+     * @return The byte offset, or -1 if the invoice is not in this segment.
+     */
+    public long offsetOf(int id) {
+        int slot = id - firstId;
+        return (slot < 0 || slot >= lines.length || lines[slot] == -1) ? -1 : offsets[slot];
+    }
+
+    // --- Persistence ---
+
+    /**
+     * Saves the index to a file, through a temporary file so a crash never leaves a partial index.
+     * @param file The index file.
+     * @throws IOException if the file could not be written.
+     */
+    public void write(File file) throws IOException {
+        File temp = new File(file.getPath() + ".tmp");
+        try (FileOutputStream fos = new FileOutputStream(temp);
+             DataOutputStream out = new DataOutputStream(new BufferedOutputStream(fos))) {
+            out.writeInt(FILE_MAGIC);
+            out.writeInt(count);
+            for (int slot = 0; slot < lines.length; slot++) {
+                if (lines[slot] == -1) continue;
+                out.writeInt(firstId + slot);
+                out.writeInt(lines[slot]);
+                out.writeLong(offsets[slot]);
+            }
+            out.flush();
+            fos.getFD().sync();
+        }
+        java.nio.file.Files.move(temp.toPath(), file.toPath(),
+                java.nio.file.StandardCopyOption.REPLACE_EXISTING, java.nio.file.StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    /**
+     * Loads an index saved with {@link #write(File)}.
+     * @param file The index file.
+     * @return The index, or null if the file is missing or unreadable.
+     */
+    public static InvoiceIndex read(File file) {
+        if (!file.exists()) return null;
+
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(file)))) {
+            if (in.readInt() != FILE_MAGIC) return null;
+            int entries = in.readInt();
+            InvoiceIndex index = new InvoiceIndex();
+            for (int i = 0; i < entries; i++) {
+                index.add(in.readInt(), in.readInt(), in.readLong());
+            }
+            return index;
+        } catch (IOException e) {
+            System.err.println("ERROR reading invoice index " + file.getName() + ": " + e.getMessage());
+            return null;
+        }
+    }
+
+    // --- Internals ---
+
+    private void grow(int minLength) {
+        int oldLength = lines.length;
+        int newLength = Math.max(minLength, Math.max(16, oldLength + (oldLength >> 1)));
+        lines = Arrays.copyOf(lines, newLength);
+        offsets = Arrays.copyOf(offsets, newLength);
+        Arrays.fill(lines, oldLength, newLength, -1);
+    }
+
+    private void rebase(int newFirstId) {
+        int shift = firstId - newFirstId;
+        int[] newLines = new int[lines.length + shift];
+        long[] newOffsets = new long[offsets.length + shift];
+        Arrays.fill(newLines, 0, shift, -1);
+        System.arraycopy(lines, 0, newLines, shift, lines.length);
+        System.arraycopy(offsets, 0, newOffsets, shift, offsets.length);
+        lines = newLines;
+        offsets = newOffsets;
+        firstId = newFirstId;
+    }
+}
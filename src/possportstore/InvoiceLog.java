@@ -0,0 +1,763 @@
+package possportstore;
+
+import java.io.*;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDate;
+import java.time.format.DateTimeFormatter;
+import java.util.*;
+import java.util.function.Consumer;
+
+/**
+ * Append-only, segmented storage for sales invoices.
+ * <p>
+ * Each invoice is appended as one line to a dated segment file inside the log
+ * directory ({@code invoices-yyyyMMdd.log}), and a new segment is started when the
+ * date changes. Returns are appended as adjustment records to a separate returns log,
+ * so a segment never changes once it is closed. Closed segments are listed, in order,
+ * in a manifest together with their invoice ID range, which lets startup skip
+ * segments it does not need without opening them.
+ * </p>
+ * <p>
+ * Every append is fsynced before it returns, and a line torn by a crash is dropped
+ * when the file is next opened. If a failed append cannot be cut off the open segment,
+ * the segment is sealed with the length of its good records, which readers stop at,
+ * and a new segment is started for the same day ({@code invoices-yyyyMMdd_1.log}).
+ * </p>
+ * <p>
+ * Each segment has an {@link InvoiceIndex} from invoice ID to byte offset. The open
+ * segment's index is kept in memory as invoices are appended and is written to a
+ * {@code .idx} file when the segment is sealed; indexes of closed segments are loaded
+ * from those files on first use, so finding an invoice never scans the history.
+ * </p>
+ * <p>
+ * A sealed segment is also saved as a {@link BinarySnapshot} ({@code .bin}), which
+ * full-history scans read instead of parsing the text. The text segment stays the
+ * source of truth; the binary copy is rebuilt from it if missing.
+ * </p>
+ * <p>
+ * Its sales totals are saved too, as a {@link SalesSummary} ({@code .sum}), so the
+ * dashboard aggregates are built at startup without reading closed segments.
+ * </p>
+ * <p>
+ * Single invoices in closed segments are read through a memory-mapped
+ * {@link InvoiceArchive}, so an old invoice is reached without reading the segment.
+ * </p>
+ */
+public class InvoiceLog {
+
+    /**
+     * Callback for invoice lines read from a segment, with their byte position.
+     */
+    @FunctionalInterface
+    public interface LineHandler {
+        /**
+         * Receives one complete line.
+         * @param offset The byte offset of the line within the segment file.
+         * @param line   The line text.
+         */
+        void accept(long offset, String line);
+    }
+
+    /**
+     * Where an invoice is stored: its segment, its position in the history and its byte offset.
+     */
+    public static class Location {
+        public final Segment segment;
+        public final int segmentIndex;
+        public final int position;
+        public final long offset;
+
+        Location(Segment segment, int segmentIndex, int position, long offset) {
+            this.segment = segment;
+            this.segmentIndex = segmentIndex;
+            this.position = position;
+            this.offset = offset;
+        }
+    }
+
+    /**
+     * Summary of one segment file: its name and the range of invoice IDs it holds.
+     */
+    public static class Segment {
+        public final String name;
+        private int firstId;
+        private int lastId;
+        private int count;
+        private int startPosition;
+        private long length = -1; // Byte length of the records if the file holds more after them
+
+        public Segment(String name, int firstId, int lastId, int count) {
+            this.name = name;
+            this.firstId = firstId;
+            this.lastId = lastId;
+            this.count = count;
+        }
+
+        public int getFirstId() { return firstId; }
+        public int getLastId() { return lastId; }
+        public int getCount() { return count; }
+
+        /**
+         * Gets the history position of the first invoice in this segment.
+         * @return The position (0 = oldest invoice in the log).
+         */
+        public int getStartPosition() { return startPosition; }
+
+        /**
+         * Gets where the segment's records end.
+         * @return The byte length of the records, or -1 if they run to the end of the file.
+         */
+        public long getLength() { return length; }
+
+        /**
+         * Records an invoice ID as part of this segment.
+         * @param id The invoice ID.
+         */
+        private void track(int id) {
+            if (count == 0 || id < firstId) firstId = id;
+            if (id > lastId) lastId = id;
+            count++;
+        }
+
+        /**
+         * Records an unreadable line, which still occupies a position in the segment.
+         */
+        private void trackInvalid() {
+            count++;
+        }
+
+        /**
+         * Formats the segment for the manifest.
+         * Format: name;firstId;lastId;count[;length]
+         */
+        @Override
+        public String toString() {
+            String line = name + ";" + firstId + ";" + lastId + ";" + count;
+            return (length >= 0) ? line + ";" + length : line;
+        }
+
+        /**
+         * Parses a manifest line.
+         * @param line The manifest line.
+         * @return The segment summary.
+         */
+        public static Segment parse(String line) {
+            String[] data = line.split(";");
+            Segment segment = new Segment(data[0], Integer.parseInt(data[1]), Integer.parseInt(data[2]), Integer.parseInt(data[3]));
+            if (data.length > 4) segment.length = Long.parseLong(data[4]);
+            return segment;
+        }
+    }
+
+    private static final String SEGMENT_PREFIX = "invoices-";
+    private static final String SEGMENT_SUFFIX = ".log";
+    private static final String INDEX_SUFFIX = ".idx";
+    private static final String BINARY_SUFFIX = ".bin";
+    private static final String SUMMARY_SUFFIX = ".sum";
+    private static final int MAX_CACHED_INDEXES = 64;
+    private static final String LEGACY_SEGMENT = SEGMENT_PREFIX + "legacy" + SEGMENT_SUFFIX;
+    private static final DateTimeFormatter SEGMENT_DATE = DateTimeFormatter.ofPattern("yyyyMMdd");
+    private static final long SYNC_INTERVAL_MS = 200;
+
+    private final File directory;
+    private final File legacyFile;
+    private final List<Segment> closedSegments;
+    private final JournalFile manifest;
+    private final JournalFile returns;
+    private final Map<String, InvoiceIndex> closedIndexes;
+    private final InvoiceArchive archive;
+
+    private LocalDate openDate;
+    private Segment openSegment;
+    private InvoiceIndex openIndex;
+    private JournalFile openSegmentFile;
+
+    /**
+     * Creates an invoice log rooted at a directory.
+     *
+     * @param directory  The directory holding segments, manifest and returns log.
+     * @param legacyFile The old single-file invoice store, imported on first open.
+     */
+    public InvoiceLog(File directory, File legacyFile) {
+        this.directory = directory;
+        this.legacyFile = legacyFile;
+        this.closedSegments = new ArrayList<>();
+        this.manifest = new JournalFile(new File(directory, "segments.txt"), 1, SYNC_INTERVAL_MS);
+        this.returns = new JournalFile(new File(directory, "returns.log"), 1, SYNC_INTERVAL_MS);
+        this.closedIndexes = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, InvoiceIndex> eldest) {
+                return size() > MAX_CACHED_INDEXES;
+            }
+        };
+        this.archive = new InvoiceArchive(directory);
+    }
+
+    /**
+     * Opens the log: reads the manifest, imports the legacy file if needed, seals
+     * segments left open by earlier runs, and opens today's segment.
+     * <p>
+     * Only the manifest and today's segment are read; older segments are not touched.
+     * </p>
+     */
+    public synchronized void open() {
+        directory.mkdirs();
+        closedSegments.clear();
+        closedIndexes.clear();
+        archive.clear();
+        manifest.replay(line -> {
+            try {
+                closedSegments.add(Segment.parse(line));
+            } catch (Exception e) {
+                System.err.println("Skipping invalid segment entry: " + line);
+            }
+        });
+
+        Set<String> known = new HashSet<>();
+        for (Segment s : closedSegments) known.add(s.name);
+
+        if (closedSegments.isEmpty() && legacyFile.exists() && !new File(directory, LEGACY_SEGMENT).exists()) {
+            importLegacyFile();
+            known.add(LEGACY_SEGMENT);
+        }
+
+        openDate = LocalDate.now();
+        String todayName = segmentName(openDate, known);
+
+        String[] orphans = directory.list((dir, name) -> name.startsWith(SEGMENT_PREFIX) && name.endsWith(SEGMENT_SUFFIX)
+                && !known.contains(name) && !name.equals(todayName));
+        if (orphans != null) {
+            Arrays.sort(orphans);
+            for (String name : orphans) {
+                InvoiceIndex index = new InvoiceIndex();
+                seal(scanSegment(name, -1, index), index);
+            }
+        }
+
+        openIndex = new InvoiceIndex();
+        openSegment = scanSegment(todayName, -1, openIndex);
+        openSegmentFile = new JournalFile(new File(directory, todayName), 1, SYNC_INTERVAL_MS);
+        updateStartPositions();
+    }
+
+    /**
+     * Gets every segment in history order: the closed segments followed by the open one.
+     * @return A list of segment summaries.
+     */
+    public synchronized List<Segment> getSegments() {
+        List<Segment> segments = new ArrayList<>(closedSegments.size() + 1);
+        segments.addAll(closedSegments);
+        if (openSegment != null) segments.add(openSegment);
+        return segments;
+    }
+
+    /**
+     * Gets the segment currently being appended to.
+     * @return The open segment summary.
+     */
+    public synchronized Segment getOpenSegment() { return openSegment; }
+
+    /**
+     * Gets the highest invoice ID stored in the log.
+     * @return The last invoice ID, or 0 if the log is empty.
+     */
+    public synchronized int getLastInvoiceId() {
+        int last = (openSegment != null && openSegment.count > 0) ? openSegment.lastId : 0;
+        for (Segment s : closedSegments) {
+            last = Math.max(last, s.lastId);
+        }
+        return last;
+    }
+
+    /**
+     * Finds where an invoice is stored.
+     * <p>
+     * The segment is found by a binary search over the segment ID ranges, and the
+     * invoice within it through the segment's index.
+     * </p>
+     *
+     * @param invoiceId The invoice ID.
+     * @return The {@link Location}, or null if the invoice is not in the log.
+     */
+    public synchronized Location locate(int invoiceId) {
+        List<Segment> segments = getSegments();
+        int low = 0;
+        int high = segments.size() - 1;
+        while (low <= high) {
+            int mid = (low + high) >>> 1;
+            Segment segment = segments.get(mid);
+            if (segment.count > 0 && invoiceId > segment.lastId) {
+                low = mid + 1;
+            } else if (segment.count > 0 && invoiceId < segment.firstId) {
+                high = mid - 1;
+            } else {
+                return locateIn(segment, mid, invoiceId);
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Reads every invoice line of a segment, in write order.
+     * @param segment The segment to read.
+     * @param handler Callback invoked once per invoice line.
+     */
+    public void readSegment(Segment segment, Consumer<String> handler) {
+        readSegment(segment, 0, Integer.MAX_VALUE, (offset, line) -> handler.accept(line));
+    }
+
+    /**
+     * Reads invoice lines of a segment starting at a byte offset.
+     * <p>
+     * Only lines terminated by a newline are returned, so a line torn by a crash is never seen.
+     * </p>
+     *
+     * @param segment  The segment to read.
+     * @param offset   The byte offset of the first line to read (must be a line start).
+     * @param maxLines The maximum number of lines to read.
+     * @param handler  Callback invoked once per line with its byte offset.
+     * @return The byte offset just after the last line read.
+     */
+    public long readSegment(Segment segment, long offset, int maxLines, LineHandler handler) {
+        return readLines(new File(directory, segment.name), offset, maxLines, segment.length, handler);
+    }
+
+    /**
+     * Reads the line of one invoice.
+     * <p>
+     * Closed segments are read from the {@link InvoiceArchive} mapping; the open
+     * segment, which is still growing, with a single-line file read.
+     * </p>
+     *
+     * @param location Where the invoice is stored, from {@link #locate(int)}.
+     * @return The invoice line, or null if it cannot be read.
+     */
+    public String readInvoiceLine(Location location) {
+        if (location.segment != getOpenSegment()) {
+            try {
+                String line = archive.readLine(location.segment.name, location.offset);
+                if (line != null) return line;
+            } catch (IOException e) {
+                System.err.println("ERROR mapping invoice segment " + location.segment.name + ", using file read: " + e.getMessage());
+            }
+        }
+        String[] found = new String[1];
+        readSegment(location.segment, location.offset, 1, (offset, line) -> found[0] = line);
+        return found[0];
+    }
+
+    private static long readLines(File file, long offset, int maxLines, long end, LineHandler handler) {
+        if (!file.exists() || maxLines <= 0) return offset;
+
+        try (RecordReader reader = new RecordReader(file, StandardCharsets.UTF_8, true)) {
+            reader.seek(offset);
+            int lines = 0;
+            String line;
+            while (lines < maxLines && (line = reader.readLine()) != null) {
+                if (end >= 0 && reader.getLineOffset() >= end) return end; // Left by an append that failed
+                if (line.isEmpty()) continue;
+                handler.accept(reader.getLineOffset(), line);
+                lines++;
+            }
+            return reader.getPosition();
+        } catch (IOException e) {
+            System.err.println("ERROR reading invoice segment " + file.getName() + ": " + e.getMessage());
+            return offset;
+        }
+    }
+
+    /**
+     * Finds where the last lines of a segment start, by scanning the file backwards.
+     *
+     * @param segment The segment.
+     * @param lines   The number of lines wanted from the end.
+     * @return The byte offset of the first of those lines (0 if the segment has fewer).
+     */
+    public long tailOffset(Segment segment, int lines) {
+        File file = new File(directory, segment.name);
+        if (!file.exists() || lines <= 0) return file.length();
+
+        try (RandomAccessFile raf = new RandomAccessFile(file, "r")) {
+            byte[] buffer = new byte[64 * 1024];
+            long position = (segment.length >= 0) ? Math.min(segment.length, raf.length()) : raf.length();
+            int newlines = -1; // The last newline ends the last complete line; anything after it is torn
+            while (position > 0) {
+                int chunk = (int) Math.min(buffer.length, position);
+                position -= chunk;
+                raf.seek(position);
+                raf.readFully(buffer, 0, chunk);
+                for (int i = chunk - 1; i >= 0; i--) {
+                    if (buffer[i] == '\n' && ++newlines == lines) return position + i + 1;
+                }
+            }
+            return 0;
+        } catch (IOException e) {
+            System.err.println("ERROR reading invoice segment " + segment.name + ": " + e.getMessage());
+            return 0;
+        }
+    }
+
+    /**
+     * Reads every invoice of a segment, in write order, without return adjustments.
+     * <p>
+     * Closed segments are read from their binary snapshot, which is created from the
+     * text the first time it is missing. The open segment is parsed from its text.
+     * </p>
+     *
+     * @param segment The segment to read.
+     * @param handler Callback invoked once per readable invoice.
+     */
+    public void readSegmentInvoices(Segment segment, Consumer<Sale.Invoice> handler) {
+        File binaryFile = new File(directory, sidecarName(segment.name, BINARY_SUFFIX));
+        if (segment != getOpenSegment()) {
+            if (!binaryFile.exists()) {
+                writeBinary(segment);
+            }
+            try {
+                BinarySnapshot.readInvoices(binaryFile, handler);
+                return;
+            } catch (IOException e) {
+                System.err.println("ERROR reading invoice snapshot " + binaryFile.getName() + ", using text: " + e.getMessage());
+            }
+        }
+        readSegment(segment, line -> {
+            Sale.Invoice invoice = parseQuietly(line);
+            if (invoice != null) handler.accept(invoice);
+        });
+    }
+
+    /**
+     * Gets the sales totals of a closed segment, without return adjustments.
+     * <p>
+     * Read from the segment's summary file, which is rebuilt from its invoices if it
+     * is missing or does not match the segment.
+     * </p>
+     *
+     * @param segment A closed segment.
+     * @return The segment's sales summary.
+     */
+    public SalesSummary readSegmentSummary(Segment segment) {
+        File summaryFile = new File(directory, sidecarName(segment.name, SUMMARY_SUFFIX));
+        SalesSummary summary = SalesSummary.read(summaryFile);
+        if (summary == null || summary.getInvoiceCount() > segment.count) {
+            // Missing or stale summary file (e.g. a segment closed before summaries existed)
+            SalesSummary rebuilt = new SalesSummary();
+            readSegmentInvoices(segment, invoice -> rebuilt.add(invoice, 1));
+            writeSummary(segment, rebuilt);
+            summary = rebuilt;
+        }
+        return summary;
+    }
+
+    /**
+     * Reads every return adjustment record, in write order.
+     * @param handler Callback invoked once per record (invoiceId;productId;quantity).
+     */
+    public void readReturns(Consumer<String> handler) {
+        returns.replay(handler);
+    }
+
+    /**
+     * Appends a batch of invoice lines to the open segment with one write and one fsync.
+     * <p>
+     * Rolls to a new dated segment first if the day changed. Used by the
+     * group-commit {@link InvoiceWriter}: however many invoices are in the batch,
+     * they cost a single disk sync. The batch is written whole or not at all.
+     * </p>
+     * <p>
+     * The disk write does not hold the log's lock, so lookups go on meanwhile. The
+     * invoices are not part of the log until {@link #publishInvoices} is called with
+     * the returned offsets; only one thread may write, and it must publish each batch
+     * before writing the next.
+     * </p>
+     *
+     * @param lines The invoices in their text format, in ascending ID order.
+     * @return The byte offset at which each line was written.
+     * @throws IOException if the batch could not be durably written.
+     */
+    public long[] writeInvoices(List<String> lines) throws IOException {
+        JournalFile segmentFile;
+        synchronized (this) {
+            LocalDate today = LocalDate.now();
+            if (!today.equals(openDate)) {
+                roll(today);
+            }
+            segmentFile = openSegmentFile;
+        }
+        try {
+            return segmentFile.appendAll(lines);
+        } catch (IOException e) {
+            synchronized (this) {
+                if (segmentFile == openSegmentFile && segmentFile.getCutBackLength() >= 0) {
+                    abandonOpenSegment();
+                }
+            }
+            throw e;
+        }
+    }
+
+    /**
+     * Adds a batch written by {@link #writeInvoices} to the open segment's index.
+     *
+     * @param invoiceIds The IDs of the invoices, in the order they were written.
+     * @param offsets    The offsets returned by {@link #writeInvoices}.
+     */
+    public synchronized void publishInvoices(int[] invoiceIds, long[] offsets) {
+        for (int i = 0; i < offsets.length; i++) {
+            openIndex.add(invoiceIds[i], openSegment.count, offsets[i]);
+            openSegment.track(invoiceIds[i]);
+        }
+    }
+
+    /**
+     * Appends a return adjustment record.
+     *
+     * @param invoiceId The invoice the return belongs to.
+     * @param productId The returned product.
+     * @param quantity  The returned quantity.
+     * @throws IOException if the record could not be durably written.
+     */
+    public synchronized void appendReturn(int invoiceId, String productId, int quantity) throws IOException {
+        returns.append(invoiceId + ";" + productId + ";" + quantity);
+    }
+
+    // --- Segment Management ---
+
+    /**
+     * Closes the open segment and starts a new one for the given date.
+     */
+    private void roll(LocalDate date) throws IOException {
+        openSegmentFile.close();
+        if (openSegment.count > 0) {
+            seal(openSegment, openIndex);
+        }
+        startSegment(date);
+    }
+
+    /**
+     * Gives up the open segment after a failed append could not be cut off its file.
+     * <p>
+     * The segment is sealed with the length of its good records, so the lines of the
+     * failed batch are never read back, not even after a restart, and appends go on in
+     * a new segment for the same day. A segment with no good records is deleted instead.
+     * </p>
+     */
+    private void abandonOpenSegment() {
+        Segment failed = openSegment;
+        failed.length = openSegmentFile.getCutBackLength();
+        try {
+            openSegmentFile.close();
+        } catch (IOException e) {
+            System.err.println("ERROR closing invoice segment " + failed.name + ": " + e.getMessage());
+        }
+        if (failed.count > 0) {
+            seal(failed, openIndex);
+        } else if (!new File(directory, failed.name).delete()) {
+            System.err.println("ERROR deleting failed invoice segment " + failed.name);
+        }
+        Set<String> taken = new HashSet<>();
+        taken.add(failed.name);
+        for (Segment s : closedSegments) taken.add(s.name);
+        startSegment(openDate, taken);
+        System.err.println("Invoice segment " + failed.name + " could not be cut back; continuing in " + openSegment.name);
+    }
+
+    /**
+     * Starts the open segment for a date, under the first segment name not already closed.
+     */
+    private void startSegment(LocalDate date) {
+        Set<String> taken = new HashSet<>();
+        for (Segment s : closedSegments) taken.add(s.name);
+        startSegment(date, taken);
+    }
+
+    private void startSegment(LocalDate date, Set<String> taken) {
+        openDate = date;
+        String name = segmentName(date, taken);
+        openIndex = new InvoiceIndex();
+        openSegment = scanSegment(name, -1, openIndex);
+        openSegmentFile = new JournalFile(new File(directory, name), 1, SYNC_INTERVAL_MS);
+        updateStartPositions();
+    }
+
+    /**
+     * Writes a segment's index, binary copy and sales summary, and records the segment as closed in the manifest.
+     */
+    private void seal(Segment segment, InvoiceIndex index) {
+        if (segment.count == 0) return;
+        try {
+            writeIndex(segment, index);
+            List<Sale.Invoice> invoices = readTextInvoices(segment);
+            writeBinary(segment, invoices);
+            SalesSummary summary = new SalesSummary();
+            for (Sale.Invoice invoice : invoices) summary.add(invoice, 1);
+            writeSummary(segment, summary);
+            manifest.append(segment.toString());
+            closedSegments.add(segment);
+            closedIndexes.put(segment.name, index);
+        } catch (IOException e) {
+            System.err.println("ERROR sealing invoice segment " + segment.name + ": " + e.getMessage());
+        }
+    }
+
+    /**
+     * Reads a segment file once to find its invoice ID range, filling its index.
+     * @param end Where the segment's records end, or -1 to read the whole file.
+     */
+    private Segment scanSegment(String name, long end, InvoiceIndex index) {
+        Segment segment = new Segment(name, 0, 0, 0);
+        segment.length = end;
+        readLines(new File(directory, name), 0, Integer.MAX_VALUE, end, (offset, line) -> {
+            try {
+                int id = Integer.parseInt(line.substring(0, line.indexOf(';')));
+                index.add(id, segment.count, offset);
+                segment.track(id);
+            } catch (Exception e) {
+                System.err.println("Invalid invoice line in " + name + ": " + line);
+                segment.trackInvalid();
+            }
+        });
+        return segment;
+    }
+
+    /**
+     * Looks an invoice up in one segment's index.
+     */
+    private Location locateIn(Segment segment, int segmentIndex, int invoiceId) {
+        InvoiceIndex index = indexOf(segment);
+        int line = index.lineOf(invoiceId);
+        if (line == -1) return null;
+        return new Location(segment, segmentIndex, segment.startPosition + line, index.offsetOf(invoiceId));
+    }
+
+    /**
+     * Gets the index of a segment, loading it from its index file or rebuilding it if needed.
+     */
+    private InvoiceIndex indexOf(Segment segment) {
+        if (segment == openSegment) return openIndex;
+
+        InvoiceIndex index = closedIndexes.get(segment.name);
+        if (index != null) return index;
+
+        File indexFile = new File(directory, sidecarName(segment.name, INDEX_SUFFIX));
+        index = InvoiceIndex.read(indexFile);
+        if (index == null || index.size() > segment.count) {
+            // Missing or stale index file (e.g. a segment closed before indexes existed)
+            index = new InvoiceIndex();
+            scanSegment(segment.name, segment.length, index);
+            try {
+                writeIndex(segment, index);
+            } catch (IOException e) {
+                System.err.println("ERROR writing invoice index for " + segment.name + ": " + e.getMessage());
+            }
+        }
+        closedIndexes.put(segment.name, index);
+        return index;
+    }
+
+    private void writeIndex(Segment segment, InvoiceIndex index) throws IOException {
+        index.write(new File(directory, sidecarName(segment.name, INDEX_SUFFIX)));
+    }
+
+    /**
+     * Saves a closed segment as a binary snapshot. Failure only costs speed, so it is logged and ignored.
+     */
+    private void writeBinary(Segment segment) {
+        writeBinary(segment, readTextInvoices(segment));
+    }
+
+    private void writeBinary(Segment segment, List<Sale.Invoice> invoices) {
+        try {
+            BinarySnapshot.writeInvoices(invoices, new File(directory, sidecarName(segment.name, BINARY_SUFFIX)));
+        } catch (IOException e) {
+            System.err.println("ERROR writing invoice snapshot for " + segment.name + ": " + e.getMessage());
+        }
+    }
+
+    /**
+     * Saves a closed segment's sales summary. Failure only costs speed, so it is logged and ignored.
+     */
+    private void writeSummary(Segment segment, SalesSummary summary) {
+        try {
+            summary.write(new File(directory, sidecarName(segment.name, SUMMARY_SUFFIX)));
+        } catch (IOException e) {
+            System.err.println("ERROR writing sales summary for " + segment.name + ": " + e.getMessage());
+        }
+    }
+
+    /**
+     * Parses every readable invoice of a segment from its text.
+     */
+    private List<Sale.Invoice> readTextInvoices(Segment segment) {
+        List<Sale.Invoice> invoices = new ArrayList<>(segment.count);
+        readSegment(segment, line -> {
+            Sale.Invoice invoice = parseQuietly(line);
+            if (invoice != null) invoices.add(invoice);
+        });
+        return invoices;
+    }
+
+    private static Sale.Invoice parseQuietly(String line) {
+        try {
+            return Sale.parseInvoice(line);
+        } catch (Exception e) {
+            System.err.println("Skipping invalid invoice line: " + line);
+            return null;
+        }
+    }
+
+    /**
+     * Recomputes the history position at which each segment starts.
+     */
+    private void updateStartPositions() {
+        int position = 0;
+        for (Segment s : closedSegments) {
+            s.startPosition = position;
+            position += s.count;
+        }
+        if (openSegment != null) openSegment.startPosition = position;
+    }
+
+    /**
+     * Copies the old single-file invoice store into the first closed segment.
+     */
+    private void importLegacyFile() {
+        File target = new File(directory, LEGACY_SEGMENT);
+        try (BufferedReader reader = new BufferedReader(new InputStreamReader(new FileInputStream(legacyFile), Charset.defaultCharset()));
+             FileOutputStream out = new FileOutputStream(target);
+             Writer writer = new BufferedWriter(new OutputStreamWriter(out, StandardCharsets.UTF_8))) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                if (line.isEmpty()) continue;
+                writer.write(line);
+                writer.write('\n');
+            }
+            writer.flush();
+            out.getFD().sync();
+        } catch (IOException e) {
+            System.err.println("ERROR importing " + legacyFile.getName() + ": " + e.getMessage());
+            return;
+        }
+        InvoiceIndex index = new InvoiceIndex();
+        seal(scanSegment(LEGACY_SEGMENT, -1, index), index);
+    }
+
+    /**
+     * Names the segment for a date: {@code invoices-yyyyMMdd.log}, or with a {@code _n}
+     * suffix if that name is taken by a segment given up after a failed append.
+     * The suffix sorts after the plain name, so segments stay in date order.
+     */
+    private static String segmentName(LocalDate date, Set<String> taken) {
+        String base = SEGMENT_PREFIX + SEGMENT_DATE.format(date);
+        String name = base + SEGMENT_SUFFIX;
+        for (int n = 1; taken.contains(name); n++) {
+            name = base + "_" + n + SEGMENT_SUFFIX;
+        }
+        return name;
+    }
+
+    private static String sidecarName(String segmentName, String suffix) {
+        return segmentName.substring(0, segmentName.length() - SEGMENT_SUFFIX.length()) + suffix;
+    }
+}
@@ -0,0 +1,433 @@
+package possportstore;
+
+import java.io.IOException;
+import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.function.Consumer;
+import possportstore.Sale.Invoice;
+
+/**
+ * Paged, growable store of the full invoice history.
+ * <p>
+ * Invoices are addressed by position (0 = oldest). The most recent invoices are
+ * kept in a fixed-size in-memory window; older ones are read from the
+ * {@link InvoiceLog} a page at a time and held in a small LRU page cache, so heap
+ * use stays bounded however long the history grows.
+ * </p>
+ * <p>
+ * Return adjustments are kept in memory (returns are rare) and applied to every
+ * invoice as it is paged in.
+ * </p>
+ * <p>
+ * Lookups by ID go through the log's per-segment {@link InvoiceIndex}, so finding an
+ * invoice costs at most one single-line read, however long the history is. Old
+ * invoices are decoded straight from the memory-mapped {@link InvoiceArchive}.
+ * </p>
+ * <p>
+ * New invoices are written by a group-commit {@link InvoiceWriter} and join the
+ * store once they are durable.
+ * </p>
+ * <p>
+ * Sales totals of the whole history come from the closed segments' saved
+ * {@link SalesSummary} files, so only the open segment is read for them.
+ * </p>
+ */
+public class InvoiceStore {
+
+    /**
+     * A returned quantity of one product, as recorded in the returns log.
+     */
+    private static class ReturnRecord {
+        final String productId;
+        final int quantity;
+
+        ReturnRecord(String productId, int quantity) {
+            this.productId = productId;
+            this.quantity = quantity;
+        }
+    }
+
+    private final InvoiceLog log;
+    private final InvoiceWriter writer;
+    private final int pageSize;
+    private final int maxCachedPages;
+
+    // Most recent invoices, as a ring buffer
+    private final Invoice[] hot;
+    private int hotStart;
+    private int hotCount;
+
+    private final Map<Long, Invoice[]> pageCache;
+    private final Map<String, List<Long>> pageOffsets;
+    private final Map<Integer, List<ReturnRecord>> returnsByInvoice;
+    private int size;
+
+    /**
+     * Creates a store on top of an invoice log.
+     *
+     * @param log            The log that persists the invoices.
+     * @param hotCapacity    Number of recent invoices kept in memory.
+     * @param pageSize       Number of invoices per page read from disk.
+     * @param maxCachedPages Number of older pages kept in memory.
+     */
+    public InvoiceStore(InvoiceLog log, int hotCapacity, int pageSize, int maxCachedPages) {
+        this.log = log;
+        this.writer = new InvoiceWriter(log, this, this::appended);
+        this.pageSize = pageSize;
+        this.maxCachedPages = maxCachedPages;
+        this.hot = new Invoice[hotCapacity];
+        this.pageCache = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Long, Invoice[]> eldest) {
+                return size() > InvoiceStore.this.maxCachedPages;
+            }
+        };
+        this.pageOffsets = new HashMap<>();
+        this.returnsByInvoice = new HashMap<>();
+    }
+
+    /**
+     * Opens the log and fills the in-memory window with the newest invoices.
+     * Older segments are not read.
+     */
+    public synchronized void load() {
+        log.open();
+        hotStart = 0;
+        hotCount = 0;
+        pageCache.clear();
+        pageOffsets.clear();
+        returnsByInvoice.clear();
+
+        log.readReturns(record -> {
+            try {
+                FieldCursor fields = new FieldCursor(record);
+                int invoiceId = fields.nextInt(';');
+                String productId = fields.nextString(';');
+                returnsByInvoice.computeIfAbsent(invoiceId, k -> new ArrayList<>(1))
+                                .add(new ReturnRecord(productId, fields.nextInt(';')));
+            } catch (Exception e) {
+                System.err.println("Skipping invalid return record: " + record);
+            }
+        });
+
+        List<InvoiceLog.Segment> segments = log.getSegments();
+        size = 0;
+        for (InvoiceLog.Segment s : segments) size += s.getCount();
+
+        // Newest segments first, reading only their tails, until the window is full
+        Deque<Invoice> newest = new ArrayDeque<>();
+        for (int s = segments.size() - 1; s >= 0 && newest.size() < hot.length; s--) {
+            InvoiceLog.Segment segment = segments.get(s);
+            int wanted = Math.min(segment.getCount(), hot.length - newest.size());
+            List<Invoice> segmentInvoices = new ArrayList<>(wanted);
+            log.readSegment(segment, log.tailOffset(segment, wanted), wanted, (offset, line) -> segmentInvoices.add(parse(line)));
+            for (int i = segmentInvoices.size() - 1; i >= 0; i--) {
+                newest.addFirst(segmentInvoices.get(i));
+            }
+        }
+        for (Invoice invoice : newest) {
+            pushHot(invoice);
+        }
+    }
+
+    /**
+     * Gets the total number of invoices in the history.
+     * @return The invoice count.
+     */
+    public synchronized int size() { return size; }
+
+    /**
+     * Gets the highest invoice ID stored.
+     * @return The last invoice ID, or 0 if there are none.
+     */
+    public int getLastInvoiceId() { return log.getLastInvoiceId(); }
+
+    /**
+     * Queues a new invoice to be durably appended to the history.
+     * <p>
+     * The invoice becomes visible in the store when it is durable, just before the
+     * returned future completes. Do not call this while holding the store's lock:
+     * the writer needs it to publish the batch.
+     * </p>
+     *
+     * @param invoice The invoice to append.
+     * @return A future completed with the invoice once it is durable, or exceptionally
+     *         with an {@link IOException} if it could not be written.
+     */
+    public CompletableFuture<Invoice> submit(Invoice invoice) {
+        return writer.submit(invoice);
+    }
+
+    /**
+     * Adds an invoice the writer has made durable. Called under the store's lock.
+     */
+    private void appended(Invoice invoice) {
+        pushHot(invoice);
+        size++;
+    }
+
+    /**
+     * Gets the invoice at a position in the history.
+     * @param position The position (0 = oldest).
+     * @return The {@link Invoice}, or null if the position is out of range or the line is unreadable.
+     */
+    public synchronized Invoice get(int position) {
+        if (position < 0 || position >= size) return null;
+
+        int firstHot = size - hotCount;
+        if (position >= firstHot) {
+            return hot[(hotStart + position - firstHot) % hot.length];
+        }
+
+        List<InvoiceLog.Segment> segments = log.getSegments();
+        int segmentStart = 0;
+        for (int s = 0; s < segments.size(); s++) {
+            InvoiceLog.Segment segment = segments.get(s);
+            if (position < segmentStart + segment.getCount()) {
+                int index = position - segmentStart;
+                Invoice[] page = loadPage(s, segment, index / pageSize);
+                int slot = index % pageSize;
+                return (slot < page.length) ? page[slot] : null;
+            }
+            segmentStart += segment.getCount();
+        }
+        return null;
+    }
+
+    /**
+     * Gets a range of invoices, oldest first.
+     *
+     * @param offset The position of the first invoice.
+     * @param limit  The maximum number of invoices.
+     * @return The invoices in the range (unreadable lines are skipped).
+     */
+    public synchronized Invoice[] getPage(int offset, int limit) {
+        int from = Math.max(0, offset);
+        int to = Math.min(size, offset + Math.max(0, limit));
+        List<Invoice> result = new ArrayList<>(Math.max(0, to - from));
+        for (int i = from; i < to; i++) {
+            Invoice invoice = get(i);
+            if (invoice != null) result.add(invoice);
+        }
+        return result.toArray(new Invoice[0]);
+    }
+
+    /**
+     * Streams every invoice in the history, oldest first, without caching pages.
+     * @param action Callback invoked once per invoice.
+     */
+    public synchronized void forEach(Consumer<Invoice> action) {
+        int firstHot = size - hotCount;
+        int firstHotId = Integer.MAX_VALUE;
+        for (int i = 0; i < hotCount && firstHotId == Integer.MAX_VALUE; i++) {
+            Invoice invoice = hot[(hotStart + i) % hot.length];
+            if (invoice != null) firstHotId = invoice.id;
+        }
+        int hotBoundary = firstHotId;
+
+        int position = 0;
+        for (InvoiceLog.Segment segment : log.getSegments()) {
+            if (position >= firstHot) break;
+
+            // Older invoices come straight from disk; the tail of the history is in memory
+            if (position + segment.getCount() <= firstHot) {
+                log.readSegmentInvoices(segment, invoice -> action.accept(withReturns(invoice)));
+            } else if (segment != log.getOpenSegment()) {
+                // A closed segment reaching into the in-memory window: stop at its first invoice
+                log.readSegmentInvoices(segment, invoice -> {
+                    if (invoice.id < hotBoundary) action.accept(withReturns(invoice));
+                });
+            } else {
+                log.readSegment(segment, 0, firstHot - position, (offset, line) -> {
+                    Invoice invoice = parse(line);
+                    if (invoice != null) action.accept(invoice);
+                });
+            }
+            position += segment.getCount();
+        }
+        for (int i = 0; i < hotCount; i++) {
+            Invoice invoice = hot[(hotStart + i) % hot.length];
+            if (invoice != null) action.accept(invoice);
+        }
+    }
+
+    /**
+     * Adds up the sales of the whole history, with returns applied.
+     * <p>
+     * Closed segments contribute their saved {@link SalesSummary}; only the open
+     * segment is read, plus one line for each older invoice that has returns.
+     * </p>
+     *
+     * @return The sales summary of every invoice in the store.
+     */
+    public synchronized SalesSummary summarize() {
+        SalesSummary total = new SalesSummary();
+        InvoiceLog.Segment open = log.getOpenSegment();
+        for (InvoiceLog.Segment segment : log.getSegments()) {
+            if (segment == open) {
+                log.readSegment(segment, 0, segment.getCount(), (offset, line) -> total.add(parse(line), 1));
+            } else {
+                total.addAll(log.readSegmentSummary(segment));
+            }
+        }
+
+        // Closed segment summaries are of the invoices as sold; swap in the returned ones
+        for (Integer id : returnsByInvoice.keySet()) {
+            InvoiceLog.Location location = log.locate(id);
+            if (location == null || location.segment == open) continue;
+            String line = log.readInvoiceLine(location);
+            Invoice sold = (line != null) ? parseSold(line) : null;
+            if (sold == null) continue;
+            total.add(sold, -1);
+            total.add(withReturns(sold), 1);
+        }
+        return total;
+    }
+
+    /**
+     * Finds an invoice by ID.
+     * <p>
+     * Served from memory when the invoice is recent or its page is cached; otherwise
+     * only its own line is decoded from the mapped archive (or read from disk, for the
+     * open segment). Nothing is added to the page cache.
+     * </p>
+     *
+     * @param id The invoice ID.
+     * @return The {@link Invoice}, or null if not found.
+     */
+    public synchronized Invoice findById(int id) {
+        InvoiceLog.Location location = log.locate(id);
+        if (location == null) return null;
+
+        int firstHot = size - hotCount;
+        if (location.position >= firstHot) {
+            return hot[(hotStart + location.position - firstHot) % hot.length];
+        }
+
+        Invoice[] page = cachedPage(location);
+        if (page != null) {
+            return page[(location.position - location.segment.getStartPosition()) % pageSize];
+        }
+
+        String line = log.readInvoiceLine(location);
+        return (line != null) ? parse(line) : null;
+    }
+
+    /**
+     * Durably records a return and replaces the in-memory copy of the invoice.
+     *
+     * @param updated   The invoice after the return.
+     * @param productId The returned product.
+     * @param quantity  The returned quantity.
+     * @throws IOException if the return could not be written.
+     */
+    public synchronized void recordReturn(Invoice updated, String productId, int quantity) throws IOException {
+        log.appendReturn(updated.id, productId, quantity);
+        returnsByInvoice.computeIfAbsent(updated.id, k -> new ArrayList<>(1)).add(new ReturnRecord(productId, quantity));
+
+        InvoiceLog.Location location = log.locate(updated.id);
+        if (location == null) return;
+
+        int firstHot = size - hotCount;
+        if (location.position >= firstHot) {
+            hot[(hotStart + location.position - firstHot) % hot.length] = updated;
+        } else {
+            Invoice[] page = cachedPage(location);
+            if (page != null) {
+                page[(location.position - location.segment.getStartPosition()) % pageSize] = updated;
+            }
+        }
+    }
+
+    // --- Internals ---
+
+    /**
+     * Gets the cached page holding an invoice, without reading from disk.
+     * @return The page, or null if it is not cached.
+     */
+    private Invoice[] cachedPage(InvoiceLog.Location location) {
+        int index = location.position - location.segment.getStartPosition();
+        Invoice[] page = pageCache.get(((long) location.segmentIndex << 32) | (index / pageSize));
+        return (page != null && index % pageSize < page.length) ? page : null;
+    }
+
+    private void pushHot(Invoice invoice) {
+        if (hot.length == 0) return;
+        if (hotCount < hot.length) {
+            hot[(hotStart + hotCount) % hot.length] = invoice;
+            hotCount++;
+        } else {
+            hot[hotStart] = invoice;
+            hotStart = (hotStart + 1) % hot.length;
+        }
+    }
+
+    /**
+     * Loads one page of a segment, reading from disk on a cache miss.
+     */
+    private Invoice[] loadPage(int segmentIndex, InvoiceLog.Segment segment, int pageNumber) {
+        long key = ((long) segmentIndex << 32) | pageNumber;
+        int lines = Math.max(0, Math.min(pageSize, segment.getCount() - pageNumber * pageSize));
+        Invoice[] cached = pageCache.get(key);
+        if (cached != null && cached.length == lines) return cached; // The open segment may have grown since
+
+        long offset = pageOffset(segment, pageNumber);
+        Invoice[] page = new Invoice[lines];
+        int[] slot = {0};
+        log.readSegment(segment, offset, lines, (lineOffset, line) -> page[slot[0]++] = parse(line));
+
+        pageCache.put(key, page);
+        return page;
+    }
+
+    /**
+     * Finds the byte offset where a page starts, scanning forward from the last known page start.
+     */
+    private long pageOffset(InvoiceLog.Segment segment, int pageNumber) {
+        List<Long> offsets = pageOffsets.computeIfAbsent(segment.name, k -> new ArrayList<>(List.of(0L)));
+        if (pageNumber < offsets.size()) return offsets.get(pageNumber);
+
+        // Scan up to the first line of the wanted page, recording every page start on the way
+        int knownPage = offsets.size() - 1;
+        int[] line = {0};
+        log.readSegment(segment, offsets.get(knownPage), (pageNumber - knownPage) * pageSize + 1, (lineOffset, text) -> {
+            if (line[0] > 0 && line[0] % pageSize == 0) offsets.add(lineOffset);
+            line[0]++;
+        });
+        return (pageNumber < offsets.size()) ? offsets.get(pageNumber) : offsets.get(offsets.size() - 1);
+    }
+
+    /**
+     * Parses an invoice line and applies any recorded returns to it.
+     */
+    private Invoice parse(String line) {
+        Invoice invoice = parseSold(line);
+        return (invoice == null) ? null : withReturns(invoice);
+    }
+
+    /**
+     * Parses an invoice line as it was sold, without returns.
+     */
+    private static Invoice parseSold(String line) {
+        try {
+            return Sale.parseInvoice(line);
+        } catch (Exception e) {
+            System.err.println("Skipping invalid invoice line: " + line);
+            return null;
+        }
+    }
+
+    /**
+     * Applies any recorded returns to an invoice read from the log.
+     */
+    private Invoice withReturns(Invoice invoice) {
+        List<ReturnRecord> returns = returnsByInvoice.get(invoice.id);
+        if (returns != null) {
+            for (ReturnRecord r : returns) {
+                Invoice updated = Sale.applyReturn(invoice, r.productId, r.quantity);
+                if (updated != null) invoice = updated;
+            }
+        }
+        return invoice;
+    }
+}
@@ -0,0 +1,159 @@
+package possportstore;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.function.Consumer;
+import possportstore.Sale.Invoice;
+
+/**
+ * Background group-commit stage for new invoices.
+ * <p>
+ * Checkouts hand their invoice to a bounded queue and get a future back. One writer
+ * thread takes everything queued, appends it to the {@link InvoiceLog} with a single
+ * write and a single fsync, and then completes the futures; that completion is the
+ * durability acknowledgement. While one batch is being synced the next one fills up,
+ * so under load the batches grow and throughput follows the batch size instead of
+ * being capped at one checkout per disk sync.
+ * </p>
+ * <p>
+ * The store's lock is only taken after the fsync, to publish the batch, so screens
+ * reading the history never wait on the disk. Once a batch is on disk its checkouts
+ * are acknowledged even if publishing it in memory fails.
+ * </p>
+ * <p>
+ * When the queue is full, {@link #submit(Invoice)} fails the invoice at once instead of
+ * blocking the caller (a register on the event thread) or buffering without limit;
+ * the checkout is rolled back like any other failed write.
+ * </p>
+ */
+public class InvoiceWriter {
+
+    private static final int QUEUE_CAPACITY = 1024;
+    private static final int MAX_BATCH = 256;
+
+    /**
+     * An invoice waiting to be written, with the future acknowledging it.
+     */
+    private static class Pending {
+        final Invoice invoice;
+        final CompletableFuture<Invoice> durable = new CompletableFuture<>();
+
+        Pending(Invoice invoice) {
+            this.invoice = invoice;
+        }
+    }
+
+    private final InvoiceLog log;
+    private final Object commitLock;
+    private final Consumer<Invoice> onDurable;
+    private final BlockingQueue<Pending> queue = new ArrayBlockingQueue<>(QUEUE_CAPACITY);
+
+    private Thread thread;
+
+    /**
+     * Creates a writer for a log. The writer thread is started on first use.
+     *
+     * @param log        The log to append to.
+     * @param commitLock Lock held while a durable batch is published, so readers never see an
+     *                   invoice in the log that {@code onDurable} has not yet received. It is not
+     *                   held during the disk write.
+     * @param onDurable  Called, in order and under {@code commitLock}, for each invoice once it is durable.
+     */
+    public InvoiceWriter(InvoiceLog log, Object commitLock, Consumer<Invoice> onDurable) {
+        this.log = log;
+        this.commitLock = commitLock;
+        this.onDurable = onDurable;
+    }
+
+    /**
+     * Queues an invoice to be written.
+     * <p>
+     * Invoices are written in the order they are submitted, so callers that need ID
+     * order must submit under a common lock.
+     * </p>
+     *
+     * @param invoice The invoice.
+     * @return A future completed with the invoice once it is durable, or exceptionally
+     *         with an {@link IOException} if the queue is full or its batch could not be written.
+     */
+    public CompletableFuture<Invoice> submit(Invoice invoice) {
+        ensureStarted();
+        Pending pending = new Pending(invoice);
+        if (!queue.offer(pending)) {
+            pending.durable.completeExceptionally(new IOException("Invoice queue full, invoice " + invoice.id + " not saved"));
+        }
+        return pending.durable;
+    }
+
+    // --- Internals ---
+
+    private synchronized void ensureStarted() {
+        if (thread != null) return;
+        thread = new Thread(this::run, "invoice-writer");
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    private void run() {
+        List<Pending> batch = new ArrayList<>(MAX_BATCH);
+        while (true) {
+            try {
+                batch.add(queue.take());
+            } catch (InterruptedException e) {
+                return;
+            }
+            queue.drainTo(batch, MAX_BATCH - 1);
+            write(batch);
+            batch.clear();
+        }
+    }
+
+    /**
+     * Writes one batch and acknowledges every invoice in it.
+     */
+    private void write(List<Pending> batch) {
+        int[] ids = new int[batch.size()];
+        List<String> lines = new ArrayList<>(batch.size());
+        for (int i = 0; i < ids.length; i++) {
+            ids[i] = batch.get(i).invoice.id;
+            lines.add(batch.get(i).invoice.toString());
+        }
+
+        // Write and fsync without the commit lock, so readers of the store never wait on the disk
+        long[] offsets;
+        try {
+            offsets = log.writeInvoices(lines);
+        } catch (IOException | RuntimeException e) {
+            IOException failure = (e instanceof IOException io) ? io : new IOException(e); // Keep the writer thread alive
+            for (Pending pending : batch) {
+                pending.durable.completeExceptionally(failure);
+            }
+            System.err.println("ERROR saving " + batch.size() + " invoices: " + failure.getMessage());
+            return;
+        }
+
+        // The batch is durable from here on: a failure to publish it must not fail the checkouts
+        synchronized (commitLock) {
+            try {
+                log.publishInvoices(ids, offsets);
+            } catch (RuntimeException e) {
+                System.err.println("ERROR indexing " + batch.size() + " saved invoices: " + e);
+            }
+            for (Pending pending : batch) {
+                try {
+                    onDurable.accept(pending.invoice);
+                } catch (RuntimeException e) {
+                    System.err.println("ERROR publishing saved invoice #" + pending.invoice.id + ": " + e);
+                }
+            }
+        }
+        // Complete outside the lock: acknowledgement handlers may journal or touch the store
+        for (Pending pending : batch) {
+            pending.durable.complete(pending.invoice);
+        }
+    }
+}
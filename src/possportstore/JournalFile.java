@@ -0,0 +1,291 @@
+package possportstore;
+
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.StandardOpenOption;
+import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+
+/**
+ * Append-only, line-oriented journal file with group commit.
+ * <p>
+ * Each record is appended as a single UTF-8 line. Appends are written to the OS
+ * immediately, but only forced to disk (fsync) once per group: when a number of
+ * records have accumulated, when a time interval has elapsed, or on {@link #sync()}.
+ * A background timer also forces any pending records after the interval, so the
+ * window of unsynced data is bounded even when the store goes quiet.
+ * </p>
+ * <p>
+ * A record torn by a crash mid-write (a trailing line without its newline) is
+ * cut off the next time the file is opened, so later appends start on a clean line.
+ * </p>
+ */
+public class JournalFile implements Closeable {
+
+    private static final ScheduledExecutorService SYNC_TIMER = Executors.newSingleThreadScheduledExecutor(r -> {
+        Thread t = new Thread(r, "journal-sync");
+        t.setDaemon(true);
+        return t;
+    });
+
+    private final File file;
+    private final int groupSize;
+    private final long groupIntervalMillis;
+
+    private FileChannel channel;
+    private int pendingRecords;
+    private int recordCount;
+    private long lastSyncMillis;
+    private long validLength = -1; // Where a failed append could not be cut back to; -1 if none
+    private ScheduledFuture<?> syncTimer;
+
+    /**
+     * Creates a journal bound to a file. The file is opened lazily on first write.
+     *
+     * @param file                The journal file.
+     * @param groupSize           Number of appended records that triggers an fsync.
+     * @param groupIntervalMillis Maximum time unsynced records may wait before an fsync.
+     */
+    public JournalFile(File file, int groupSize, long groupIntervalMillis) {
+        this.file = file;
+        this.groupSize = groupSize;
+        this.groupIntervalMillis = groupIntervalMillis;
+        this.lastSyncMillis = System.currentTimeMillis();
+    }
+
+    /**
+     * Gets the underlying file.
+     * @return The journal file.
+     */
+    public File getFile() { return file; }
+
+    /**
+     * Gets the number of records currently in the journal (replayed plus appended).
+     * @return The record count.
+     */
+    public synchronized int getRecordCount() { return recordCount; }
+
+    /**
+     * Reads every complete record in the journal, in write order.
+     * <p>
+     * A torn trailing record is ignored. The record count is reset to what was read.
+     * </p>
+     *
+     * @param handler Callback invoked once per record.
+     */
+    public synchronized void replay(Consumer<String> handler) {
+        recordCount = readRecords(file, handler);
+    }
+
+    /**
+     * Reads every complete record of a journal file without opening it for writing.
+     *
+     * @param file    The journal file.
+     * @param handler Callback invoked once per record.
+     * @return The number of records read.
+     */
+    public static int readRecords(File file, Consumer<String> handler) {
+        if (!file.exists()) return 0;
+
+        int count = 0;
+        try (RecordReader reader = new RecordReader(file, StandardCharsets.UTF_8, true)) { // Ignores a torn tail
+            String line;
+            while ((line = reader.readLine()) != null) {
+                if (line.isEmpty()) continue;
+                count++;
+                handler.accept(line);
+            }
+        } catch (IOException e) {
+            System.err.println("ERROR reading journal " + file.getName() + ": " + e.getMessage());
+        }
+        return count;
+    }
+
+    /**
+     * Appends a record to the journal.
+     * <p>
+     * The record is durable once the current group is synced.
+     * </p>
+     *
+     * @param record The record text. Must not contain line breaks.
+     * @return The byte offset at which the record was written.
+     * @throws IOException if the record could not be written.
+     */
+    public synchronized long append(String record) throws IOException {
+        return appendAll(List.of(record))[0];
+    }
+
+    /**
+     * Appends several records with a single write, e.g. a batch of group-committed invoices.
+     * <p>
+     * If the write, or the sync it triggers, fails, the file is cut back to where the
+     * batch started, so none of its records is left behind. If even that fails, the
+     * file is closed and {@link #getCutBackLength()} reports where its records end;
+     * the next append tries the cut again before writing.
+     * </p>
+     *
+     * @param records The record texts. None may contain line breaks.
+     * @return The byte offset at which each record was written.
+     * @throws IOException if the records could not be written.
+     */
+    public synchronized long[] appendAll(List<String> records) throws IOException {
+        ensureOpen();
+        long start = channel.position();
+        long[] offsets = new long[records.size()];
+        ByteArrayOutputStream batch = new ByteArrayOutputStream(records.size() * 128);
+        for (int i = 0; i < offsets.length; i++) {
+            offsets[i] = start + batch.size();
+            batch.write((records.get(i) + "\n").getBytes(StandardCharsets.UTF_8));
+        }
+
+        try {
+            ByteBuffer bytes = ByteBuffer.wrap(batch.toByteArray());
+            while (bytes.hasRemaining()) {
+                channel.write(bytes);
+            }
+            if (pendingRecords + offsets.length >= groupSize || System.currentTimeMillis() - lastSyncMillis >= groupIntervalMillis) {
+                channel.force(false);
+                pendingRecords = 0;
+                lastSyncMillis = System.currentTimeMillis();
+            } else {
+                pendingRecords += offsets.length;
+            }
+        } catch (IOException e) {
+            cutBack(start, e);
+            throw e;
+        }
+        recordCount += offsets.length;
+        return offsets;
+    }
+
+    /**
+     * Gets where the records end when a failed append could not be cut off the file.
+     * Until the next append cuts them off, readers must stop there.
+     * @return The byte length of the records, or -1 if the file holds nothing else.
+     */
+    public synchronized long getCutBackLength() { return validLength; }
+
+    /**
+     * Forces all appended records to disk.
+     * @throws IOException if the sync fails.
+     */
+    public synchronized void sync() throws IOException {
+        if (channel != null && pendingRecords > 0) {
+            channel.force(false);
+        }
+        pendingRecords = 0;
+        lastSyncMillis = System.currentTimeMillis();
+    }
+
+    /**
+     * Discards every record in the journal.
+     * <p>
+     * Called after the journal contents have been compacted into a snapshot.
+     * </p>
+     *
+     * @throws IOException if the file could not be truncated.
+     */
+    public synchronized void truncate() throws IOException {
+        ensureOpen();
+        channel.truncate(0);
+        channel.force(true);
+        recordCount = 0;
+        pendingRecords = 0;
+        lastSyncMillis = System.currentTimeMillis();
+    }
+
+    /**
+     * Syncs pending records and closes the file.
+     * @throws IOException if the final sync fails.
+     */
+    @Override
+    public synchronized void close() throws IOException {
+        if (channel == null) return;
+        try {
+            sync();
+        } finally {
+            channel.close();
+            channel = null;
+            if (syncTimer != null) {
+                syncTimer.cancel(false);
+                syncTimer = null;
+            }
+        }
+    }
+
+    private synchronized void syncIfPending() {
+        if (pendingRecords == 0) return;
+        try {
+            sync();
+        } catch (IOException e) {
+            System.err.println("ERROR syncing journal " + file.getName() + ": " + e.getMessage());
+        }
+    }
+
+    private void ensureOpen() throws IOException {
+        if (channel != null) return;
+        FileChannel opened = FileChannel.open(file.toPath(), StandardOpenOption.CREATE, StandardOpenOption.WRITE);
+        try {
+            long complete = (validLength >= 0) ? validLength : completeLength(file);
+            if (complete < opened.size()) {
+                opened.truncate(complete); // Drop a record torn by a crash, or left by a failed append
+                if (validLength >= 0) opened.force(false);
+            }
+            opened.position(complete);
+        } catch (IOException e) {
+            opened.close();
+            throw e;
+        }
+        channel = opened;
+        validLength = -1;
+
+        if (syncTimer == null) {
+            syncTimer = SYNC_TIMER.scheduleWithFixedDelay(this::syncIfPending, groupIntervalMillis, groupIntervalMillis, TimeUnit.MILLISECONDS);
+        }
+    }
+
+    /**
+     * Cuts the file back to where a failed append started. If that fails too, closes
+     * the file and remembers the length, so the next open cuts it before writing.
+     */
+    private void cutBack(long start, IOException cause) {
+        try {
+            channel.truncate(start);
+            channel.position(start);
+            channel.force(false);
+        } catch (IOException e) {
+            cause.addSuppressed(e);
+            validLength = start;
+            try {
+                channel.close();
+            } catch (IOException ignored) {
+                // Already failing; the length to cut back to is remembered
+            }
+            channel = null;
+            pendingRecords = 0;
+            System.err.println("ERROR cutting back journal " + file.getName() + ": " + e.getMessage());
+        }
+    }
+
+    /**
+     * Finds the length of the file up to and including its last newline.
+     */
+    private static long completeLength(File file) throws IOException {
+        if (!file.exists()) return 0;
+        try (RandomAccessFile raf = new RandomAccessFile(file, "r")) {
+            long pos = raf.length();
+            while (pos > 0) {
+                raf.seek(pos - 1);
+                if (raf.read() == '\n') return pos;
+                pos--;
+            }
+            return 0;
+        }
+    }
+}
@@ -0,0 +1,124 @@
+package possportstore;
+
+import java.util.*;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+/**
+ * Keeps the set of products at or below their reorder level.
+ * <p>
+ * The {@link InventoryModel}, which owns each product's stock listener, passes every
+ * stock change on to the tracker, and the tracker moves the product in or out of the
+ * low-stock set the moment the change crosses its reorder level, so queries cost only
+ * the size of the result. The reorder level of a product is its own
+ * {@link Product#getReorderLevel() reorder level} if set, otherwise
+ * {@link #DEFAULT_REORDER_LEVEL}.
+ * </p>
+ */
+public class LowStockTracker implements StockListener {
+
+    /**
+     * Receives notice of products entering or leaving the low-stock set.
+     */
+    @FunctionalInterface
+    public interface Listener {
+        /**
+         * Called after a product crosses its reorder level.
+         * @param product The product.
+         * @param low     true if it is now low on stock, false if it was restocked.
+         */
+        void lowStockChanged(Product product, boolean low);
+    }
+
+    /** Reorder level used when the product does not set one. */
+    public static final int DEFAULT_REORDER_LEVEL = 5;
+
+    private final Map<String, Product> lowStock = new LinkedHashMap<>();
+    private final List<Listener> listeners = new CopyOnWriteArrayList<>();
+
+    /**
+     * Drops a product from the low-stock set, e.g. when it is deleted.
+     * @param p The product.
+     */
+    public void untrack(Product p) {
+        boolean removed;
+        synchronized (this) {
+            removed = lowStock.remove(p.getIdProduct()) != null;
+        }
+        if (removed) notifyListeners(p, false);
+    }
+
+    /**
+     * Re-evaluates a product against its reorder level, e.g. after the level changed.
+     * @param p The product.
+     */
+    public void refresh(Product p) {
+        stockChanged(p, p.getStock(), p.getStock());
+    }
+
+    /**
+     * {@inheritDoc}
+     * <p>
+     * The stock is read again under the tracker's lock instead of trusting
+     * {@code newStock}: concurrent sales may deliver their notifications out of order,
+     * but the last one handled always sees the latest stock.
+     * </p>
+     */
+    @Override
+    public void stockChanged(Product product, int oldStock, int newStock) {
+        boolean low;
+        boolean changed;
+        synchronized (this) {
+            low = product.getStock() <= getReorderLevel(product);
+            changed = low ? lowStock.put(product.getIdProduct(), product) == null
+                          : lowStock.remove(product.getIdProduct()) != null;
+        }
+        if (changed) notifyListeners(product, low);
+    }
+
+    // --- Reorder Levels ---
+
+    /**
+     * Gets the reorder level that applies to a product.
+     * @param p The product.
+     * @return The product's own level, else the default.
+     */
+    public int getReorderLevel(Product p) {
+        return (p.getReorderLevel() > 0) ? p.getReorderLevel() : DEFAULT_REORDER_LEVEL;
+    }
+
+    // --- Queries ---
+
+    /**
+     * Gets the products at or below their reorder level.
+     * @return A new array of low-stock products.
+     */
+    public synchronized Product[] getLowStockProducts() {
+        return lowStock.values().toArray(new Product[0]);
+    }
+
+    /**
+     * Gets the number of products at or below their reorder level.
+     * @return The low-stock count.
+     */
+    public synchronized int getLowStockCount() { return lowStock.size(); }
+
+    // --- Listeners ---
+
+    /**
+     * Registers a listener for low-stock transitions.
+     * @param listener The listener.
+     */
+    public void addListener(Listener listener) { listeners.add(listener); }
+
+    /**
+     * Unregisters a low-stock listener.
+     * @param listener The listener.
+     */
+    public void removeListener(Listener listener) { listeners.remove(listener); }
+
+    private void notifyListeners(Product p, boolean low) {
+        for (Listener listener : listeners) {
+            listener.lowStockChanged(p, low);
+        }
+    }
+}
@@ -0,0 +1,109 @@
+package possportstore;
+
+/**
+ * Exact money arithmetic on {@code long} amounts in cents (hundredths of a colón).
+ * <p>
+ * Prices are stored as {@code double} in the products file, but invoices keep their
+ * amounts in cents and every sum, discount and tax is worked out here on whole cents,
+ * so totals do not drift as lines are added and removed, a return takes back exactly
+ * what was charged, and adding the same amounts in any order (e.g. across threads)
+ * gives the same result.
+ * Amounts are plain {@code long}s, so none of this allocates.
+ * </p>
+ * <p>
+ * Rounding rules: a {@code double} amount is rounded to the nearest cent, and so is
+ * every amount times a rate (a discount or a tax); halves are rounded away from zero.
+ * Rates are taken in basis points (1/100 of a percent), which holds every percentage
+ * the store uses exactly.
+ * </p>
+ */
+public final class Money {
+
+    /** Basis points in 100%. */
+    public static final int FULL_RATE = 10_000;
+
+    private Money() {}
+
+    /**
+     * Converts an amount to cents, rounding to the nearest cent.
+     * @param amount The amount, e.g. a price read from the products file.
+     * @return The amount in cents.
+     */
+    public static long of(double amount) {
+        long cents = Math.round(Math.abs(amount) * 100.0);
+        return (amount < 0) ? -cents : cents;
+    }
+
+    /**
+     * Converts cents back to an amount, e.g. to store in an invoice.
+     * @param cents The amount in cents.
+     * @return The amount; exact to the cent.
+     */
+    public static double toDouble(long cents) {
+        return cents / 100.0;
+    }
+
+    /**
+     * Converts a fraction (0.13 for 13%) to basis points, rounded to the nearest one.
+     * @param fraction The rate as a fraction of 1.
+     * @return The rate in basis points.
+     */
+    public static int basisPoints(double fraction) {
+        return (int) Math.round(fraction * FULL_RATE);
+    }
+
+    /**
+     * Multiplies a unit amount by a quantity.
+     * @param cents    The unit amount in cents.
+     * @param quantity The quantity.
+     * @return The amount in cents.
+     * @throws ArithmeticException if the result does not fit in a long.
+     */
+    public static long times(long cents, int quantity) {
+        return Math.multiplyExact(cents, quantity);
+    }
+
+    /**
+     * Takes a rate of an amount, rounding halves away from zero.
+     * @param cents       The amount in cents.
+     * @param basisPoints The rate in basis points, e.g. 1300 for 13%.
+     * @return The share of the amount, in cents.
+     * @throws ArithmeticException if the intermediate product does not fit in a long.
+     */
+    public static long percentOf(long cents, int basisPoints) {
+        long product = Math.multiplyExact(cents, basisPoints);
+        long half = FULL_RATE / 2;
+        return (product >= 0) ? (product + half) / FULL_RATE : -((-product + half) / FULL_RATE);
+    }
+
+    /**
+     * Applies a discount to an amount.
+     * @param cents    The amount in cents.
+     * @param fraction The discount as a fraction of 1 (0.10 for 10%).
+     * @return The discounted amount in cents; the discount itself is rounded per {@link #percentOf}.
+     */
+    public static long discount(long cents, double fraction) {
+        return cents - percentOf(cents, basisPoints(fraction));
+    }
+
+    /**
+     * Writes an amount as a plain decimal for the data files, e.g. {@code 1234.50},
+     * without going through a {@code double}.
+     * @param cents The amount in cents.
+     * @return The amount with two decimals and no currency symbol.
+     */
+    public static String toPlainString(long cents) {
+        long abs = Math.abs(cents);
+        long fraction = abs % 100;
+        return ((cents < 0) ? "-" : "") + (abs / 100) + ((fraction < 10) ? ".0" : ".") + fraction;
+    }
+
+    /**
+     * Formats an amount the way the store shows prices, e.g. {@code ₡1234.50}.
+     * @param cents The amount in cents.
+     * @return The formatted amount.
+     */
+    public static String format(long cents) {
+        return String.format("₡%.2f", toDouble(cents));
+    }
+}
@@ -0,0 +1,198 @@
+package possportstore;
+
+import java.io.IOException;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import possportstore.Sale.Invoice;
+
+/**
+ * Bounded, ordered queue of receipts waiting for the printer.
+ * <p>
+ * Receipts are rendered by the {@link ReceiptRenderer} when they are queued (usually a
+ * cache hit for reprints), and one printer thread takes them in order, spending its
+ * time on the device only. A failed receipt is tried again after a short
+ * pause before the next one is started, so receipts never come out of order. If the
+ * queue is full, {@link #submit(Invoice)} fails right away instead of piling up
+ * receipts the printer cannot keep up with.
+ * </p>
+ * <p>
+ * The queue keeps count of printed and failed receipts, retries, and the time from
+ * queueing to printing, for the dashboard or a load test.
+ * </p>
+ */
+public class PrintQueue {
+
+    private static final int QUEUE_CAPACITY = 64;
+    private static final int MAX_ATTEMPTS = 3;
+    private static final long RETRY_DELAY_MS = 500;
+
+    /**
+     * A rendered receipt waiting to be printed, with the future acknowledging it.
+     */
+    private static class PrintJob {
+        final int invoiceId;
+        final byte[] receipt;
+        final long queuedAt = System.nanoTime();
+        final CompletableFuture<Void> printed = new CompletableFuture<>();
+
+        PrintJob(int invoiceId, byte[] receipt) {
+            this.invoiceId = invoiceId;
+            this.receipt = receipt;
+        }
+    }
+
+    private final ReceiptPrinter printer;
+    private final ReceiptRenderer renderer;
+    private final BlockingQueue<PrintJob> queue = new ArrayBlockingQueue<>(QUEUE_CAPACITY);
+
+    private Thread thread;
+    private long startedAt;
+    private long printedCount;
+    private long failedCount;
+    private long retryCount;
+    private long totalLatencyNanos;
+    private long maxLatencyNanos;
+
+    /**
+     * Creates a queue in front of a printer. The printer thread is started on first use.
+     * @param printer  The printer.
+     * @param renderer The receipt layout.
+     */
+    public PrintQueue(ReceiptPrinter printer, ReceiptRenderer renderer) {
+        this.printer = printer;
+        this.renderer = renderer;
+    }
+
+    /**
+     * Renders the receipt of an invoice and queues it for printing.
+     *
+     * @param invoice The invoice.
+     * @return A future completed once the receipt is printed, or exceptionally with an
+     *         {@link IOException} if the queue is full or every attempt failed.
+     */
+    public CompletableFuture<Void> submit(Invoice invoice) {
+        ensureStarted();
+        PrintJob job = new PrintJob(invoice.id, renderer.render(invoice));
+        if (!queue.offer(job)) {
+            synchronized (this) { failedCount++; }
+            job.printed.completeExceptionally(new IOException("Print queue full, receipt " + invoice.id + " not printed"));
+        }
+        return job.printed;
+    }
+
+    /**
+     * Gets the renderer that lays out and caches the receipts.
+     * @return The {@link ReceiptRenderer}.
+     */
+    public ReceiptRenderer getRenderer() { return renderer; }
+
+    /**
+     * Gets the number of receipts waiting for the printer.
+     * @return The queue length.
+     */
+    public int getPendingCount() { return queue.size(); }
+
+    /**
+     * Gets the number of receipts printed so far.
+     * @return The printed count.
+     */
+    public synchronized long getPrintedCount() { return printedCount; }
+
+    /**
+     * Gets the number of receipts given up on, because the queue was full or every attempt failed.
+     * @return The failed count.
+     */
+    public synchronized long getFailedCount() { return failedCount; }
+
+    /**
+     * Gets the number of attempts that had to be repeated.
+     * @return The retry count.
+     */
+    public synchronized long getRetryCount() { return retryCount; }
+
+    /**
+     * Gets the average time from queueing a receipt to it being printed.
+     * @return The average latency in milliseconds, or 0 if nothing has been printed.
+     */
+    public synchronized double getAverageLatencyMillis() {
+        return (printedCount == 0) ? 0 : totalLatencyNanos / 1e6 / printedCount;
+    }
+
+    /**
+     * Gets the longest time a receipt took from queueing to being printed.
+     * @return The maximum latency in milliseconds.
+     */
+    public synchronized double getMaxLatencyMillis() { return maxLatencyNanos / 1e6; }
+
+    /**
+     * Gets the receipts printed per second since the first one was queued.
+     * @return The throughput, or 0 if nothing has been printed.
+     */
+    public synchronized double getThroughputPerSecond() {
+        long elapsed = System.nanoTime() - startedAt;
+        return (printedCount == 0 || elapsed <= 0) ? 0 : printedCount * 1e9 / elapsed;
+    }
+
+    // --- Internals ---
+
+    private synchronized void ensureStarted() {
+        if (thread != null) return;
+        startedAt = System.nanoTime();
+        thread = new Thread(this::run, "receipt-printer");
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    private void run() {
+        while (true) {
+            PrintJob job;
+            try {
+                job = queue.take();
+            } catch (InterruptedException e) {
+                return;
+            }
+            if (!print(job)) return;
+        }
+    }
+
+    /**
+     * Prints one receipt, retrying before moving on so receipts stay in order.
+     * @return false if the thread was interrupted and should stop.
+     */
+    private boolean print(PrintJob job) {
+        IOException failure = null;
+        for (int attempt = 1; attempt <= MAX_ATTEMPTS; attempt++) {
+            try {
+                printer.print(job.invoiceId, job.receipt);
+                long latency = System.nanoTime() - job.queuedAt;
+                synchronized (this) {
+                    printedCount++;
+                    totalLatencyNanos += latency;
+                    maxLatencyNanos = Math.max(maxLatencyNanos, latency);
+                }
+                job.printed.complete(null);
+                return true;
+            } catch (IOException e) {
+                failure = e;
+            } catch (RuntimeException e) {
+                failure = new IOException(e); // Keep the printer thread alive for the next receipt
+            }
+
+            if (attempt < MAX_ATTEMPTS) {
+                synchronized (this) { retryCount++; }
+                try {
+                    Thread.sleep(RETRY_DELAY_MS * attempt);
+                } catch (InterruptedException e) {
+                    job.printed.completeExceptionally(failure);
+                    return false;
+                }
+            }
+        }
+
+        synchronized (this) { failedCount++; }
+        System.err.println("ERROR printing receipt " + job.invoiceId + ": " + failure.getMessage());
+        job.printed.completeExceptionally(failure);
+        return true;
+    }
+}
@@ -1,19 +1,29 @@
 package possportstore;
 
+import java.util.concurrent.atomic.AtomicInteger;
+
 /**
  * Represents a generic product in the inventory.
  * <p>
  * This class serves as the base entity for specific product categories
  * such as {@link Shoe}, {@link Clothe}, and {@link Accessories}.
  * </p>
+ * <p>
+ * Stock is a lock-free counter. Units are taken with a compare-and-set
+ * ({@link #tryReserve(int)}), so concurrent sales of the same product never wait on
+ * a lock and can never drive the stock below zero.
+ * </p>
  */
 public class Product {
 
     private String idProduct;
     private String name;
     private double price;
-    private int stock;
+    private final AtomicInteger stock;
     private String description;
+    private int reorderLevel;
+    private long barcode;
+    private volatile StockListener stockListener;
 
     /**
      * Default constructor. Initializes a product with placeholder values.
@@ -35,12 +45,44 @@ public class Product {
         this.idProduct = idProduct;
         this.name = name;
         this.price = price;
-        this.stock = stock;
+        this.stock = new AtomicInteger(stock);
         this.description = description;
     }
 
     // --- Business Logic ---
 
+    /**
+     * Takes units out of stock if enough are available.
+     * <p>
+     * The check and the subtraction are one atomic compare-and-set, so two sales can
+     * never both take the last units. Units taken can be put back with {@link #release(int)}.
+     * </p>
+     *
+     * @param quantity The amount of units to take.
+     * @return true if the units were taken, false if the stock is insufficient (nothing changes).
+     */
+    public boolean tryReserve(int quantity) {
+        if (quantity <= 0) return quantity == 0;
+        while (true) {
+            int current = stock.get();
+            if (current < quantity) return false;
+            if (stock.compareAndSet(current, current - quantity)) {
+                notifyStockChanged(current, current - quantity);
+                return true;
+            }
+        }
+    }
+
+    /**
+     * Puts units back into stock, e.g. to undo a {@link #tryReserve(int)} or for a return.
+     * @param quantity The amount of units to add.
+     */
+    public void release(int quantity) {
+        if (quantity <= 0) return;
+        int newStock = stock.addAndGet(quantity);
+        notifyStockChanged(newStock - quantity, newStock);
+    }
+
     /**
      * Reduces the stock of the product by a specified quantity.
      * <p>
@@ -51,9 +93,7 @@ public class Product {
      * @throws IllegalArgumentException if the resulting stock would be negative.
      */
     public void reduceStock(int quantity) {
-        if (this.stock >= quantity) {
-            this.stock -= quantity;
-        } else {
+        if (!tryReserve(quantity)) {
             throw new IllegalArgumentException("Insufficient stock for product: " + this.name);
         }
     }
@@ -67,8 +107,20 @@ public class Product {
      * @param quantity The amount to add back to stock.
      */
     public void increaseStock(int quantity) {
-        if (quantity > 0) {
-            this.stock += quantity;
+        release(quantity);
+    }
+
+    /**
+     * Notifies the stock listener of a change.
+     * <p>
+     * Under concurrency, notifications of one product may arrive out of order; the
+     * listener should re-read {@link #getStock()} rather than trust {@code newStock}.
+     * </p>
+     */
+    private void notifyStockChanged(int oldStock, int newStock) {
+        StockListener listener = stockListener;
+        if (listener != null && oldStock != newStock) {
+            listener.stockChanged(this, oldStock, newStock);
         }
     }
 
@@ -114,13 +166,46 @@ public class Product {
      * Gets the current stock quantity.
      * @return The number of units in stock.
      */
-    public int getStock() { return stock; }
+    public int getStock() { return stock.get(); }
 
     /**
      * Sets the stock quantity.
      * @param stock The new stock level.
      */
-    public void setStock(int stock) { this.stock = stock; }
+    public void setStock(int stock) {
+        notifyStockChanged(this.stock.getAndSet(stock), stock);
+    }
+
+    /**
+     * Gets the stock level at or below which this product needs reordering.
+     * @return The reorder level, or 0 to use the default level.
+     */
+    public int getReorderLevel() { return reorderLevel; }
+
+    /**
+     * Sets the stock level at or below which this product needs reordering.
+     * @param reorderLevel The reorder level, or 0 to use the default level.
+     */
+    public void setReorderLevel(int reorderLevel) { this.reorderLevel = Math.max(0, reorderLevel); }
+
+    /**
+     * Gets the barcode (GTIN) printed on the product.
+     * @return The barcode, or {@link BarcodeIndex#NONE} if the product has none.
+     */
+    public long getBarcode() { return barcode; }
+
+    /**
+     * Sets the barcode (GTIN) printed on the product. Must be set before the product is
+     * added to the store, as the {@link BarcodeIndex} is keyed by it.
+     * @param barcode The barcode, or {@link BarcodeIndex#NONE} for none.
+     */
+    public void setBarcode(long barcode) { this.barcode = Math.max(BarcodeIndex.NONE, barcode); }
+
+    /**
+     * Sets the listener told of every stock change. Used by {@link InventoryModel} and {@link LowStockTracker}.
+     * @param stockListener The listener, or null to remove it.
+     */
+    void setStockListener(StockListener stockListener) { this.stockListener = stockListener; }
 
     /**
      * Gets the product description.
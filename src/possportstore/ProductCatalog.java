@@ -0,0 +1,142 @@
+package possportstore;
+
+import java.util.*;
+
+/**
+ * Growable, hash-indexed product catalog.
+ * <p>
+ * Products are kept in insertion order and indexed by their unique ID, with a
+ * secondary case-insensitive index on the product name. Lookups by ID or name
+ * run in constant time regardless of the catalog size.
+ * </p>
+ * <p>
+ * All methods are synchronized, so several registers can share one catalog.
+ * </p>
+ */
+public class ProductCatalog {
+
+    private final Map<String, Product> productsById;
+    private final Map<String, List<Product>> productsByName;
+    private int highestNumericId;
+
+    /**
+     * Creates an empty catalog.
+     */
+    public ProductCatalog() {
+        this.productsById = new LinkedHashMap<>();
+        this.productsByName = new HashMap<>();
+        this.highestNumericId = 0;
+    }
+
+    /**
+     * Adds a product to the catalog.
+     * @param p The product to add.
+     * @return true if added, false if another product already uses the same ID.
+     */
+    public synchronized boolean add(Product p) {
+        if (productsById.putIfAbsent(p.getIdProduct(), p) != null) return false;
+
+        productsByName.computeIfAbsent(nameKey(p.getName()), k -> new ArrayList<>(1)).add(p);
+        trackNumericId(p.getIdProduct());
+        return true;
+    }
+
+    /**
+     * Removes a product by its ID.
+     * @param idProduct The ID of the product to remove.
+     * @return The removed product, or null if not found.
+     */
+    public synchronized Product remove(String idProduct) {
+        Product removed = productsById.remove(idProduct);
+        if (removed == null) return null;
+
+        String key = nameKey(removed.getName());
+        List<Product> sameName = productsByName.get(key);
+        if (sameName != null) {
+            sameName.remove(removed);
+            if (sameName.isEmpty()) productsByName.remove(key);
+        }
+        return removed;
+    }
+
+    /**
+     * Renames a product, keeping the name index in step.
+     * @param idProduct The ID of the product.
+     * @param newName   The new name.
+     * @return The renamed product, or null if not found.
+     */
+    public synchronized Product rename(String idProduct, String newName) {
+        Product p = productsById.get(idProduct);
+        if (p == null) return null;
+
+        String oldKey = nameKey(p.getName());
+        List<Product> sameName = productsByName.get(oldKey);
+        if (sameName != null) {
+            sameName.remove(p);
+            if (sameName.isEmpty()) productsByName.remove(oldKey);
+        }
+        p.setName(newName);
+        productsByName.computeIfAbsent(nameKey(newName), k -> new ArrayList<>(1)).add(p);
+        return p;
+    }
+
+    /**
+     * Finds a product by its exact ID.
+     * @param idProduct The ID to look up.
+     * @return The {@link Product}, or null if not found.
+     */
+    public synchronized Product findById(String idProduct) {
+        return (idProduct == null) ? null : productsById.get(idProduct);
+    }
+
+    /**
+     * Finds the first product (in catalog order) whose name matches, ignoring case.
+     * @param name The name to look up.
+     * @return The {@link Product}, or null if not found.
+     */
+    public synchronized Product findByName(String name) {
+        if (name == null) return null;
+        List<Product> matches = productsByName.get(nameKey(name));
+        return (matches == null || matches.isEmpty()) ? null : matches.get(0);
+    }
+
+    /**
+     * Gets the number of products in the catalog.
+     * @return The product count.
+     */
+    public synchronized int size() { return productsById.size(); }
+
+    /**
+     * Gets a read-only, insertion-ordered snapshot of all products.
+     * It is safe to iterate while other threads change the catalog.
+     * @return The catalog products.
+     */
+    public synchronized Collection<Product> values() { return List.copyOf(productsById.values()); }
+
+    /**
+     * Copies the catalog into a new array, in insertion order.
+     * @return An array of products.
+     */
+    public synchronized Product[] toArray() { return productsById.values().toArray(new Product[0]); }
+
+    /**
+     * Generates the next free numeric product ID.
+     * <p>
+     * Based on the highest numeric ID ever seen, so IDs of deleted products are never reused.
+     * </p>
+     * @return The next ID as a String.
+     */
+    public synchronized String nextId() { return String.valueOf(highestNumericId + 1); }
+
+    private void trackNumericId(String idProduct) {
+        try {
+            highestNumericId = Math.max(highestNumericId, Integer.parseInt(idProduct));
+        } catch (NumberFormatException e) {
+            // Non-numeric IDs do not take part in ID generation
+        }
+    }
+
+    private static String nameKey(String name) {
+        return (name == null) ? "" : name.toLowerCase(Locale.ROOT);
+    }
+}
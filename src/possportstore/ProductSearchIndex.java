@@ -0,0 +1,339 @@
+package possportstore;
+
+import java.text.Normalizer;
+import java.util.*;
+
+/**
+ * Type-ahead search over product IDs, names and descriptions.
+ * <p>
+ * Every field is split into lower-case words with accents removed, and each word is
+ * kept in a sorted map, so all words starting with what the cashier has typed so far
+ * ("ultra", "chu") are one range of that map. Words are also indexed by their
+ * trigrams; when a query word is no prefix of anything (a typo such as "chuk"), the
+ * words sharing most of its trigrams are used instead, at a lower score.
+ * </p>
+ * <p>
+ * Every query word has to match. Results are ranked by where the words matched (name
+ * above ID above description), exact words above prefixes above typo matches, and
+ * shorter names first. A very broad query (one or two letters) looks at no more than
+ * {@value #MAX_SCANNED} products, visiting exact words before longer ones, so it stays
+ * fast while the cashier keeps typing. The index is updated product by product on add, delete and
+ * rename, never rebuilt. All methods are synchronized, like the {@link ProductCatalog}.
+ * </p>
+ */
+public class ProductSearchIndex {
+
+    private static final double NAME_WEIGHT = 3.0;
+    private static final double ID_WEIGHT = 2.5;
+    private static final double DESCRIPTION_WEIGHT = 1.0;
+    private static final double PREFIX_FACTOR = 0.8;
+    private static final double FUZZY_FACTOR = 0.5;
+    private static final double MIN_SIMILARITY = 0.6;
+    private static final int MAX_SCANNED = 500;
+
+    /**
+     * The words of one indexed product, with the weight of the field each came from.
+     */
+    private static class Entry {
+        final Product product;
+        final String name;
+        final String[] words;    // Every distinct word, for matching
+        final double[] weights;  // Weight of each word, by the best field it appears in
+        int visited;             // Search that last scored this entry
+
+        Entry(Product p) {
+            this.product = p;
+            this.name = normalize(p.getName());
+            Set<String> idWords = words(p.getIdProduct());
+            Set<String> nameWords = words(p.getName());
+            Set<String> descriptionWords = words(p.getDescription());
+
+            Set<String> all = new LinkedHashSet<>(nameWords);
+            all.addAll(idWords);
+            all.addAll(descriptionWords);
+            this.words = all.toArray(new String[0]);
+            this.weights = new double[words.length];
+            for (int i = 0; i < words.length; i++) {
+                weights[i] = nameWords.contains(words[i]) ? NAME_WEIGHT
+                           : idWords.contains(words[i]) ? ID_WEIGHT : DESCRIPTION_WEIGHT;
+            }
+        }
+    }
+
+    /**
+     * How one query word matches indexed words: by prefix, or failing that by trigrams.
+     */
+    private class TermMatch {
+        final String term;
+        final Map<String, Double> fuzzyWords; // null when matching by prefix
+
+        TermMatch(String term, Map<String, Double> fuzzyWords) {
+            this.term = term;
+            this.fuzzyWords = fuzzyWords;
+        }
+
+        /** Gets how well an indexed word matches, or a negative number if it does not. */
+        double factor(String word) {
+            if (fuzzyWords != null) return fuzzyWords.getOrDefault(word, -1.0);
+            if (!word.startsWith(term)) return -1;
+            return (word.length() == term.length()) ? 1.0 : PREFIX_FACTOR;
+        }
+
+        /** Gets the products of each indexed word this term matches, exact word first. */
+        Collection<Set<Entry>> holders() {
+            if (fuzzyWords == null) return wordIndex.subMap(term, true, term + Character.MAX_VALUE, false).values();
+            List<Set<Entry>> holders = new ArrayList<>(fuzzyWords.size());
+            for (String word : fuzzyWords.keySet()) holders.add(wordIndex.get(word));
+            return holders;
+        }
+
+        /** Counts the products reached through this term, stopping early past a bound. */
+        int holderCount(int bound) {
+            int count = 0;
+            for (Set<Entry> entries : holders()) {
+                count += entries.size();
+                if (count >= bound) break;
+            }
+            return count;
+        }
+    }
+
+    /**
+     * A candidate result with its score.
+     */
+    private static class Scored {
+        final Entry entry;
+        final double score;
+
+        Scored(Entry entry, double score) {
+            this.entry = entry;
+            this.score = score;
+        }
+    }
+
+    // Best first: higher score, then shorter name
+    private static final Comparator<Scored> RANKING = (a, b) -> {
+        int byScore = Double.compare(b.score, a.score);
+        return (byScore != 0) ? byScore : Integer.compare(a.entry.name.length(), b.entry.name.length());
+    };
+
+    private final Map<String, Entry> entries = new HashMap<>();
+    private final NavigableMap<String, Set<Entry>> wordIndex = new TreeMap<>();
+    private final Map<String, Set<String>> trigramIndex = new HashMap<>();
+    private int searches;
+
+    /**
+     * Indexes a product, replacing any earlier entry with the same ID.
+     * @param p The product.
+     */
+    public synchronized void add(Product p) {
+        remove(p.getIdProduct());
+        Entry entry = new Entry(p);
+        entries.put(p.getIdProduct(), entry);
+        for (String word : entry.words) {
+            Set<Entry> holders = wordIndex.get(word);
+            if (holders == null) {
+                holders = new HashSet<>(2);
+                wordIndex.put(word, holders);
+                for (String trigram : trigrams(word)) {
+                    trigramIndex.computeIfAbsent(trigram, k -> new HashSet<>(2)).add(word);
+                }
+            }
+            holders.add(entry);
+        }
+    }
+
+    /**
+     * Removes a product from the index.
+     * @param idProduct The product ID.
+     */
+    public synchronized void remove(String idProduct) {
+        Entry entry = entries.remove(idProduct);
+        if (entry == null) return;
+        for (String word : entry.words) {
+            Set<Entry> holders = wordIndex.get(word);
+            if (holders == null) continue;
+            holders.remove(entry);
+            if (holders.isEmpty()) {
+                wordIndex.remove(word);
+                for (String trigram : trigrams(word)) {
+                    Set<String> words = trigramIndex.get(trigram);
+                    if (words != null && words.remove(word) && words.isEmpty()) trigramIndex.remove(trigram);
+                }
+            }
+        }
+    }
+
+    /**
+     * Re-indexes a product after its name or description changed.
+     * @param p The product.
+     */
+    public synchronized void update(Product p) {
+        add(p);
+    }
+
+    /**
+     * Finds the products matching what has been typed so far.
+     *
+     * @param query The search text; every word must match a word of the product by prefix or closely.
+     * @param limit The maximum number of results.
+     * @return The best matches, best first; empty if the query has no words.
+     */
+    public synchronized List<Product> search(String query, int limit) {
+        Set<String> terms = words(query);
+        if (terms.isEmpty() || limit <= 0) return List.of();
+
+        // Walk the products of the most selective term; check the other terms per product
+        List<TermMatch> matches = new ArrayList<>(terms.size());
+        TermMatch driver = null;
+        int driverSize = Integer.MAX_VALUE;
+        for (String term : terms) {
+            TermMatch match = match(term);
+            int size = match.holderCount(Math.min(driverSize, MAX_SCANNED));
+            if (size == 0) return List.of();
+            matches.add(match);
+            if (size < driverSize) {
+                driver = match;
+                driverSize = size;
+            }
+        }
+
+        String phrase = normalize(query).trim();
+        int visit = ++searches;
+        PriorityQueue<Scored> best = new PriorityQueue<>(limit + 1, RANKING.reversed()); // Worst on top
+
+        // A product whose ID is the query always comes first
+        Entry byId = entries.get(query.trim());
+        if (byId != null) {
+            byId.visited = visit;
+            best.add(new Scored(byId, score(byId, matches) + 10));
+        }
+
+        int scanned = 0;
+        scan:
+        for (Set<Entry> holders : driver.holders()) {
+            for (Entry entry : holders) {
+                if (entry.visited == visit) continue;
+                entry.visited = visit;
+                if (++scanned > MAX_SCANNED) break scan;
+
+                double score = score(entry, matches);
+                if (score < 0) continue;
+                if (entry.name.startsWith(phrase)) score += 1;
+                if (best.size() == limit && score < best.peek().score) continue;
+
+                best.add(new Scored(entry, score));
+                if (best.size() > limit) best.poll();
+            }
+        }
+
+        List<Scored> ranked = new ArrayList<>(best);
+        ranked.sort(RANKING);
+        List<Product> results = new ArrayList<>(ranked.size());
+        for (Scored scored : ranked) {
+            results.add(scored.entry.product);
+        }
+        return results;
+    }
+
+    /**
+     * Gets the number of indexed products.
+     * @return The product count.
+     */
+    public synchronized int size() { return entries.size(); }
+
+    // --- Internals ---
+
+    /**
+     * Sets up the matching of one query word: by prefix, or by trigrams if no word starts with it.
+     */
+    private TermMatch match(String term) {
+        Map.Entry<String, Set<Entry>> ceiling = wordIndex.ceilingEntry(term);
+        if ((ceiling != null && ceiling.getKey().startsWith(term)) || term.length() < 3) {
+            return new TermMatch(term, null);
+        }
+
+        // No word starts with the term: take words containing most of its trigrams. The end
+        // of the term is not padded, as the cashier may not have finished typing the word.
+        Set<String> termTrigrams = trigramsOf("^" + term);
+        Map<String, Integer> shared = new HashMap<>();
+        for (String trigram : termTrigrams) {
+            Set<String> words = trigramIndex.get(trigram);
+            if (words == null) continue;
+            for (String word : words) shared.merge(word, 1, Integer::sum);
+        }
+        Map<String, Double> fuzzyWords = new HashMap<>();
+        for (Map.Entry<String, Integer> e : shared.entrySet()) {
+            double similarity = (double) e.getValue() / termTrigrams.size();
+            if (similarity >= MIN_SIMILARITY) fuzzyWords.put(e.getKey(), FUZZY_FACTOR * similarity);
+        }
+        return new TermMatch(term, fuzzyWords);
+    }
+
+    /**
+     * Adds up the best match of every term among a product's words.
+     * @return The score, or a negative number if some term matches none of its words.
+     */
+    private static double score(Entry entry, List<TermMatch> matches) {
+        double total = 0;
+        for (TermMatch match : matches) {
+            double best = -1;
+            for (int i = 0; i < entry.words.length; i++) {
+                double factor = match.factor(entry.words[i]);
+                if (factor >= 0) best = Math.max(best, entry.weights[i] * factor);
+            }
+            if (best < 0) return -1;
+            total += best;
+        }
+        return total;
+    }
+
+    /**
+     * Splits text into normalized words.
+     */
+    private static Set<String> words(String text) {
+        Set<String> words = new LinkedHashSet<>();
+        if (text == null) return words;
+        String normalized = normalize(text);
+        int start = -1;
+        for (int i = 0; i <= normalized.length(); i++) {
+            boolean wordChar = i < normalized.length() && Character.isLetterOrDigit(normalized.charAt(i));
+            if (wordChar && start < 0) {
+                start = i;
+            } else if (!wordChar && start >= 0) {
+                words.add(normalized.substring(start, i));
+                start = -1;
+            }
+        }
+        return words;
+    }
+
+    /**
+     * Lower-cases text and removes accents, so "Camión" is found as "camion".
+     */
+    private static String normalize(String text) {
+        if (text == null) return "";
+        String decomposed = Normalizer.normalize(text, Normalizer.Form.NFD);
+        StringBuilder sb = new StringBuilder(decomposed.length());
+        for (int i = 0; i < decomposed.length(); i++) {
+            char c = decomposed.charAt(i);
+            if (Character.getType(c) != Character.NON_SPACING_MARK) sb.append(c);
+        }
+        return sb.toString().toLowerCase(Locale.ROOT);
+    }
+
+    /**
+     * Gets the trigrams of a word, padded so its start and end count too.
+     */
+    private static Set<String> trigrams(String word) {
+        return trigramsOf("^" + word + "$");
+    }
+
+    private static Set<String> trigramsOf(String padded) {
+        Set<String> trigrams = new HashSet<>();
+        for (int i = 0; i + 3 <= padded.length(); i++) {
+            trigrams.add(padded.substring(i, i + 3));
+        }
+        return trigrams;
+    }
+}
@@ -0,0 +1,18 @@
+package possportstore;
+
+import java.io.IOException;
+
+/**
+ * Output device for rendered receipts, fed by the {@link PrintQueue}.
+ */
+public interface ReceiptPrinter {
+
+    /**
+     * Prints one receipt. Called from the print queue's thread only, one receipt at a time.
+     *
+     * @param invoiceId The ID of the invoice, for the device's own logging.
+     * @param receipt   The printer-ready receipt, as laid out by the {@link ReceiptRenderer}; not to be modified.
+     * @throws IOException if the device failed; the queue may try again.
+     */
+    void print(int invoiceId, byte[] receipt) throws IOException;
+}
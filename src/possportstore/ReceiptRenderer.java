@@ -0,0 +1,118 @@
+package possportstore;
+
+import java.nio.charset.StandardCharsets;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import possportstore.Sale.Invoice;
+import possportstore.Sale.InvoiceItem;
+
+/**
+ * Lays out an invoice as a printer-ready receipt, and remembers the result.
+ * <p>
+ * Receipts are rendered before they are queued, so the printer thread only moves
+ * finished bytes to the device, and a retry prints exactly the same receipt again.
+ * </p>
+ * <p>
+ * The most recently used receipts are cached by invoice ID and
+ * {@linkplain Invoice#version version}. A reprint, or printing right after the sale,
+ * returns the cached bytes without formatting anything. A return creates a new
+ * version of the invoice, so its next receipt is rendered again and the outdated one
+ * ages out of the cache.
+ * </p>
+ */
+public class ReceiptRenderer {
+
+    private static final int WIDTH = 40;
+    private static final String RULE = "-".repeat(WIDTH);
+    private static final int MAX_CACHED_RECEIPTS = 256;
+
+    private final Map<Long, byte[]> cache;
+    private long hits;
+    private long misses;
+
+    /**
+     * Creates a renderer with an empty cache.
+     */
+    public ReceiptRenderer() {
+        this.cache = new LinkedHashMap<>(64, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Long, byte[]> eldest) {
+                return size() > MAX_CACHED_RECEIPTS;
+            }
+        };
+    }
+
+    /**
+     * Gets the printer-ready receipt of an invoice, rendering it only if this version is not cached.
+     * @param invoice The invoice.
+     * @return The receipt as UTF-8 text, {@value #WIDTH} columns wide; shared, not to be modified.
+     */
+    public synchronized byte[] render(Invoice invoice) {
+        long key = ((long) invoice.id << 32) | (invoice.version & 0xFFFFFFFFL);
+        byte[] receipt = cache.get(key);
+        if (receipt != null) {
+            hits++;
+            return receipt;
+        }
+        misses++;
+        receipt = layout(invoice).getBytes(StandardCharsets.UTF_8);
+        cache.put(key, receipt);
+        return receipt;
+    }
+
+    /**
+     * Gets the number of receipts served from the cache.
+     * @return The hit count.
+     */
+    public synchronized long getHitCount() { return hits; }
+
+    /**
+     * Gets the number of receipts that had to be rendered.
+     * @return The miss count.
+     */
+    public synchronized long getMissCount() { return misses; }
+
+    // --- Internals ---
+
+    /**
+     * Formats the receipt text of an invoice.
+     */
+    private static String layout(Invoice invoice) {
+        InvoiceItem[] items = (invoice.items != null) ? invoice.items : new InvoiceItem[0];
+        StringBuilder sb = new StringBuilder(256 + items.length * 96);
+        center(sb, "POSSPORT STORE");
+        center(sb, "Factura #" + invoice.id);
+        sb.append(invoice.date).append('\n');
+        sb.append("Cajero: ").append(invoice.cashier).append('\n');
+        sb.append(RULE).append('\n');
+
+        for (InvoiceItem item : items) {
+            sb.append(item.productName).append('\n');
+            row(sb, "  " + item.quantity + " x " + Money.format(item.getUnitCents()),
+                Money.format(item.lineCents));
+        }
+
+        long subtotal = invoice.totalCents;
+        long iva = TaxCalculator.IVA.taxOf(subtotal);
+        sb.append(RULE).append('\n');
+        if (invoice.globalDiscount > 0) {
+            row(sb, "Descuento global:", String.format("%.0f%%", invoice.globalDiscount * 100));
+        }
+        row(sb, "Subtotal:", Money.format(subtotal));
+        row(sb, TaxCalculator.IVA.getLabel() + ":", Money.format(iva));
+        row(sb, "TOTAL:", Money.format(subtotal + iva));
+        sb.append(RULE).append('\n');
+        center(sb, "¡Gracias por su compra!");
+        return sb.toString();
+    }
+
+    private static void center(StringBuilder sb, String text) {
+        int pad = Math.max(0, (WIDTH - text.length()) / 2);
+        sb.append(" ".repeat(pad)).append(text).append('\n');
+    }
+
+    private static void row(StringBuilder sb, String left, String right) {
+        int pad = Math.max(1, WIDTH - left.length() - right.length());
+        sb.append(left).append(" ".repeat(pad)).append(right).append('\n');
+    }
+}
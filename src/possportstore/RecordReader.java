@@ -0,0 +1,141 @@
+package possportstore;
+
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Streaming line reader for the store's data files.
+ * <p>
+ * Reads the file through a {@link FileChannel} into one reusable byte buffer and
+ * splits lines on {@code '\n'} directly in the bytes, so the only allocation per
+ * line is the returned String. The byte offset of every line is known, which lets
+ * callers index and seek within the file. A trailing {@code '\r'} is dropped.
+ * </p>
+ * <p>
+ * Splitting on bytes is valid for UTF-8 and for the single-byte platform charsets
+ * the text files may have been written with.
+ * </p>
+ */
+public class RecordReader implements Closeable {
+
+    private static final int BUFFER_SIZE = 64 * 1024;
+
+    private final FileChannel channel;
+    private final Charset charset;
+    private final boolean completeLinesOnly;
+
+    private byte[] bytes = new byte[BUFFER_SIZE];
+    private long bufferOffset;  // File offset of bytes[0]
+    private int start;          // Start of the next line in bytes
+    private int scan;           // Where the search for the next newline resumes
+    private int limit;          // End of valid data in bytes
+    private boolean eof;
+    private long lineOffset = -1;
+
+    /**
+     * Opens a file for reading.
+     *
+     * @param file              The file to read.
+     * @param charset           The charset the file was written with.
+     * @param completeLinesOnly If true, a last line without its newline (torn by a crash) is ignored.
+     * @throws IOException if the file cannot be opened.
+     */
+    public RecordReader(File file, Charset charset, boolean completeLinesOnly) throws IOException {
+        this.channel = FileChannel.open(file.toPath(), StandardOpenOption.READ);
+        this.charset = charset;
+        this.completeLinesOnly = completeLinesOnly;
+    }
+
+    /**
+     * Moves the reader to a byte offset, which must be the start of a line.
+     * @param offset The byte offset.
+     * @throws IOException if the channel cannot be positioned.
+     */
+    public void seek(long offset) throws IOException {
+        channel.position(offset);
+        bufferOffset = offset;
+        start = 0;
+        scan = 0;
+        limit = 0;
+        eof = false;
+    }
+
+    /**
+     * Reads the next line.
+     * @return The line without its terminator, or null at the end of the file.
+     * @throws IOException if the file cannot be read.
+     */
+    public String readLine() throws IOException {
+        while (true) {
+            for (int i = scan; i < limit; i++) {
+                if (bytes[i] == '\n') {
+                    return takeLine(i, i + 1);
+                }
+            }
+            scan = limit;
+
+            if (eof) {
+                if (start < limit && !completeLinesOnly) {
+                    return takeLine(limit, limit);
+                }
+                return null;
+            }
+            fill();
+        }
+    }
+
+    /**
+     * Gets the byte offset at which the last line returned by {@link #readLine()} starts.
+     * @return The offset, or -1 if no line has been read.
+     */
+    public long getLineOffset() { return lineOffset; }
+
+    /**
+     * Gets the byte offset just after the last line returned.
+     * @return The offset of the next unread line.
+     */
+    public long getPosition() { return bufferOffset + start; }
+
+    @Override
+    public void close() throws IOException {
+        channel.close();
+    }
+
+    // --- Internals ---
+
+    private String takeLine(int end, int next) {
+        int length = end - start;
+        if (length > 0 && bytes[end - 1] == '\r') length--;
+        String line = new String(bytes, start, length, charset);
+        lineOffset = bufferOffset + start;
+        start = next;
+        scan = next;
+        return line;
+    }
+
+    /**
+     * Moves the unread bytes to the front of the buffer and reads more from the channel.
+     * The buffer grows only if a single line does not fit in it.
+     */
+    private void fill() throws IOException {
+        if (start > 0) {
+            System.arraycopy(bytes, start, bytes, 0, limit - start);
+            bufferOffset += start;
+            scan -= start;
+            limit -= start;
+            start = 0;
+        }
+        if (limit == bytes.length) {
+            bytes = java.util.Arrays.copyOf(bytes, bytes.length * 2);
+        }
+        int read = channel.read(ByteBuffer.wrap(bytes, limit, bytes.length - limit));
+        if (read == -1) {
+            eof = true;
+        } else {
+            limit += read;
+        }
+    }
+}
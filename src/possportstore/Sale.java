@@ -2,65 +2,91 @@ package possportstore;
 
 import java.io.*;
 import java.util.*;
-import javax.swing.JOptionPane;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
 import possportstore.CurrentSale.CartItem;
 
 /**
  * Manages the history of sales invoices and their file persistence.
  * <p>
  * This class handles the creation, storage, retrieval, and modification 
- * of {@link Invoice} objects. It uses fixed arrays to store invoices and invoice items.
+ * of {@link Invoice} objects. Invoices are persisted through an append-only
+ * {@link InvoiceLog} and held in a paged {@link InvoiceStore}, which keeps only
+ * recent invoices in memory and pages older ones in from disk on demand.
+ * </p>
+ * <p>
+ * Safe to use from several registers at once: invoice IDs come from an atomic
+ * sequence, and an ID is taken and its invoice queued for the group-commit
+ * {@link InvoiceWriter} under one lock, so the log always holds invoices in ID order.
  * </p>
  */
 public class Sale {
     
     private static final String FILE_NAME = "invoices.txt";
-    private static final int MAX_INVOICES = 100;
+    private static final String LOG_DIRECTORY = "invoices";
+    private static final int HOT_INVOICES = 1000;
+    private static final int PAGE_SIZE = 500;
+    private static final int MAX_CACHED_PAGES = 20;
     
-    private static Invoice[] invoices = new Invoice[MAX_INVOICES]; 
-    private static int invoiceCount = 0;
-    private static int nextInvoiceId = 1;
+    private static final InvoiceStore invoices = new InvoiceStore(
+            new InvoiceLog(new File(LOG_DIRECTORY), new File(FILE_NAME)), HOT_INVOICES, PAGE_SIZE, MAX_CACHED_PAGES);
+    private static final AtomicInteger nextInvoiceId = new AtomicInteger(1);
+    private static final Object sequenceLock = new Object();
     
     /**
      * Inner class representing a single sales invoice.
      * Contains header information, global discount info, and a fixed array of sold items.
+     * The total is always the sum of the items' amounts.
      */
     public static class Invoice {
         public final int id;
-        public final double total;
+        public final long totalCents; // Before VAT
         public final String date;
         public final String cashier;
         public final double globalDiscount; // Stored as percentage (e.g., 0.10)
         public final InvoiceItem[] items; 
+        public final int version; // Number of returns applied; not stored, replaying the returns restores it
 
         /**
          * Constructs a new Invoice.
          */
-        public Invoice(int id, double total, String date, String cashier, double globalDiscount, InvoiceItem[] items) {
+        public Invoice(int id, long totalCents, String date, String cashier, double globalDiscount, InvoiceItem[] items) {
+            this(id, totalCents, date, cashier, globalDiscount, items, 0);
+        }
+
+        /**
+         * Constructs a revision of an Invoice.
+         * @param version The number of returns applied to the original invoice.
+         */
+        public Invoice(int id, long totalCents, String date, String cashier, double globalDiscount, InvoiceItem[] items, int version) {
             this.id = id;
-            this.total = total;
+            this.totalCents = totalCents;
             this.date = date;
             this.cashier = cashier;
             this.globalDiscount = globalDiscount;
             this.items = items;
+            this.version = version;
         }
 
-        public double getTotal() { return total; }
+        public long getTotalCents() { return totalCents; }
         public int getId() { return id; }
         public String getCashier() { return cashier; }
         public String getDate() { return date; }
         public double getGlobalDiscount() { return globalDiscount; }
         public InvoiceItem[] getItems() { return items; }
+        public int getVersion() { return version; }
 
         /**
          * Formats the invoice for file storage.
-         * Format: id;total;date;cashier;globalDisc;itemId:qty:price:name:itemDisc|...
+         * Format: id;total;date;cashier;globalDisc;itemId:qty:unitPrice:name:itemDisc:lineCents|...
+         * The unit price is only informative; the line amount in cents is what was charged.
          */
         @Override
         public String toString() {
             StringBuilder sb = new StringBuilder();
             sb.append(id).append(";")
-              .append(total).append(";")
+              .append(Money.toPlainString(totalCents)).append(";")
               .append(date).append(";")
               .append(cashier).append(";")
               .append(globalDiscount).append(";");
@@ -71,9 +97,10 @@ public class Sale {
                     if (item != null) {
                         sb.append(item.productId).append(":")
                           .append(item.quantity).append(":")
-                          .append(item.unitPrice).append(":")
+                          .append(Money.toPlainString(item.getUnitCents())).append(":")
                           .append(item.productName).append(":")
-                          .append(item.discountPercent);
+                          .append(item.discountPercent).append(":")
+                          .append(item.lineCents);
                         
                         if (i < items.length - 1) {
                             sb.append("|");
@@ -92,229 +119,366 @@ public class Sale {
         public String productId;
         public String productName;
         public int quantity;
-        public double unitPrice; // This is the EFFECTIVE price paid per unit
+        public long lineCents; // What was charged for the line, after every discount
         public double discountPercent; // The specific item discount
 
-        public InvoiceItem(String productId, String productName, int quantity, double unitPrice, double discountPercent) {
+        public InvoiceItem(String productId, String productName, int quantity, long lineCents, double discountPercent) {
             this.productId = productId;
             this.productName = productName;
             this.quantity = quantity;
-            this.unitPrice = unitPrice;
+            this.lineCents = lineCents;
             this.discountPercent = discountPercent;
         }
+
+        /**
+         * Gets the price paid per unit, for display.
+         * @return The line amount divided by the quantity, rounded to the cent.
+         */
+        public long getUnitCents() {
+            return (quantity > 0) ? share(1, quantity) : lineCents;
+        }
+
+        /**
+         * Gets the amount refunded for returning units of this line: their share of the
+         * line amount, rounded to the cent. Returning the remaining units refunds
+         * whatever is left of the line, so the refunds of a line add up to what was charged.
+         * @param returnedQty The returned quantity.
+         * @return The refund in cents.
+         */
+        public long getReturnCents(int returnedQty) {
+            if (returnedQty >= quantity) return lineCents;
+            return share(returnedQty, quantity);
+        }
+
+        /**
+         * Gets lineCents * part / whole, rounding halves away from zero.
+         */
+        private long share(int part, int whole) {
+            long product = Math.multiplyExact(Math.abs(lineCents), part);
+            long rounded = (product + whole / 2) / whole;
+            return (lineCents < 0) ? -rounded : rounded;
+        }
     }
 
     /**
-     * Creates a new invoice from the transaction total and cart items.
+     * Creates a new invoice and queues it to be written, without waiting for the disk.
      * <p>
-     * IMPORTANT: This calculates the effective unit price for history.
-     * Effective Price = Base Price * (1 - ItemDisc) * (1 - GlobalDisc).
-     * This ensures refunds are accurate to what was paid.
+     * The invoice is batched with those of other registers into one write and one
+     * fsync. If it cannot be written its ID is left unused.
      * </p>
      *
-     * @param total          The total sale amount.
      * @param cashierName    The name of the cashier.
      * @param cartItems      The array of items from the current cart.
      * @param globalDiscount The global discount percentage applied.
-     * @return The created {@link Invoice} object.
+     * @return A future completed with the invoice once it is durable, or exceptionally
+     *         with an {@link IOException} if it could not be written.
      */
-    public static Invoice createInvoice(double total, String cashierName, CartItem[] cartItems, double globalDiscount) {
-        if (invoiceCount >= invoices.length) {
-            JOptionPane.showMessageDialog(null, "Invoice limit reached.", "Error", JOptionPane.ERROR_MESSAGE);
-            return null;
-        }
-        
+    public static CompletableFuture<Invoice> submitInvoice(String cashierName, CartItem[] cartItems, double globalDiscount) {
         String date = new Date().toString();
         
         int itemCount = (cartItems != null) ? cartItems.length : 0;
         InvoiceItem[] invoiceItems = new InvoiceItem[itemCount];
+        long[] lineCents = chargedCents(cartItems, globalDiscount);
+        long totalCents = 0;
         
-        if (cartItems != null) {
-            for (int i = 0; i < itemCount; i++) {
-                CartItem ci = cartItems[i];
-                
-                // Calculate the final price the customer paid per unit
-                // Base * ItemDisc * GlobalDisc
-                double effectivePrice = ci.getProduct().getPrice() * (1.0 - ci.getDiscountPercent()) * (1.0 - globalDiscount);
-                
-                invoiceItems[i] = new InvoiceItem(
-                    ci.getProduct().getIdProduct(),
-                    ci.getProduct().getName(),
-                    ci.getQuantity(),
-                    effectivePrice,
-                    ci.getDiscountPercent()
-                );
-            }
+        for (int i = 0; i < itemCount; i++) {
+            CartItem ci = cartItems[i];
+            invoiceItems[i] = new InvoiceItem(
+                ci.getProduct().getIdProduct(),
+                ci.getProduct().getName(),
+                ci.getQuantity(),
+                lineCents[i],
+                ci.getDiscountPercent()
+            );
+            totalCents += lineCents[i];
         }
 
-        Invoice newInvoice = new Invoice(nextInvoiceId++, total, date, cashierName, globalDiscount, invoiceItems);
-        
-        invoices[invoiceCount++] = newInvoice;
-        saveInvoicesToFile();
-        
-        return newInvoice;
+        // Not the store's lock: the writer needs that to publish
+        synchronized (sequenceLock) {
+            Invoice newInvoice = new Invoice(nextInvoiceId.getAndIncrement(), totalCents, date, cashierName, globalDiscount, invoiceItems);
+            return invoices.submit(newInvoice);
+        }
     }
     
+    /**
+     * Splits what a cart is charged among its lines.
+     * <p>
+     * The cart is charged its lines' subtotals (after item discounts) with the global
+     * discount applied once to their sum, like {@link CurrentSale} shows it. Each line
+     * gets its own subtotal with the global discount applied, and the cents lost or
+     * gained by rounding each line on its own are given back one per line from the
+     * first, so the lines add up to exactly the cart total.
+     * </p>
+     * @return The amount of each line, in cents.
+     */
+    private static long[] chargedCents(CartItem[] cartItems, double globalDiscount) {
+        if (cartItems == null) return new long[0];
+        long[] lineCents = new long[cartItems.length];
+        long subtotal = 0;
+        long sum = 0;
+        for (int i = 0; i < cartItems.length; i++) {
+            long lineSubtotal = cartItems[i].getItemSubtotalCents();
+            subtotal += lineSubtotal;
+            lineCents[i] = Money.discount(lineSubtotal, globalDiscount);
+            sum += lineCents[i];
+        }
+        long difference = Money.discount(subtotal, globalDiscount) - sum; // At most one cent per line
+        for (int i = 0; difference != 0; i = (i + 1) % lineCents.length) {
+            long step = Long.signum(difference);
+            if (step < 0 && lineCents[i] <= 0) continue; // Never below zero
+            lineCents[i] += step;
+            difference -= step;
+        }
+        return lineCents;
+    }
+
     /**
      * Processes a return by updating the specific invoice.
-     * Same logic as before, but preserving the new structure.
+     * The return is persisted as an appended adjustment record.
+     * @return true if the return was applied and saved.
      */
     public static boolean processItemReturn(int invoiceId, String productId, int returnedQty) {
-        int invoiceIndex = -1;
-        for (int i = 0; i < invoiceCount; i++) {
-            if (invoices[i].getId() == invoiceId) {
-                invoiceIndex = i;
-                break;
+        return processItemReturn(invoiceId, productId, returnedQty, null);
+    }
+    
+    /**
+     * Processes a return and reports the invoice before and after it.
+     * <p>
+     * Reading, updating and recording the invoice happen under the store's lock, so two
+     * returns on the same invoice cannot both start from the same old state.
+     * </p>
+     *
+     * @param invoiceId   The invoice ID.
+     * @param productId   The returned product.
+     * @param returnedQty The returned quantity.
+     * @param change      Receives {before, after} if the return was applied; may be null.
+     * @return true if the invoice was updated and the return saved; false if the invoice
+     *         has no such line, the quantity exceeds it, or the return could not be written.
+     */
+    static boolean processItemReturn(int invoiceId, String productId, int returnedQty, Invoice[] change) {
+        synchronized (invoices) {
+            Invoice invoice = invoices.findById(invoiceId);
+            if (invoice == null || returnedQty <= 0 || returnedQty > soldQuantity(invoice, productId)) return false;
+            
+            Invoice updatedInvoice = applyReturn(invoice, productId, returnedQty);
+            if (updatedInvoice == null) return false;
+            
+            try {
+                invoices.recordReturn(updatedInvoice, productId, returnedQty);
+            } catch (IOException e) {
+                System.err.println("ERROR saving return for invoice " + invoiceId + ": " + e.getMessage());
+                return false;
+            }
+            
+            if (change != null) {
+                change[0] = invoice;
+                change[1] = updatedInvoice;
             }
+            return true;
         }
-        
-        if (invoiceIndex == -1) return false;
-        
-        Invoice oldInvoice = invoices[invoiceIndex];
+    }
+    
+    /**
+     * Gets the quantity of a product still on an invoice.
+     * @return The quantity, or 0 if the product is not on the invoice.
+     */
+    private static int soldQuantity(Invoice invoice, String productId) {
+        if (invoice.getItems() == null) return 0;
+        for (InvoiceItem item : invoice.getItems()) {
+            if (item != null && item.productId.equals(productId)) return item.quantity;
+        }
+        return 0;
+    }
+    
+    /**
+     * Builds the state of an invoice after returning units of one of its items.
+     * The item's {@link InvoiceItem#getReturnCents(int) share} for the returned units is
+     * taken off the item and the total; lines whose quantity drops to zero are removed.
+     *
+     * @param oldInvoice  The invoice before the return.
+     * @param productId   The returned product.
+     * @param returnedQty The returned quantity.
+     * @return The updated {@link Invoice}, one version newer, or null if the product is not on the invoice.
+     */
+    static Invoice applyReturn(Invoice oldInvoice, String productId, int returnedQty) {
         InvoiceItem[] oldItems = oldInvoice.getItems();
         
         int itemIndex = -1;
         int activeItemCount = 0;
         
         for (int i = 0; i < oldItems.length; i++) {
+            if (oldItems[i] == null) continue;
+            activeItemCount++;
             if (oldItems[i].productId.equals(productId)) {
                 itemIndex = i;
             }
-            if (oldItems[i] != null) activeItemCount++; 
         }
         
-        if (itemIndex == -1) return false;
+        if (itemIndex == -1) return null;
         
         InvoiceItem targetItem = oldItems[itemIndex];
         int newQuantity = targetItem.quantity - returnedQty;
+        long refundCents = targetItem.getReturnCents(returnedQty);
         
         int newSize = (newQuantity <= 0) ? activeItemCount - 1 : activeItemCount;
         InvoiceItem[] newItems = new InvoiceItem[newSize];
         
         int k = 0;
-        double newTotal = 0.0;
-        
         for (int i = 0; i < oldItems.length; i++) {
             if (i == itemIndex) {
                 if (newQuantity > 0) {
-                    InvoiceItem updatedItem = new InvoiceItem(
+                    newItems[k++] = new InvoiceItem(
                         targetItem.productId, 
                         targetItem.productName, 
                         newQuantity, 
-                        targetItem.unitPrice,
+                        targetItem.lineCents - refundCents,
                         targetItem.discountPercent
                     );
-                    newItems[k++] = updatedItem;
-                    newTotal += updatedItem.quantity * updatedItem.unitPrice;
                 }
-            } else {
+            } else if (oldItems[i] != null) {
                 newItems[k++] = oldItems[i];
-                newTotal += oldItems[i].quantity * oldItems[i].unitPrice;
             }
         }
         
-        Invoice updatedInvoice = new Invoice(
+        return new Invoice(
             oldInvoice.id, 
-            newTotal, 
+            oldInvoice.totalCents - refundCents, 
             oldInvoice.date, 
             oldInvoice.cashier,
             oldInvoice.globalDiscount,
-            newItems
+            newItems,
+            oldInvoice.version + 1
         );
-        
-        invoices[invoiceIndex] = updatedInvoice;
-        saveInvoicesToFile();
-        
-        return true;
     }
     
     /**
-     * Loads invoices from the persistence file at startup.
+     * Loads the invoice history at startup.
+     * <p>
+     * Only the most recent invoices are read into memory; older segments are
+     * paged in later if they are ever needed.
+     * </p>
      */
     public static void loadInvoicesFromFile() {
-        File file = new File(FILE_NAME);
-        if (!file.exists()) return;
-        
-        int maxId = 0;
-        try (Scanner fileScanner = new Scanner(file)) {
-            while (fileScanner.hasNextLine() && invoiceCount < invoices.length) {
-                String line = fileScanner.nextLine();
-                String[] data = line.split(";");
-                
-                // Now expecting 6 parts for header due to globalDiscount
-                // id;total;date;cashier;globalDisc;items
-                if (data.length >= 5) {
-                    int id = Integer.parseInt(data[0]);
-                    double total = Double.parseDouble(data[1]);
-                    String date = data[2];
-                    String cashier = data[3];
-                    
-                    // Check if format has global discount (backward compatibility check)
-                    double globalDisc = 0.0;
-                    String itemsString = "";
-                    
-                    // Logic to handle old format vs new format
-                    if (data.length >= 6) {
-                        // New format
-                        try {
-                            globalDisc = Double.parseDouble(data[4]);
-                        } catch(Exception e) { globalDisc = 0.0; }
-                        itemsString = data[5];
-                    } else {
-                        // Old format (header length 5) - items are at index 4
-                        itemsString = data[4];
-                    }
-                    
-                    InvoiceItem[] items = new InvoiceItem[0];
-                    
-                    if (!itemsString.isEmpty()) {
-                        String[] itemsRaw = itemsString.split("\\|");
-                        items = new InvoiceItem[itemsRaw.length];
-                        
-                        for (int i = 0; i < itemsRaw.length; i++) {
-                            String[] parts = itemsRaw[i].split(":");
-                            // id:qty:price:name:disc
-                            if (parts.length >= 4) {
-                                double itemDisc = (parts.length > 4) ? Double.parseDouble(parts[4]) : 0.0;
-                                items[i] = new InvoiceItem(
-                                    parts[0], 
-                                    parts[3], 
-                                    Integer.parseInt(parts[1]), 
-                                    Double.parseDouble(parts[2]),
-                                    itemDisc
-                                );
-                            }
-                        }
-                    }
-                    
-                    invoices[invoiceCount++] = new Invoice(id, total, date, cashier, globalDisc, items);
-                    if (id > maxId) maxId = id;
-                }
-            }
-        } catch (Exception e) {
-             System.err.println("ERROR loading invoices: " + e.getMessage());
+        synchronized (sequenceLock) {
+            invoices.load();
+            nextInvoiceId.set(invoices.getLastInvoiceId() + 1);
         }
-        nextInvoiceId = maxId + 1;
     }
     
-    public static void saveInvoicesToFile() {
-        try (PrintWriter writer = new PrintWriter(FILE_NAME)) {
-            for (int i = 0; i < invoiceCount; i++) {
-                writer.println(invoices[i].toString());
-            }
-        } catch (FileNotFoundException e) {
-             System.err.println("ERROR saving invoices: " + e.getMessage());
+    /**
+     * Parses an invoice line.
+     * Format: id;total;date;cashier;globalDisc;itemId:qty:unitPrice:name:itemDisc:lineCents|...
+     * (older lines have no globalDisc field, and older items no item discount or line
+     * amount; their line amount is the unit price times the quantity).
+     *
+     * @param line The invoice line.
+     * @return The {@link Invoice}, or null if the line has too few fields.
+     */
+    static Invoice parseInvoice(String line) {
+        // Now expecting 6 parts for header due to globalDiscount
+        // id;total;date;cashier;globalDisc;items
+        FieldCursor fields = new FieldCursor(line);
+        int id = fields.nextInt(';');
+        long totalCents = Money.of(fields.nextDouble(';'));
+        String date = fields.nextString(';');
+        String cashier = fields.nextString(';');
+        if (!fields.hasNext()) return null;
+        
+        // Check if format has global discount (backward compatibility check)
+        double globalDisc = 0.0;
+        
+        // Logic to handle old format vs new format
+        int fifthField = fields.mark();
+        String discField = fields.nextString(';');
+        if (fields.getDelimiter() == ';') {
+            // New format
+            try {
+                globalDisc = Double.parseDouble(discField);
+            } catch(Exception e) { globalDisc = 0.0; }
+        } else {
+            // Old format (header length 5) - items are the fifth field
+            fields.rewind(fifthField);
+        }
+        
+        InvoiceItem[] items = new InvoiceItem[fields.countRemaining('|')];
+        
+        for (int i = 0; i < items.length; i++) {
+            // id:qty:price:name:disc
+            String productId = fields.nextString(':', '|');
+            if (fields.getDelimiter() != ':') continue;
+            int quantity = fields.nextInt(':', '|');
+            double unitPrice = fields.nextDouble(':', '|');
+            if (fields.getDelimiter() != ':') continue; // Fewer than 4 parts
+            String productName = fields.nextString(':', '|');
+            double itemDisc = (fields.getDelimiter() == ':') ? fields.nextDouble(':', '|') : 0.0;
+            long lineCents = (fields.getDelimiter() == ':') ? fields.nextLong(':', '|') : Money.times(Money.of(unitPrice), quantity);
+            fields.skipPast('|');
+            
+            items[i] = new InvoiceItem(productId, productName, quantity, lineCents, itemDisc);
         }
+        
+        return new Invoice(id, totalCents, date, cashier, globalDisc, items);
     }
     
-    public static Invoice[] getInvoicesForDisplay() {
-        return Arrays.copyOf(invoices, invoiceCount);
+    /**
+     * Gets the ID of the last invoice created, which may still be waiting to be written.
+     * @return The last invoice ID, or 0 if there are none.
+     */
+    public static int getLastInvoiceId() {
+        return nextInvoiceId.get() - 1;
     }
     
+    /**
+     * Gets the number of invoices in the history.
+     * @return The invoice count.
+     */
+    public static int getInvoiceCount() {
+        return invoices.size();
+    }
+    
+    /**
+     * Gets the invoice at a position in the history (0 = oldest).
+     * @param position The position.
+     * @return The {@link Invoice}, or null if out of range.
+     */
+    public static Invoice getInvoiceAt(int position) {
+        return invoices.get(position);
+    }
+    
+    /**
+     * Gets one page of the invoice history, oldest first.
+     * @param offset The position of the first invoice.
+     * @param limit  The maximum number of invoices.
+     * @return The invoices in the page.
+     */
+    public static Invoice[] getInvoicesPage(int offset, int limit) {
+        return invoices.getPage(offset, limit);
+    }
+    
+    /**
+     * Streams the whole invoice history, oldest first, without copying it into an array.
+     * @param action Callback invoked once per invoice.
+     */
+    public static void forEachInvoice(Consumer<Invoice> action) {
+        invoices.forEach(action);
+    }
+    
+    /**
+     * Adds up the sales of the whole history, with returns applied.
+     * Closed log segments are summed from their saved summaries rather than read.
+     * @return The sales summary.
+     */
+    public static SalesSummary summarizeInvoices() {
+        return invoices.summarize();
+    }
+    
+    /**
+     * Finds an invoice by ID anywhere in the history.
+     * Old invoices are decoded from the memory-mapped archive one at a time; the history is never loaded.
+     * @param id The invoice ID.
+     * @return The invoice with its returns applied, or null if not found.
+     */
     public static Invoice findInvoiceById(int id) {
-        for(int i=0; i<invoiceCount; i++) {
-            if(invoices[i].getId() == id) return invoices[i];
-        }
-        return null;
+        return invoices.findById(id);
     }
-}
\ No newline at end of file
+}
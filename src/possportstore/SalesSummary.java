@@ -0,0 +1,143 @@
+package possportstore;
+
+import java.io.*;
+import java.util.*;
+import possportstore.Sale.Invoice;
+import possportstore.Sale.InvoiceItem;
+
+/**
+ * Sales totals of a run of invoices: invoice count, revenue, and units and revenue per product.
+ * <p>
+ * A closed invoice segment never changes, so its summary is saved next to it in a
+ * {@code .sum} file when it is sealed, and {@link StoreMetrics} adds those files up at
+ * startup instead of reading every invoice. Products are kept by ID rather than by
+ * category, so a saved summary does not depend on the catalog. Amounts are whole
+ * cents ({@link Money}).
+ * </p>
+ */
+public class SalesSummary {
+
+    /**
+     * Units sold and revenue of one product.
+     */
+    public static class ProductSales {
+        private int units;
+        private long cents;
+
+        public int getUnits() { return units; }
+        public long getCents() { return cents; }
+    }
+
+    private static final int FILE_MAGIC = 0x53554D31; // "SUM1"
+
+    private int invoiceCount;
+    private long revenueCents;
+    private final Map<String, ProductSales> products = new HashMap<>();
+
+    /**
+     * Gets the number of invoices summed.
+     * @return The invoice count.
+     */
+    public int getInvoiceCount() { return invoiceCount; }
+
+    /**
+     * Gets the revenue of the invoices, before VAT, in cents.
+     * @return The revenue in cents.
+     */
+    public long getRevenueCents() { return revenueCents; }
+
+    /**
+     * Gets the sales of every product sold.
+     * @return The sales by product ID, read-only.
+     */
+    public Map<String, ProductSales> getProducts() { return Collections.unmodifiableMap(products); }
+
+    /**
+     * Adds (sign 1) or removes (sign -1) an invoice.
+     * @param invoice The invoice.
+     * @param sign    1 to add, -1 to remove.
+     */
+    public void add(Invoice invoice, int sign) {
+        if (invoice == null) return;
+        invoiceCount += sign;
+        revenueCents += sign * invoice.getTotalCents();
+
+        if (invoice.getItems() == null) return;
+        for (InvoiceItem item : invoice.getItems()) {
+            if (item == null) continue;
+            ProductSales sales = products.computeIfAbsent(item.productId, k -> new ProductSales());
+            sales.units += sign * item.quantity;
+            sales.cents += sign * item.lineCents;
+        }
+    }
+
+    /**
+     * Adds another summary to this one.
+     * @param other The summary to add; ignored if null.
+     */
+    public void addAll(SalesSummary other) {
+        if (other == null) return;
+        invoiceCount += other.invoiceCount;
+        revenueCents += other.revenueCents;
+        for (Map.Entry<String, ProductSales> entry : other.products.entrySet()) {
+            ProductSales sales = products.computeIfAbsent(entry.getKey(), k -> new ProductSales());
+            sales.units += entry.getValue().units;
+            sales.cents += entry.getValue().cents;
+        }
+    }
+
+    // --- Persistence ---
+
+    /**
+     * Saves the summary to a file, through a temporary file so a crash never leaves a partial summary.
+     * @param file The summary file.
+     * @throws IOException if the file could not be written.
+     */
+    public void write(File file) throws IOException {
+        File temp = new File(file.getPath() + ".tmp");
+        try (FileOutputStream fos = new FileOutputStream(temp);
+             DataOutputStream out = new DataOutputStream(new BufferedOutputStream(fos))) {
+            out.writeInt(FILE_MAGIC);
+            out.writeInt(invoiceCount);
+            out.writeLong(revenueCents);
+            out.writeInt(products.size());
+            for (Map.Entry<String, ProductSales> entry : products.entrySet()) {
+                out.writeUTF(entry.getKey());
+                out.writeInt(entry.getValue().units);
+                out.writeLong(entry.getValue().cents);
+            }
+            out.flush();
+            fos.getFD().sync();
+        }
+        java.nio.file.Files.move(temp.toPath(), file.toPath(),
+                java.nio.file.StandardCopyOption.REPLACE_EXISTING, java.nio.file.StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    /**
+     * Loads a summary saved with {@link #write(File)}.
+     * @param file The summary file.
+     * @return The summary, or null if the file is missing or unreadable.
+     */
+    public static SalesSummary read(File file) {
+        if (!file.exists()) return null;
+
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(file)))) {
+            if (in.readInt() != FILE_MAGIC) return null;
+            SalesSummary summary = new SalesSummary();
+            summary.invoiceCount = in.readInt();
+            summary.revenueCents = in.readLong();
+            int entries = in.readInt();
+            for (int i = 0; i < entries; i++) {
+                ProductSales sales = new ProductSales();
+                String productId = in.readUTF();
+                sales.units = in.readInt();
+                sales.cents = in.readLong();
+                summary.products.put(productId, sales);
+            }
+            return summary;
+        } catch (IOException e) {
+            System.err.println("ERROR reading sales summary " + file.getName() + ": " + e.getMessage());
+            return null;
+        }
+    }
+}
@@ -0,0 +1,17 @@
+package possportstore;
+
+/**
+ * Receives notice of changes to a product's stock level.
+ */
+@FunctionalInterface
+public interface StockListener {
+
+    /**
+     * Called after the stock of a product changes.
+     *
+     * @param product  The product.
+     * @param oldStock The stock before the change.
+     * @param newStock The stock after the change.
+     */
+    void stockChanged(Product product, int oldStock, int newStock);
+}
@@ -0,0 +1,201 @@
+package possportstore;
+
+import java.util.*;
+import possportstore.Sale.Invoice;
+import possportstore.Sale.InvoiceItem;
+
+/**
+ * Running sales aggregates behind the dashboard.
+ * <p>
+ * Revenue, invoice count, units sold per product, revenue per category and the top
+ * seller are updated as each sale or return happens, so reading them never walks the
+ * invoice history. They are first built at startup from the saved {@link SalesSummary}
+ * of each closed invoice segment, so only the open segment's invoices are read.
+ * Low-stock products are tracked separately by {@link LowStockTracker}.
+ * Revenue is summed in whole cents ({@link Money}), so taking a return back out
+ * leaves exactly the revenue there was before the sale.
+ * </p>
+ */
+public class StoreMetrics {
+
+    /**
+     * Product categories shown in the sales breakdown.
+     */
+    public enum Category {
+        SHOES, CLOTHES, ACCESSORIES;
+
+        /**
+         * Gets the category of a product.
+         * @param p The product.
+         * @return The category, or null for an unknown product type.
+         */
+        public static Category of(Product p) {
+            if (p instanceof Shoe) return SHOES;
+            if (p instanceof Clothe) return CLOTHES;
+            if (p instanceof Accessories) return ACCESSORIES;
+            return null;
+        }
+    }
+
+    private final ProductCatalog catalog;
+
+    private long revenueCents;
+    private int invoiceCount;
+    private final long[] categoryRevenueCents = new long[Category.values().length];
+    private final Map<String, Integer> unitsByProduct = new HashMap<>();
+    private String topProductId;
+    private int topUnits;
+    private boolean topStale;
+
+    /**
+     * Creates an empty aggregator for a catalog.
+     * @param catalog The catalog used to classify sold products by category.
+     */
+    public StoreMetrics(ProductCatalog catalog) {
+        this.catalog = catalog;
+    }
+
+    /**
+     * Recomputes every aggregate from the invoice history's sales summary.
+     * Called once at startup.
+     */
+    public synchronized void rebuild() {
+        SalesSummary summary = Sale.summarizeInvoices();
+        revenueCents = summary.getRevenueCents();
+        invoiceCount = summary.getInvoiceCount();
+        Arrays.fill(categoryRevenueCents, 0);
+        unitsByProduct.clear();
+        for (Map.Entry<String, SalesSummary.ProductSales> entry : summary.getProducts().entrySet()) {
+            SalesSummary.ProductSales sales = entry.getValue();
+            unitsByProduct.put(entry.getKey(), sales.getUnits());
+            Category category = Category.of(catalog.findById(entry.getKey()));
+            if (category != null) {
+                categoryRevenueCents[category.ordinal()] += sales.getCents();
+            }
+        }
+        topProductId = null;
+        topUnits = 0;
+        topStale = true; // Found on first read
+    }
+
+    // --- Updates ---
+
+    /**
+     * Adds a new invoice to the sales aggregates.
+     * @param invoice The invoice just created.
+     */
+    public synchronized void recordInvoice(Invoice invoice) {
+        apply(invoice, 1);
+    }
+
+    /**
+     * Replaces an invoice's contribution after a return.
+     * @param before The invoice before the return.
+     * @param after  The invoice after the return.
+     */
+    public synchronized void recordReturn(Invoice before, Invoice after) {
+        apply(before, -1);
+        apply(after, 1);
+    }
+
+    // --- Queries ---
+
+    /**
+     * Gets the total revenue of all invoices, before VAT.
+     * @return The revenue.
+     */
+    public synchronized double getRevenue() { return Money.toDouble(revenueCents); }
+
+    /**
+     * Gets the total revenue of all invoices, before VAT, in cents.
+     * @return The revenue in cents.
+     */
+    public synchronized long getRevenueCents() { return revenueCents; }
+
+    /**
+     * Gets the number of invoices.
+     * @return The invoice count.
+     */
+    public synchronized int getInvoiceCount() { return invoiceCount; }
+
+    /**
+     * Gets the revenue of a product category, before VAT.
+     * @param category The category.
+     * @return The category revenue.
+     */
+    public synchronized double getCategoryRevenue(Category category) {
+        return Money.toDouble(categoryRevenueCents[category.ordinal()]);
+    }
+
+    /**
+     * Gets the number of units sold of a product, net of returns.
+     * @param productId The product ID.
+     * @return The units sold.
+     */
+    public synchronized int getUnitsSold(String productId) {
+        return unitsByProduct.getOrDefault(productId, 0);
+    }
+
+    /**
+     * Gets the ID of the product with the most units sold.
+     * @return The product ID, or null if nothing has been sold.
+     */
+    public synchronized String getTopProductId() {
+        refreshTop();
+        return topProductId;
+    }
+
+    /**
+     * Gets the units sold of the top product.
+     * @return The unit count, or 0 if nothing has been sold.
+     */
+    public synchronized int getTopProductUnits() {
+        refreshTop();
+        return topUnits;
+    }
+
+    // --- Internals ---
+
+    /**
+     * Adds (sign 1) or removes (sign -1) an invoice's contribution.
+     */
+    private void apply(Invoice invoice, int sign) {
+        if (invoice == null) return;
+        revenueCents += sign * invoice.getTotalCents();
+        invoiceCount += sign;
+
+        if (invoice.getItems() == null) return;
+        for (InvoiceItem item : invoice.getItems()) {
+            if (item == null) continue;
+
+            int units = unitsByProduct.merge(item.productId, sign * item.quantity, Integer::sum);
+            if (sign > 0 && !topStale && units > topUnits) {
+                topProductId = item.productId;
+                topUnits = units;
+            } else if (sign < 0 && item.productId.equals(topProductId)) {
+                topStale = true; // The top seller lost units; find it again on next read
+            }
+
+            Category category = Category.of(catalog.findById(item.productId));
+            if (category != null) {
+                categoryRevenueCents[category.ordinal()] += sign * item.lineCents;
+            }
+        }
+    }
+
+    /**
+     * Finds the top seller again after it lost units. Walks the products sold, not the history.
+     */
+    private void refreshTop() {
+        if (!topStale) return;
+        topProductId = null;
+        topUnits = 0;
+        for (Map.Entry<String, Integer> entry : unitsByProduct.entrySet()) {
+            if (entry.getValue() > topUnits) {
+                topProductId = entry.getKey();
+                topUnits = entry.getValue();
+            }
+        }
+        topStale = false;
+    }
+}
@@ -0,0 +1,93 @@
+package possportstore;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import possportstore.Sale.Invoice;
+
+/**
+ * Asynchronous front of the {@link StoreSystem} for the user interface.
+ * <p>
+ * Every operation that writes to disk runs on one dedicated I/O thread and returns a
+ * {@link CompletableFuture}, so the Swing Event Dispatch Thread never waits for a file.
+ * The screen stays responsive however large the data files grow; callers update it
+ * when the future completes, back on the EDT.
+ * </p>
+ * <p>
+ * The single thread also keeps the operations in the order they were requested, e.g.
+ * a stock correction followed by a logout snapshot. Checkouts do not use it: they are
+ * already queued on the group-commit {@link InvoiceWriter}.
+ * </p>
+ */
+public class StoreService {
+
+    private final StoreSystem system;
+    private final ExecutorService ioExecutor = Executors.newSingleThreadExecutor(r -> {
+        Thread t = new Thread(r, "store-io");
+        t.setDaemon(true);
+        return t;
+    });
+
+    /**
+     * Creates the service for a store.
+     * @param system The store controller.
+     */
+    public StoreService(StoreSystem system) {
+        this.system = system;
+    }
+
+    /**
+     * Starts a checkout of the current cart; see {@link StoreSystem#submitSale(CurrentSale)}.
+     * Only the in-memory stock reservation happens on the calling thread, and only when
+     * no snapshot holds the stock; otherwise it is queued, so the EDT never waits.
+     *
+     * @param cart The current shopping cart.
+     * @return A future completed with the durable {@link Invoice}, or exceptionally if it could not be saved.
+     * @throws IllegalArgumentException if the cart is empty or a product does not have enough stock.
+     */
+    public CompletableFuture<Invoice> submitSale(CurrentSale cart) {
+        return system.submitSale(cart);
+    }
+
+    /**
+     * Returns several products of one invoice, in the given order.
+     *
+     * @param invoiceId  The ID of the invoice.
+     * @param quantities The quantity to return per product ID; entries of 0 or less are skipped.
+     * @return A future completed with the IDs of the products whose return was recorded.
+     */
+    public CompletableFuture<List<String>> processReturns(int invoiceId, Map<String, Integer> quantities) {
+        return CompletableFuture.supplyAsync(() -> {
+            List<String> returned = new ArrayList<>();
+            for (Map.Entry<String, Integer> entry : quantities.entrySet()) {
+                if (entry.getValue() <= 0) continue;
+                if (system.processReturn(invoiceId, entry.getKey(), entry.getValue())) {
+                    returned.add(entry.getKey());
+                }
+            }
+            return returned;
+        }, ioExecutor);
+    }
+
+    /**
+     * Sets the stock of a product; see {@link StoreSystem#updateProductStock(String, int)}.
+     *
+     * @param idProduct The ID of the product.
+     * @param newStock  The new stock quantity.
+     * @return A future completed with true if updated, false if the product was not found.
+     */
+    public CompletableFuture<Boolean> updateProductStock(String idProduct, int newStock) {
+        return CompletableFuture.supplyAsync(() -> system.updateProductStock(idProduct, newStock), ioExecutor);
+    }
+
+    /**
+     * Writes a full inventory snapshot; see {@link StoreSystem#saveProducts()}.
+     * @return A future completed once the snapshot has been written.
+     */
+    public CompletableFuture<Void> saveProducts() {
+        return CompletableFuture.runAsync(system::saveProducts, ioExecutor);
+    }
+}
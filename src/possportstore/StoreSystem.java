@@ -1,7 +1,13 @@
 package possportstore;
 
 import java.io.*;
+import java.nio.charset.Charset;
 import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.locks.StampedLock;
 import javax.swing.JOptionPane;
 import possportstore.CurrentSale.CartItem;
 import possportstore.Sale.Invoice;
@@ -13,26 +19,107 @@ import possportstore.User.Role;
  * This class coordinates interactions between the UI, the User Manager, the Sale Manager,
  * and the Inventory system.
  * </p>
+ * <p>
+ * One instance can serve several registers at once. Stock is a lock-free counter
+ * per product (see {@link Product#tryReserve(int)}), so checkouts never wait on each
+ * other for inventory, even on the same product. Invoice IDs and the invoice store
+ * are made safe by {@link Sale}, and the catalog and aggregates lock themselves.
+ * </p>
+ * <p>
+ * A checkout is a {@link CheckoutTransaction} whose commit point is the durable
+ * invoice append. Its stock change is journaled as a {@code SALE} delta tagged with
+ * the invoice ID; on startup, any invoice newer than the last snapshot whose delta
+ * is missing from the journal has its stock change applied again.
+ * </p>
+ * <p>
+ * Invoices are written by the group-commit {@link InvoiceWriter}: {@link #submitSale}
+ * reserves the stock and queues the invoice without touching the disk, and its
+ * future completes once the invoice is durable.
+ * </p>
+ * <p>
+ * The methods here block on the disk; the user interface calls them through
+ * {@link #getService()}, which runs them off the Event Dispatch Thread.
+ * </p>
  */
 public class StoreSystem {
     
-    private Product[] products;
-    private int productCount; 
+    private static final String PRODUCTS_FILE = "productos.txt";
+    private static final String PRODUCTS_BINARY_FILE = "productos.bin";
+    private static final boolean BINARY_SNAPSHOTS = "binary".equals(System.getProperty("possportstore.snapshot"));
+    private static final String JOURNAL_FILE = "productos.journal";
+    private static final int JOURNAL_GROUP_SIZE = 32;
+    private static final long JOURNAL_GROUP_INTERVAL_MS = 200;
+    private static final int JOURNAL_COMPACT_THRESHOLD = 5000;
+    private static final String RECEIPTS_FILE = "recibos.txt";
+    
+    private final ProductCatalog catalog;
+    private final ProductSearchIndex searchIndex;
+    private final BarcodeIndex barcodeIndex;
+    private final FacetIndex facetIndex;
+    private final JournalFile inventoryJournal;
+    private final StoreMetrics metrics;
+    private final LowStockTracker lowStockTracker;
+    private final InventoryModel inventoryModel;
+    private final PrintQueue printQueue;
     
     private final Sale saleManager; 
     private final UserManager userManager;
+    private final StoreService service;
+
+    // Checkouts and returns share the read lock; setting stock outright and snapshots take the write lock.
+    // A stamped lock, because a checkout's read lock is released by the invoice writer thread.
+    private final StampedLock checkoutLock = new StampedLock();
+    private volatile boolean snapshotDue;
+    private final ExecutorService snapshotExecutor = Executors.newSingleThreadExecutor(r -> {
+        Thread t = new Thread(r, "inventory-snapshot");
+        t.setDaemon(true);
+        return t;
+    });
+    // Checkouts that found the write lock taken wait for it here, not on the register's thread
+    private final ExecutorService checkoutExecutor = Executors.newSingleThreadExecutor(r -> {
+        Thread t = new Thread(r, "checkout-wait");
+        t.setDaemon(true);
+        return t;
+    });
+
+    // Generation of the records being journaled, and whether its GEN record has been written; guarded by the journal
+    private long journalGeneration;
+    private boolean generationStarted;
+
+    // Startup only: the last invoice covered by the snapshot, and the checkouts journaled since
+    private int snapshotInvoiceId = -1;
+    private final Set<Integer> journaledSales = new HashSet<>();
 
     /**
      * Initializes the StoreSystem, loads resources, and prepares sub-managers.
      */
     public StoreSystem() {
-        this.products = new Product[100]; 
-        this.productCount = 0;
+        this.catalog = new ProductCatalog();
+        this.searchIndex = new ProductSearchIndex();
+        this.barcodeIndex = new BarcodeIndex();
+        this.facetIndex = new FacetIndex();
+        this.inventoryJournal = new JournalFile(new File(JOURNAL_FILE), JOURNAL_GROUP_SIZE, JOURNAL_GROUP_INTERVAL_MS);
         this.saleManager = new Sale(); 
         this.userManager = new UserManager();
+        this.metrics = new StoreMetrics(catalog);
+        this.lowStockTracker = new LowStockTracker();
+        this.inventoryModel = new InventoryModel(lowStockTracker);
+        this.printQueue = new PrintQueue(new FileReceiptPrinter(new File(RECEIPTS_FILE)), new ReceiptRenderer());
         
         loadProducts(); 
         Sale.loadInvoicesFromFile(); 
+        recoverCheckouts();
+        metrics.rebuild();
+        for (Product p : catalog.values()) {
+            inventoryModel.track(p);
+            searchIndex.add(p);
+            facetIndex.add(p);
+            if (!barcodeIndex.add(p)) {
+                System.err.println("Ignoring duplicate barcode " + p.getBarcode() + " of product " + p.getIdProduct());
+            }
+        }
+        inventoryModel.addListener(facetIndex);
+        this.service = new StoreService(this);
     }
 
     // --- System Getters ---
@@ -47,7 +134,7 @@ public class StoreSystem {
      * Gets the total count of products in memory.
      * @return The product count.
      */
-    public int getProductCount() { return productCount; }
+    public int getProductCount() { return catalog.size(); }
 
     /**
      * Gets the Sale Manager instance.
@@ -62,10 +149,16 @@ public class StoreSystem {
     public UserManager getUserManager() { return userManager; }
 
     /**
-     * Generates the next Product ID based on current count.
+     * Gets the asynchronous service the user interface uses for operations that write to disk.
+     * @return The {@link StoreService}.
+     */
+    public StoreService getService() { return service; }
+
+    /**
+     * Generates the next Product ID based on the highest ID in the catalog.
      * @return The next ID as a String.
      */
-    public String getNextProductId() { return String.valueOf(productCount + 1); }
+    public String getNextProductId() { return catalog.nextId(); }
 
     /**
      * Gets the currently logged-in user.
@@ -112,15 +205,23 @@ public class StoreSystem {
     /**
      * Adds a new product to the inventory.
      * @param p The product to add.
-     * @return true if added successfully, false if inventory is full.
+     * @return true if added successfully, false if the product ID or barcode is already in use.
      */
     public boolean addProduct(Product p) {
-        if (productCount < products.length) {
-            products[productCount++] = p;
-            saveProducts();
+        Product sameBarcode = barcodeIndex.find(p.getBarcode());
+        if (sameBarcode != null) {
+            JOptionPane.showMessageDialog(null, "Barcode already assigned to product " + sameBarcode.getIdProduct() + ".", "Error", JOptionPane.ERROR_MESSAGE);
+            return false;
+        }
+        if (catalog.add(p)) {
+            journalRecord("ADD;" + formatProduct(p));
+            saveIfDue();
+            searchIndex.add(p);
+            barcodeIndex.add(p);
+            inventoryModel.productAdded(p);
             return true;
         } else {
-            JOptionPane.showMessageDialog(null, "Inventory full.", "Error", JOptionPane.ERROR_MESSAGE);
+            JOptionPane.showMessageDialog(null, "Product ID already exists.", "Error", JOptionPane.ERROR_MESSAGE);
             return false;
         }
     }
@@ -131,39 +232,64 @@ public class StoreSystem {
      * @return The {@link Product} if found, null otherwise.
      */
     public Product findProductById(String idProduct) {
-        for (int i = 0; i < productCount; i++) {
-            if (products[i] != null && products[i].getIdProduct().equals(idProduct)) {
-                return products[i];
-            }
-        }
-        return null;
+        return catalog.findById(idProduct);
     }
 
     /**
-     * Searches for a product by ID or Name (case insensitive).
+     * Finds a product by the barcode printed on it.
+     * @param barcode The scanned or typed barcode, 8 to 14 digits.
+     * @return The {@link Product} if found, null otherwise.
+     */
+    public Product findProductByBarcode(String barcode) {
+        return barcodeIndex.find(BarcodeIndex.parse(barcode));
+    }
+
+    /**
+     * Searches for a product by ID, barcode or Name (case insensitive).
      * @param search The search query.
      * @return The {@link Product} if found, null otherwise.
      */
     public Product searchProduct(String search) {
-        for (int i = 0; i < productCount; i++) {
-            Product product = products[i];
-            if (product != null) {
-                if (product.getIdProduct().equalsIgnoreCase(search) || product.getName().equalsIgnoreCase(search)) {
-                    return product;
-                }
-            }
-        }
-        return null;
+        if (search == null) return null;
+        String query = search.trim();
+        
+        Product byId = catalog.findById(query);
+        if (byId != null) return byId;
+        Product byBarcode = findProductByBarcode(query);
+        return (byBarcode != null) ? byBarcode : catalog.findByName(query);
     }
     
     /**
-     * Returns a safe copy of the inventory array.
+     * Finds the products matching a partial query, for type-ahead suggestions.
+     * <p>
+     * Each word of the query may be the start of a word of the product's name, ID or
+     * description ("ultra", "chuck"), or a close misspelling of one; see
+     * {@link ProductSearchIndex}.
+     * </p>
+     *
+     * @param query The text typed so far.
+     * @param limit The maximum number of results.
+     * @return The best matches, best first.
+     */
+    public List<Product> searchProducts(String query, int limit) {
+        return searchIndex.search(query, limit);
+    }
+
+    /**
+     * Filters the catalog by facet values, e.g. RUNNING shoes of size 42 in stock.
+     * @param query The chosen filters; see {@link FacetIndex}.
+     * @return The matching products, in catalog order, with the live count of every facet value.
+     */
+    public FacetIndex.Result filterProducts(FacetIndex.Query query) {
+        return facetIndex.query(query);
+    }
+
+    /**
+     * Returns a safe copy of the inventory, in catalog order.
      * @return An array of products.
      */
     public Product[] getInventoryForDisplay() {
-        return Arrays.stream(products)
-                     .filter(Objects::nonNull)
-                     .toArray(Product[]::new);
+        return catalog.toArray();
     }
 
     /**
@@ -175,205 +301,694 @@ public class StoreSystem {
     public boolean updateProductStock(String idProduct, int newStock) {
         Product productToUpdate = findProductById(idProduct);
         if (productToUpdate != null) {
-            productToUpdate.setStock(newStock);
-            saveProducts(); 
+            // An absolute stock record must not interleave with sale deltas of in-flight checkouts
+            long stamp = checkoutLock.writeLock();
+            try {
+                productToUpdate.setStock(newStock);
+                journalStock(productToUpdate);
+            } finally {
+                checkoutLock.unlockWrite(stamp);
+            }
+            saveIfDue();
             return true;
         }
         return false;
     }
 
+    /**
+     * Renames a product.
+     * @param idProduct The ID of the product.
+     * @param newName   The new name; may not contain the {@code ;} field separator.
+     * @return true if renamed, false if product not found or the name is invalid.
+     */
+    public boolean renameProduct(String idProduct, String newName) {
+        if (newName == null || newName.isBlank() || newName.indexOf(';') >= 0) return false;
+        Product p = catalog.rename(idProduct, newName.trim());
+        if (p == null) return false;
+
+        journalRecord("NAME;" + idProduct + ";" + p.getName());
+        saveIfDue();
+        searchIndex.update(p);
+        inventoryModel.productChanged(p);
+        return true;
+    }
+
+    /**
+     * Sets the reorder level of a product.
+     * @param idProduct    The ID of the product.
+     * @param reorderLevel The new reorder level, or 0 to use the default level.
+     * @return true if updated, false if product not found.
+     */
+    public boolean updateReorderLevel(String idProduct, int reorderLevel) {
+        Product p = findProductById(idProduct);
+        if (p == null) return false;
+
+        p.setReorderLevel(reorderLevel);
+        journalRecord("LEVEL;" + idProduct + ";" + p.getReorderLevel());
+        saveIfDue();
+        inventoryModel.productChanged(p);
+        return true;
+    }
+
     /**
      * Deletes a product from the inventory.
      * @param idProduct The ID of the product to delete.
      * @return true if deleted, false if not found.
      */
     public boolean deleteProduct(String idProduct) {
-        int indexToDelete = -1;
-        for (int i = 0; i < productCount; i++) {
-            if (products[i] != null && products[i].getIdProduct().equals(idProduct)) {
-                indexToDelete = i;
-                break;
-            }
-        }
-        
-        if (indexToDelete == -1) return false;
+        Product removed = catalog.remove(idProduct);
+        if (removed == null) return false;
+        searchIndex.remove(idProduct);
+        barcodeIndex.remove(removed);
+        inventoryModel.productRemoved(removed);
 
-        for (int i = indexToDelete; i < productCount - 1; i++) {
-            products[i] = products[i + 1];
-        }
-        
-        products[productCount - 1] = null;
-        productCount--;
-        saveProducts();
+        journalRecord("DEL;" + idProduct);
+        saveIfDue();
         return true;
     }
     
     // --- Persistence (Products) ---
     
     /**
-     * Saves the current inventory to the products file.
+     * Writes a full snapshot of the inventory to the products file and clears the journal.
+     * <p>
+     * The snapshot is written to a temporary file and atomically moved into place,
+     * so a crash leaves either the old or the new snapshot, never a partial one.
+     * With {@code -Dpossportstore.snapshot=binary} the snapshot is written in the
+     * {@link BinarySnapshot} format instead of text.
+     * </p>
+     * <p>
+     * No checkout is in progress while the snapshot is taken (it waits for queued
+     * invoices to be acknowledged), so it covers exactly the invoices written so far; that invoice ID is journaled as a {@code MARK} record
+     * right after the journal is cleared. The journal's lock is also held, so a
+     * record journaled by another register is either in the snapshot or written
+     * after the journal is cleared.
+     * </p>
+     * <p>
+     * The journal is divided into generations, each opened by a {@code GEN} record,
+     * and the snapshot records the generation it includes. Replay skips the records of
+     * that generation and older ones, so a crash between publishing the snapshot and
+     * clearing the journal cannot apply the same stock change twice.
+     * </p>
      */
     public void saveProducts() {
-        try (PrintWriter writer = new PrintWriter("productos.txt")) {
-            for (int i = 0; i < productCount; i++) {
-                Product p = products[i];
-                if (p == null) continue;
-
-                if (p instanceof Shoe s) {
-                    writer.println("Shoe;" + s.getIdProduct() + ";" + s.getName() + ";" + s.getDescription() + ";"
-                            + s.getPrice() + ";" + s.getStock() + ";" + s.getSize() + ";" + s.getColor() + ";" + s.getType());
-                } else if (p instanceof Clothe c) {
-                    writer.println("Clothe;" + c.getIdProduct() + ";" + c.getName() + ";" + c.getDescription() + ";"
-                            + c.getPrice() + ";" + c.getStock() + ";" + c.getSize() + ";" + c.getColor() + ";" + c.getType());
-                } else if (p instanceof Accessories a) {
-                    writer.println("Accessories;" + a.getIdProduct() + ";" + a.getName() + ";" + a.getDescription() + ";"
-                            + a.getPrice() + ";" + a.getStock() + ";" + a.getBrand() + ";" + a.getType());
+        long stamp = checkoutLock.writeLock();
+        try {
+            synchronized (inventoryJournal) {
+                snapshotDue = false;
+                if (writeSnapshot()) {
+                    markSnapshot(Sale.getLastInvoiceId());
                 }
             }
+        } finally {
+            checkoutLock.unlockWrite(stamp);
+        }
+    }
+
+    /**
+     * Records the last invoice whose stock change the snapshot includes.
+     */
+    private void markSnapshot(int invoiceId) {
+        try {
+            appendJournal("MARK;" + invoiceId);
+            inventoryJournal.sync();
+        } catch (IOException e) {
+            System.err.println("Error writing inventory journal: " + e.getMessage());
+        }
+    }
+
+    /**
+     * Writes the snapshot file, starts a new journal generation and clears the journal.
+     * Called with the journal's lock held.
+     * @return true if the snapshot was published.
+     */
+    private boolean writeSnapshot() {
+        if (BINARY_SNAPSHOTS) {
+            try {
+                BinarySnapshot.writeProducts(catalog.values(), journalGeneration, new File(PRODUCTS_BINARY_FILE));
+            } catch (IOException e) {
+                System.err.println("Error saving products: " + e.getMessage());
+                return false;
+            }
+            startJournalGeneration();
+            return true;
+        }
+
+        File target = new File(PRODUCTS_FILE);
+        File temp = new File(PRODUCTS_FILE + ".tmp");
+        
+        try (FileOutputStream out = new FileOutputStream(temp);
+             PrintWriter writer = new PrintWriter(new OutputStreamWriter(out))) {
+            writer.println(formatGenerationLine(journalGeneration));
+            for (Product p : catalog.values()) {
+                writer.println(formatProduct(p));
+            }
+            writer.flush();
+            out.getFD().sync();
         } catch (Exception e) {
              System.err.println("Error saving products: " + e.getMessage());
+             return false;
+        }
+        
+        try {
+            java.nio.file.Files.move(temp.toPath(), target.toPath(),
+                    java.nio.file.StandardCopyOption.REPLACE_EXISTING, java.nio.file.StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException e) {
+             System.err.println("Error saving products: " + e.getMessage());
+             return false;
         }
+        startJournalGeneration();
+        return true;
     }
 
     /**
-     * Loads products from the text file at startup.
+     * Moves on to the next journal generation once a snapshot including the current one
+     * is published, then clears the journal.
+     * <p>
+     * The generation changes first: if clearing fails, the old records stay in the file
+     * but are skipped on replay, and new ones go after a {@code GEN} record of their own.
+     * </p>
+     */
+    private void startJournalGeneration() {
+        journalGeneration++;
+        generationStarted = false;
+        try {
+            inventoryJournal.truncate();
+        } catch (IOException e) {
+            System.err.println("Error clearing inventory journal: " + e.getMessage());
+        }
+    }
+
+    /**
+     * Loads products at startup.
+     * <p>
+     * Reads the most recent snapshot (the binary one if it is newer than the
+     * products file) and then replays the mutation journal on top of it.
+     * </p>
      */
     public void loadProducts() {
-        File file = new File("productos.txt");
-        if (!file.exists()) return;
+        File file = new File(PRODUCTS_FILE);
+        File binaryFile = new File(PRODUCTS_BINARY_FILE);
+        long snapshotGeneration = BinarySnapshot.NO_GENERATION;
+        if (binaryFile.exists() && binaryFile.lastModified() >= file.lastModified()) {
+            // The binary snapshot is the most recent one
+            try {
+                BinarySnapshot.ProductsSnapshot snapshot = BinarySnapshot.readProductsSnapshot(binaryFile);
+                snapshotGeneration = snapshot.getJournalGeneration();
+                for (Product p : snapshot.getProducts()) {
+                    if (!catalog.add(p)) {
+                        System.err.println("Skipping duplicate product ID: " + p.getIdProduct());
+                    }
+                }
+            } catch (IOException e) {
+                System.err.println("Error loading products snapshot: " + e.getMessage());
+            }
+        } else if (file.exists()) {
+            try (RecordReader reader = new RecordReader(file, Charset.defaultCharset(), false)) {
+                String line;
+                while ((line = reader.readLine()) != null) {
+                    if (line.isEmpty()) continue;
+                    try {
+                        if (isGenerationLine(line)) {
+                            snapshotGeneration = parseGenerationLine(line);
+                            continue;
+                        }
+                        Product p = parseProduct(line);
+                        if (p != null && !catalog.add(p)) {
+                            System.err.println("Skipping duplicate product ID: " + p.getIdProduct());
+                        }
+                    } catch (Exception e) {
+                        System.err.println("Skipping invalid product line: " + line);
+                    }
+                }
+            } catch (Exception e) {
+                System.err.println("Error loading products file: " + e.getMessage());
+            }
+        }
+        
+        replayJournal(snapshotGeneration);
+    }
 
-        try (Scanner fileScanner = new Scanner(file)) {
-            while (fileScanner.hasNextLine() && productCount < products.length) {
-                String line = fileScanner.nextLine();
+    /**
+     * Replays the journal records newer than the snapshot.
+     * <p>
+     * A journal written before generations existed has no {@code GEN} record and counts
+     * as generation 0, newer than a snapshot that records none. If the whole journal is
+     * already in the snapshot, new records start the generation after the snapshot's.
+     * </p>
+     * @param snapshotGeneration The last generation the snapshot includes.
+     */
+    private void replayJournal(long snapshotGeneration) {
+        long[] generation = {0};
+        inventoryJournal.replay(record -> {
+            if (isGenerationLine(record)) {
                 try {
-                    String[] data = line.split(";");
-                    
-                    if (data.length < 7) continue; 
-                    
-                    String type = data[0];
-                    String id = data[1]; 
-                    String name = data[2];
-                    String desc = data[3];
-                    double price = Double.parseDouble(data[4]);
-                    int stock = Integer.parseInt(data[5]);
-
-                    switch (type) {
-                        case "Shoe" -> products[productCount++] = new Shoe(id, name, price, stock, desc, data[6], data[7], Shoe.TypeShoe.valueOf(data[8]));
-                        case "Clothe" -> products[productCount++] = new Clothe(id, name, price, stock, desc, data[6], data[7], Clothe.TypeClothe.valueOf(data[8]));
-                        case "Accesories", "Accessories" -> products[productCount++] = new Accessories(id, name, price, stock, desc, data[6], Accessories.TypeAccessories.valueOf(data[7]));
+                    generation[0] = parseGenerationLine(record);
+                } catch (NumberFormatException e) {
+                    System.err.println("Skipping invalid journal record: " + record);
+                }
+            } else if (generation[0] > snapshotGeneration) {
+                applyJournalRecord(record);
+            }
+        });
+        synchronized (inventoryJournal) {
+            if (generation[0] > snapshotGeneration) {
+                journalGeneration = generation[0];
+                generationStarted = true;
+            } else {
+                journalGeneration = snapshotGeneration + 1;
+                generationStarted = false;
+            }
+        }
+    }
+    
+    /**
+     * Applies one journal record to the in-memory catalog.
+     * Records: ADD;productLine | STOCK;id;newStock | LEVEL;id;reorderLevel | NAME;id;name | DEL;id
+     * | SALE;invoiceId;id;qty;id;qty... | RETURN;id;qty | MARK;invoiceId.
+     * {@code GEN;generation} records are handled by {@link #replayJournal(long)}.
+     * @param record The journal line.
+     */
+    private void applyJournalRecord(String record) {
+        try {
+            int sep = record.indexOf(';');
+            String op = record.substring(0, sep);
+            String body = record.substring(sep + 1);
+            
+            switch (op) {
+                case "ADD" -> {
+                    Product p = parseProduct(body);
+                    if (p != null) catalog.add(p);
+                }
+                case "STOCK" -> {
+                    FieldCursor fields = new FieldCursor(body);
+                    Product p = catalog.findById(fields.nextString(';'));
+                    if (p != null) p.setStock(fields.nextInt(';'));
+                }
+                case "LEVEL" -> {
+                    FieldCursor fields = new FieldCursor(body);
+                    Product p = catalog.findById(fields.nextString(';'));
+                    if (p != null) p.setReorderLevel(fields.nextInt(';'));
+                }
+                case "NAME" -> {
+                    FieldCursor fields = new FieldCursor(body);
+                    catalog.rename(fields.nextString(';'), fields.nextString(';'));
+                }
+                case "SALE" -> {
+                    FieldCursor fields = new FieldCursor(body);
+                    journaledSales.add(fields.nextInt(';'));
+                    while (fields.hasNext()) {
+                        Product p = catalog.findById(fields.nextString(';'));
+                        int quantity = fields.nextInt(';');
+                        if (p != null) p.setStock(p.getStock() - quantity);
                     }
-                } catch (Exception e) {
-                    System.err.println("Skipping invalid product line: " + line);
                 }
+                case "RETURN" -> {
+                    FieldCursor fields = new FieldCursor(body);
+                    Product p = catalog.findById(fields.nextString(';'));
+                    if (p != null) p.setStock(p.getStock() + fields.nextInt(';'));
+                }
+                case "MARK" -> {
+                    snapshotInvoiceId = Integer.parseInt(body);
+                    journaledSales.clear();
+                }
+                case "DEL" -> catalog.remove(body);
+                default -> System.err.println("Skipping unknown journal record: " + record);
             }
         } catch (Exception e) {
-            System.err.println("Error loading products file: " + e.getMessage());
+            System.err.println("Skipping invalid journal record: " + record);
+        }
+    }
+    
+    /**
+     * Appends the current stock level of a product to the journal.
+     * Called with the checkout write lock held, so no sale delta is in flight.
+     * @param p The product whose stock changed.
+     */
+    private void journalStock(Product p) {
+        journalRecord("STOCK;" + p.getIdProduct() + ";" + p.getStock());
+    }
+
+    /**
+     * Appends the stock change of a committed checkout to the journal, as one record.
+     * @param checkout The committed checkout.
+     */
+    private void journalSale(CheckoutTransaction checkout) {
+        StringBuilder record = new StringBuilder("SALE;").append(checkout.getInvoice().getId());
+        for (int i = 0; i < checkout.getLineCount(); i++) {
+            record.append(';').append(checkout.getProduct(i).getIdProduct()).append(';').append(checkout.getQuantity(i));
         }
+        journalRecord(record.toString());
+    }
+    
+    /**
+     * Appends a record to the inventory journal, flagging a compaction into a new
+     * snapshot once it grows past the threshold.
+     * <p>
+     * A snapshot needs the checkout write lock, which the caller may be inside of,
+     * so the compaction is only flagged here; callers run {@link #saveIfDue()} once
+     * they are done, which writes it in the background.
+     * </p>
+     * @param record The journal record.
+     */
+    private void journalRecord(String record) {
+        try {
+            appendJournal(record);
+            if (inventoryJournal.getRecordCount() >= JOURNAL_COMPACT_THRESHOLD) {
+                snapshotDue = true;
+            }
+        } catch (IOException e) {
+            System.err.println("Error writing inventory journal, saving snapshot instead: " + e.getMessage());
+            snapshotDue = true;
+        }
+    }
+
+    /**
+     * Appends a record to the inventory journal, opening the current generation with
+     * its {@code GEN} record first if this is the generation's first record.
+     * @param record The journal record.
+     * @throws IOException if the journal could not be written.
+     */
+    private void appendJournal(String record) throws IOException {
+        synchronized (inventoryJournal) {
+            if (!generationStarted) {
+                inventoryJournal.append(formatGenerationLine(journalGeneration));
+                generationStarted = true;
+            }
+            inventoryJournal.append(record);
+        }
+    }
+
+    /**
+     * Writes a snapshot on the snapshot thread if the journal asked for one.
+     * <p>
+     * A snapshot waits for the checkout write lock and for in-flight invoices, so the
+     * caller, often the event dispatch thread or the invoice writer, never runs it itself.
+     * </p>
+     */
+    private void saveIfDue() {
+        if (snapshotDue) {
+            snapshotExecutor.execute(() -> {
+                if (snapshotDue) saveProducts();
+            });
+        }
+    }
+
+    /**
+     * Re-applies the stock change of checkouts whose invoice was written but whose
+     * {@code SALE} journal record was lost in a crash.
+     * <p>
+     * Only invoices newer than the last snapshot are checked, so this reads the
+     * tail of the history. A journal without a {@code MARK} (written before marks
+     * existed) is taken as up to date and marked now.
+     * </p>
+     */
+    private void recoverCheckouts() {
+        int lastInvoiceId = Sale.getLastInvoiceId();
+        if (snapshotInvoiceId < 0) {
+            markSnapshot(lastInvoiceId);
+        } else {
+            for (int id = snapshotInvoiceId + 1; id <= lastInvoiceId; id++) {
+                if (journaledSales.contains(id)) continue;
+                Invoice invoice = Sale.findInvoiceById(id);
+                if (invoice == null || invoice.getItems() == null) continue;
+
+                StringBuilder record = new StringBuilder("SALE;").append(id);
+                for (Sale.InvoiceItem item : invoice.getItems()) {
+                    Product p = (item != null) ? catalog.findById(item.productId) : null;
+                    if (p == null) continue;
+                    p.setStock(p.getStock() - item.quantity);
+                    record.append(';').append(item.productId).append(';').append(item.quantity);
+                }
+                journalRecord(record.toString());
+                System.err.println("Recovered stock change of invoice #" + id);
+            }
+        }
+        snapshotInvoiceId = -1;
+        journaledSales.clear();
+        saveIfDue();
+    }
+    
+    /**
+     * Formats a product as a line of the products file.
+     * A product's own reorder level and barcode, if set, are written as optional last
+     * fields; the reorder level is written as 0 when only the barcode is set.
+     * @param p The product.
+     * @return The semicolon-separated line, or null for unknown product types.
+     */
+    static String formatProduct(Product p) {
+        String line;
+        if (p instanceof Shoe s) {
+            line = "Shoe;" + s.getIdProduct() + ";" + s.getName() + ";" + s.getDescription() + ";"
+                    + s.getPrice() + ";" + s.getStock() + ";" + s.getSize() + ";" + s.getColor() + ";" + s.getType();
+        } else if (p instanceof Clothe c) {
+            line = "Clothe;" + c.getIdProduct() + ";" + c.getName() + ";" + c.getDescription() + ";"
+                    + c.getPrice() + ";" + c.getStock() + ";" + c.getSize() + ";" + c.getColor() + ";" + c.getType();
+        } else if (p instanceof Accessories a) {
+            line = "Accessories;" + a.getIdProduct() + ";" + a.getName() + ";" + a.getDescription() + ";"
+                    + a.getPrice() + ";" + a.getStock() + ";" + a.getBrand() + ";" + a.getType();
+        } else {
+            return null;
+        }
+        if (p.getBarcode() != BarcodeIndex.NONE) return line + ";" + p.getReorderLevel() + ";" + p.getBarcode();
+        return (p.getReorderLevel() > 0) ? line + ";" + p.getReorderLevel() : line;
+    }
+    
+    /**
+     * Formats the record that opens a journal generation, also the first line of a products file.
+     * @param generation The journal generation.
+     * @return The {@code GEN;generation} line.
+     */
+    static String formatGenerationLine(long generation) {
+        return "GEN;" + generation;
+    }
+
+    /**
+     * Checks whether a products file line or journal record is a generation record.
+     * @param line The line.
+     * @return true for a {@code GEN;generation} line.
+     */
+    static boolean isGenerationLine(String line) {
+        return line.startsWith("GEN;");
+    }
+
+    /**
+     * Parses a generation record.
+     * @param line A {@code GEN;generation} line.
+     * @return The journal generation.
+     */
+    static long parseGenerationLine(String line) {
+        return Long.parseLong(line.substring(4));
+    }
+
+    /**
+     * Parses a line of the products file.
+     * @param line The semicolon-separated line.
+     * @return The product, or null if the line is too short or of an unknown type.
+     */
+    static Product parseProduct(String line) {
+        FieldCursor fields = new FieldCursor(line);
+        
+        String type = fields.nextString(';');
+        String id = fields.nextString(';'); 
+        String name = fields.nextString(';');
+        String desc = fields.nextString(';');
+        double price = fields.nextDouble(';');
+        int stock = fields.nextInt(';');
+        
+        if (!fields.hasNext()) return null; 
+
+        Product p = switch (type) {
+            case "Shoe" -> new Shoe(id, name, price, stock, desc, fields.nextString(';'), fields.nextString(';'), Shoe.TypeShoe.valueOf(fields.nextString(';')));
+            case "Clothe" -> new Clothe(id, name, price, stock, desc, fields.nextString(';'), fields.nextString(';'), Clothe.TypeClothe.valueOf(fields.nextString(';')));
+            case "Accesories", "Accessories" -> new Accessories(id, name, price, stock, desc, fields.nextString(';'), Accessories.TypeAccessories.valueOf(fields.nextString(';')));
+            default -> null;
+        };
+        
+        // Optional trailing reorder level and barcode
+        if (p != null && fields.hasNext()) {
+            p.setReorderLevel(fields.nextInt(';'));
+        }
+        if (p != null && fields.hasNext()) {
+            p.setBarcode(fields.nextLong(';'));
+        }
+        return p;
     }
     
     // --- Sales Logic ---
 
     /**
-     * Finalizes the current sale transaction.
-     * Updates stock, creates invoice with discounts, and saves data.
+     * Starts a checkout of the current cart and returns without waiting for the disk.
+     * <p>
+     * Runs as a {@link CheckoutTransaction}: every cart line is reserved from stock
+     * right away, and the invoice is queued for the group-commit {@link InvoiceWriter}.
+     * When the invoice is durable the checkout commits, its stock change is journaled,
+     * and the returned future completes. If the invoice cannot be written the
+     * reservation is rolled back and the future fails. The cart may be cleared as
+     * soon as this returns.
+     * </p>
+     * <p>
+     * The caller never waits for the checkout lock. If a snapshot or a stock correction
+     * holds it, the checkout is queued until it is released, and a shortage found then
+     * fails the future with an {@link IllegalArgumentException} instead of being thrown.
+     * </p>
      *
      * @param cart The current shopping cart.
-     * @return The generated {@link Invoice}, or null if cart is empty.
+     * @return A future completed with the durable {@link Invoice}, or exceptionally if it could not be saved.
+     * @throws IllegalArgumentException if the cart is empty or a product does not have enough stock.
      */
-    public Sale.Invoice finalizeSale(CurrentSale cart) {
-        if (cart.getItems().length == 0) return null;
+    public CompletableFuture<Sale.Invoice> submitSale(CurrentSale cart) {
+        CartItem[] items = copyLines(cart.getItems());
+        if (items.length == 0) throw new IllegalArgumentException("Empty cart");
 
         String cashierName = cart.getAuthenticatedUser().getUsername();
-        double totalAmount = cart.getCurrentTotal();
         double globalDisc = cart.getGlobalDiscountPercent();
         
-        for (CartItem item : cart.getItems()) {
-            item.getProduct().reduceStock(item.getQuantity()); 
+        long stamp = checkoutLock.tryReadLock();
+        if (stamp != 0) {
+            return checkout(stamp, items, cashierName, globalDisc);
+        }
+        return CompletableFuture.supplyAsync(checkoutLock::readLock, checkoutExecutor)
+                .thenCompose(queued -> checkout(queued, items, cashierName, globalDisc));
+    }
+
+    /**
+     * Reserves the lines of a checkout and queues its invoice, holding the checkout read lock
+     * until the invoice is written or rolled back.
+     */
+    private CompletableFuture<Sale.Invoice> checkout(long stamp, CartItem[] items, String cashierName, double globalDisc) {
+        CheckoutTransaction checkout = new CheckoutTransaction(items);
+        CompletableFuture<Sale.Invoice> durable;
+        try {
+            // 1. Reserve all lines, or none
+            checkout.reserve();
+            
+            // 2. Queue the invoice; it being written is the commit point
+            durable = Sale.submitInvoice(cashierName, items, globalDisc);
+        } catch (RuntimeException e) {
+            checkout.rollback();
+            checkoutLock.unlockRead(stamp);
+            throw e;
         }
         
-        // Pass global discount to creator
-        Sale.Invoice finalInvoice = Sale.createInvoice(totalAmount, cashierName, cart.getItems(), globalDisc); 
-        saveProducts(); 
-        return finalInvoice;
+        return durable.handle((invoice, error) -> {
+            try {
+                if (error != null) {
+                    checkout.rollback();
+                    System.err.println("ERROR saving invoice, sale rolled back: " + error.getMessage());
+                    throw new CompletionException(error);
+                }
+                checkout.commit(invoice);
+                
+                // 3. Journal the stock change; recovered from the invoice if this is lost
+                journalSale(checkout);
+            } finally {
+                checkoutLock.unlockRead(stamp); // Released by whichever thread finishes the checkout
+            }
+            saveIfDue();
+            metrics.recordInvoice(invoice);
+            return invoice;
+        });
+    }
+
+    /**
+     * Copies cart lines, so a checkout waiting for the lock is not changed by the register meanwhile.
+     */
+    private static CartItem[] copyLines(CartItem[] lines) {
+        CartItem[] copy = new CartItem[lines.length];
+        for (int i = 0; i < lines.length; i++) {
+            copy[i] = new CartItem(lines[i].getProduct(), lines[i].getQuantity());
+            copy[i].setDiscountPercent(lines[i].getDiscountPercent());
+        }
+        return copy;
     }
     
     // --- Returns Logic ---
     
     /**
      * Process a return for a specific product.
-     * Increases the inventory stock for the returned item, updates the invoice,
-     * and persists the changes.
+     * Updates the invoice and persists the return first; only once it is saved is the
+     * returned quantity put back in stock, so a return that fails leaves stock untouched.
      *
      * @param invoiceId        The ID of the invoice containing the item.
      * @param productId        The ID of the product being returned.
      * @param quantityToReturn The quantity to return to stock.
-     * @return true if the product was found and updated, false otherwise.
+     * @return true if the return was saved and the stock updated, false otherwise.
      */
     public boolean processReturn(int invoiceId, String productId, int quantityToReturn) {
         Product product = findProductById(productId);
-        
-        // 1. Update Inventory
-        if (product != null) {
-            product.increaseStock(quantityToReturn);
-            saveProducts(); // Persist stock changes
-        } else {
+        if (product == null) {
             return false; // Product not found in inventory (rare inconsistency)
         }
         
-        // 2. Update Invoice Record
-        boolean invoiceUpdated = Sale.processItemReturn(invoiceId, productId, quantityToReturn);
+        Invoice[] change = new Invoice[2];
+        long stamp = checkoutLock.readLock();
+        try {
+            // 1. Update Invoice Record; checks the line and quantity
+            if (!Sale.processItemReturn(invoiceId, productId, quantityToReturn, change)) {
+                return false;
+            }
+            
+            // 2. Update Inventory
+            product.increaseStock(quantityToReturn);
+            journalRecord("RETURN;" + productId + ";" + quantityToReturn); // Persist stock changes
+        } finally {
+            checkoutLock.unlockRead(stamp);
+        }
+        saveIfDue();
+        metrics.recordReturn(change[0], change[1]);
         
-        return invoiceUpdated;
+        return true;
     }
     
     // --- Dashboard Metrics ---
 
+    /**
+     * Gets the running sales and stock aggregates.
+     * @return The {@link StoreMetrics}.
+     */
+    public StoreMetrics getMetrics() { return metrics; }
+
     /**
      * Gets the total number of invoices in the system.
      * @return The total invoice count.
      */
-    public int getTotalInvoicesCount() { return Sale.getInvoicesForDisplay().length; }
+    public int getTotalInvoicesCount() { return metrics.getInvoiceCount(); }
 
     /**
-     * Calculates the total revenue from all sales, including VAT.
+     * Gets the total revenue from all sales, including VAT.
      * @return The total revenue as a double.
      */
     public double getTotalSalesRevenue() {
-        double total = 0;
-        for (Sale.Invoice invoice : Sale.getInvoicesForDisplay()) {
-            total += invoice.getTotal() * 1.13; 
-        }
-        return total;
+        return Money.toDouble(TaxCalculator.IVA.withTax(metrics.getRevenueCents()));
     }
 
     /**
-     * Counts the number of products with low stock (<= 5).
+     * Gets the tracker of products at or below their reorder level.
+     * @return The {@link LowStockTracker}.
+     */
+    public LowStockTracker getLowStockTracker() { return lowStockTracker; }
+
+    /**
+     * Gets the observable inventory, for views that follow product changes as they happen.
+     * @return The {@link InventoryModel}.
+     */
+    public InventoryModel getInventoryModel() { return inventoryModel; }
+
+    /**
+     * Counts the number of products at or below their reorder level.
      * @return The count of low stock items.
      */
     public int countLowStockProducts() {
-        int lowCount = 0;
-        for (int i = 0; i < productCount; i++) {
-            if (products[i] != null && products[i].getStock() <= 5) {
-                lowCount++;
-            }
-        }
-        return lowCount;
+        return lowStockTracker.getLowStockCount();
     }
 
     /**
-     * Retrieves the specific list of products with low stock.
-     * @return Array of products with stock <= 5.
+     * Retrieves the specific list of products at or below their reorder level.
+     * @return Array of low stock products.
      */
     public Product[] getLowStockProducts() {
-        int count = countLowStockProducts();
-        Product[] lowStock = new Product[count];
-        int idx = 0;
-        for (int i = 0; i < productCount; i++) {
-            if (products[i] != null && products[i].getStock() <= 5) {
-                lowStock[idx++] = products[i];
-            }
-        }
-        return lowStock;
+        return lowStockTracker.getLowStockProducts();
     }
 
     /**
@@ -382,10 +997,8 @@ public class StoreSystem {
      */
     public int getTotalUnitsInStock() {
         int totalUnits = 0;
-        for (int i = 0; i < productCount; i++) {
-            if (products[i] != null) {
-                totalUnits += products[i].getStock();
-            }
+        for (Product p : catalog.values()) {
+            totalUnits += p.getStock();
         }
         return totalUnits;
     }
@@ -394,16 +1007,24 @@ public class StoreSystem {
     // --- Printing Logic ---
 
     /**
-     * Sends an invoice to the default printer using the ReceiptPrinter utility.
+     * Queues the receipt of an invoice for printing.
+     * <p>
+     * Receipts go through the {@link PrintQueue}, which prints them in order on its own
+     * thread and retries failed ones. Until a receipt printer driver is configured they
+     * are written to {@value #RECEIPTS_FILE} by the {@link FileReceiptPrinter}.
+     * </p>
+     *
      * @param invoice The invoice to print.
+     * @return A future completed once the receipt is printed, or exceptionally if it could not be.
      */
-    public void printInvoice(Sale.Invoice invoice) {
-        if (invoice != null) {
-            // Run in a separate thread to not block the UI
-            new Thread(() -> {
-                ui.ReceiptPrinter printer = new ui.ReceiptPrinter(invoice);
-                printer.print();
-            }).start();
-        }
+    public CompletableFuture<Void> printInvoice(Sale.Invoice invoice) {
+        if (invoice == null) return CompletableFuture.completedFuture(null);
+        return printQueue.submit(invoice);
     }
+
+    /**
+     * Gets the receipt print queue, e.g. for its throughput and latency figures.
+     * @return The {@link PrintQueue}.
+     */
+    public PrintQueue getPrintQueue() { return printQueue; }
 }
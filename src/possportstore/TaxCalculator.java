@@ -0,0 +1,66 @@
+package possportstore;
+
+/**
+ * The one place the sales tax (IVA) is worked out.
+ * <p>
+ * Invoice totals, revenue and refunds are all kept before tax; the screens, the
+ * receipts and the dashboard add the tax through this class when they show an amount
+ * to the customer, so the rate and its rounding are defined once. Amounts are in
+ * cents; see {@link Money} for the rounding rules.
+ * </p>
+ */
+public final class TaxCalculator {
+
+    /** The Costa Rican IVA of 13%, applied to every sale. */
+    public static final TaxCalculator IVA = new TaxCalculator("IVA", 1300);
+
+    private final String name;
+    private final int basisPoints;
+
+    /**
+     * Creates a tax.
+     * @param name        The name shown next to the amount, e.g. "IVA".
+     * @param basisPoints The rate in basis points, e.g. 1300 for 13%.
+     */
+    public TaxCalculator(String name, int basisPoints) {
+        this.name = name;
+        this.basisPoints = basisPoints;
+    }
+
+    /**
+     * Gets the tax on an amount.
+     * @param netCents The amount before tax, in cents.
+     * @return The tax, in cents.
+     */
+    public long taxOf(long netCents) {
+        return Money.percentOf(netCents, basisPoints);
+    }
+
+    /**
+     * Gets an amount with the tax added.
+     * @param netCents The amount before tax, in cents.
+     * @return The amount after tax, in cents.
+     */
+    public long withTax(long netCents) {
+        return netCents + taxOf(netCents);
+    }
+
+    /**
+     * Gets an amount with the tax added, for amounts kept as {@code double}.
+     * @param net The amount before tax.
+     * @return The amount after tax, rounded to the cent.
+     */
+    public double withTax(double net) {
+        return Money.toDouble(withTax(Money.of(net)));
+    }
+
+    /**
+     * Gets the label of the tax line, e.g. {@code "IVA (13%)"}.
+     * @return The label.
+     */
+    public String getLabel() {
+        return (basisPoints % 100 == 0)
+                ? String.format("%s (%d%%)", name, basisPoints / 100)
+                : String.format("%s (%.2f%%)", name, basisPoints / 100.0);
+    }
+}
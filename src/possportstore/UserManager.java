@@ -1,7 +1,7 @@
 package possportstore;
 
 import java.io.*;
-import java.util.Scanner;
+import java.nio.charset.Charset;
 import java.util.Arrays;
 import javax.swing.JOptionPane;
 import possportstore.User.Role;
@@ -180,16 +180,18 @@ public class UserManager {
         }
 
         int maxId = 0;
-        try (Scanner fileScanner = new Scanner(file)) {
-            while (fileScanner.hasNextLine() && userCount < MAX_USERS) {
-                String line = fileScanner.nextLine();
-                String[] data = line.split(";"); 
+        try (RecordReader reader = new RecordReader(file, Charset.defaultCharset(), false)) {
+            String line;
+            while ((line = reader.readLine()) != null && userCount < MAX_USERS) {
+                if (line.isEmpty()) continue;
+                FieldCursor fields = new FieldCursor(line);
+                int id = fields.nextInt(';');
+                String username = fields.nextString(';');
+                String passwordHash = fields.nextString(';');
+                String roleName = fields.nextString(';');
                 
-                if (data.length == 4) { 
-                    int id = Integer.parseInt(data[0]);
-                    String username = data[1];
-                    String passwordHash = data[2];
-                    Role role = Role.valueOf(data[3]);
+                if (fields.getDelimiter() == 0 && !roleName.isEmpty()) { // Exactly 4 fields
+                    Role role = Role.valueOf(roleName);
                     
                     users[userCount++] = new User(id, username, passwordHash, role);
                     
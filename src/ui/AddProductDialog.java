@@ -18,6 +18,7 @@ public class AddProductDialog extends JDialog {
     private JTextField priceField;
     private JTextField stockField;
     private JTextField descriptionField; 
+    private JTextField barcodeField;
     private JComboBox<String> categoryComboBox;
     
     // Dynamic fields
@@ -60,17 +61,19 @@ public class AddProductDialog extends JDialog {
     private JPanel createFormPanel() {
         JPanel mainPanel = new JPanel(new BorderLayout(0, 20)); 
         
-        JPanel fixedFieldsPanel = new JPanel(new GridLayout(4, 2, 15, 15)); 
+        JPanel fixedFieldsPanel = new JPanel(new GridLayout(5, 2, 15, 15)); 
         
         nameField = new JTextField();
         priceField = new JTextField();
         stockField = new JTextField();
         descriptionField = new JTextField();
+        barcodeField = new JTextField();
         categoryComboBox = new JComboBox<>(new String[]{"Zapato", "Ropa", "Accesorio"});
 
         nameField.setPreferredSize(LARGE_INPUT_SIZE);
         priceField.setPreferredSize(LARGE_INPUT_SIZE);
         stockField.setPreferredSize(LARGE_INPUT_SIZE);
+        barcodeField.setPreferredSize(LARGE_INPUT_SIZE);
         categoryComboBox.setPreferredSize(LARGE_INPUT_SIZE);
 
         categoryComboBox.addActionListener(e -> updateDynamicFields((String) categoryComboBox.getSelectedItem()));
@@ -84,6 +87,9 @@ public class AddProductDialog extends JDialog {
         fixedFieldsPanel.add(new JLabel("Stock Inicial:"));
         fixedFieldsPanel.add(stockField);
 
+        fixedFieldsPanel.add(new JLabel("Código de Barras (opcional):"));
+        fixedFieldsPanel.add(barcodeField);
+
         fixedFieldsPanel.add(new JLabel("Categoría:"));
         fixedFieldsPanel.add(categoryComboBox);
         
@@ -178,6 +184,7 @@ public class AddProductDialog extends JDialog {
         String priceText = priceField.getText().trim();
         String stockText = stockField.getText().trim();
         String description = descriptionField.getText().trim();
+        String barcodeText = barcodeField.getText().trim();
         String category = (String) categoryComboBox.getSelectedItem();
 
         if (name.isEmpty() || description.isEmpty() || priceText.isEmpty() || stockText.isEmpty()) {
@@ -193,6 +200,17 @@ public class AddProductDialog extends JDialog {
                  JOptionPane.showMessageDialog(this, "Precio debe ser positivo y Stock no negativo.", "Error de Validación", JOptionPane.ERROR_MESSAGE);
                 return;
             }
+
+            long barcode = BarcodeIndex.parse(barcodeText);
+            if (!barcodeText.isEmpty() && barcode == BarcodeIndex.NONE) {
+                JOptionPane.showMessageDialog(this, "El código de barras debe tener de 8 a 14 dígitos.", "Error de Validación", JOptionPane.ERROR_MESSAGE);
+                return;
+            }
+            Product sameBarcode = system.findProductByBarcode(barcodeText);
+            if (sameBarcode != null) {
+                JOptionPane.showMessageDialog(this, "El código de barras ya pertenece a '" + sameBarcode.getName() + "'.", "Error de Validación", JOptionPane.ERROR_MESSAGE);
+                return;
+            }
             
             String newId = system.getNextProductId(); 
             Product newProduct = null;
@@ -242,6 +260,7 @@ public class AddProductDialog extends JDialog {
             }
 
             if (newProduct != null) {
+                newProduct.setBarcode(barcode);
                 boolean added = system.addProduct(newProduct);
 
                 if (added) {
@@ -249,7 +268,7 @@ public class AddProductDialog extends JDialog {
                     parentView.refreshView(); 
                     dispose();
                 } else {
-                    JOptionPane.showMessageDialog(this, "No se pudo añadir el producto. Inventario lleno.", "Error", JOptionPane.ERROR_MESSAGE);
+                    JOptionPane.showMessageDialog(this, "No se pudo añadir el producto. El ID ya existe.", "Error", JOptionPane.ERROR_MESSAGE);
                 }
             }
 
@@ -0,0 +1,77 @@
+package ui;
+
+import javax.swing.text.JTextComponent;
+import java.awt.event.KeyAdapter;
+import java.awt.event.KeyEvent;
+import java.util.function.Consumer;
+
+/**
+ * Tells barcode scanner input apart from typing in a text field.
+ * <p>
+ * A USB scanner acts as a keyboard: it types the digits of the barcode a few
+ * milliseconds apart and ends with Enter. No cashier types that fast, so a run of at
+ * least {@value #MIN_LENGTH} digits, each within {@value #MAX_GAP_MS} ms of the last,
+ * followed just as quickly by Enter is taken as a scan. The Enter is consumed, so the
+ * field's own action (the text search) does not run; the field is cleared and the
+ * code is handed to the scan handler instead.
+ * </p>
+ */
+public class BarcodeScanListener extends KeyAdapter {
+
+    private static final long MAX_GAP_MS = 40;
+    private static final int MIN_LENGTH = 8;
+
+    private final JTextComponent field;
+    private final Consumer<String> onScan;
+    private final StringBuilder burst = new StringBuilder();
+    private long lastKeyTime;
+
+    /**
+     * Creates the listener and installs it on a text field.
+     *
+     * @param field  The field the scanner types into.
+     * @param onScan Called on the EDT with the scanned digits.
+     */
+    public BarcodeScanListener(JTextComponent field, Consumer<String> onScan) {
+        this.field = field;
+        this.onScan = onScan;
+        field.addKeyListener(this);
+    }
+
+    /**
+     * Checks whether the field is in the middle of a scanner burst, e.g. to hold back
+     * type-ahead suggestions for digits that are about to be cleared.
+     * @return true if the last digits arrived at scanner speed.
+     */
+    public boolean isScanning() {
+        return burst.length() > 1;
+    }
+
+    @Override
+    public void keyTyped(KeyEvent e) {
+        char c = e.getKeyChar();
+        if (c == '\n') return; // Handled on key press
+        long when = e.getWhen();
+        if (c < '0' || c > '9' || when - lastKeyTime > MAX_GAP_MS) burst.setLength(0);
+        if (c >= '0' && c <= '9') burst.append(c);
+        lastKeyTime = when;
+    }
+
+    @Override
+    public void keyPressed(KeyEvent e) {
+        if (e.getKeyCode() != KeyEvent.VK_ENTER) return;
+        boolean scanned = burst.length() >= MIN_LENGTH
+                && e.getWhen() - lastKeyTime <= MAX_GAP_MS
+                && field.getText().endsWith(burst.toString());
+        if (!scanned) {
+            burst.setLength(0);
+            return;
+        }
+
+        e.consume();
+        String code = burst.toString();
+        burst.setLength(0);
+        field.setText("");
+        onScan.accept(code);
+    }
+}
@@ -2,16 +2,14 @@ package ui;
 
 import possportstore.*;
 import possportstore.Sale.Invoice;
-import possportstore.Sale.InvoiceItem;
+import possportstore.StoreMetrics.Category;
 
 import javax.swing.*;
 import javax.swing.border.EmptyBorder;
 import javax.swing.table.DefaultTableModel;
 import java.awt.*;
 import java.text.NumberFormat;
-import java.util.HashMap;
 import java.util.Locale;
-import java.util.Map;
 
 /**
  * Advanced Dashboard Panel for the Point of Sale System.
@@ -29,6 +27,12 @@ public class DashboardView extends JPanel {
     private DefaultTableModel recentSalesModel;
     private DefaultTableModel lowStockModel; 
     private JLabel lastUpdateLabel;
+    private JLabel printStatsLabel;
+
+    // Refresh as soon as a product crosses its reorder level
+    private final LowStockTracker.Listener lowStockListener = (product, low) -> SwingUtilities.invokeLater(() -> {
+        if (isShowing()) refreshDashboard();
+    });
 
     /**
      * Constructs the Dashboard view.
@@ -83,6 +87,18 @@ public class DashboardView extends JPanel {
         refreshDashboard();
     }
 
+    @Override
+    public void addNotify() {
+        super.addNotify();
+        system.getLowStockTracker().addListener(lowStockListener);
+    }
+
+    @Override
+    public void removeNotify() {
+        system.getLowStockTracker().removeListener(lowStockListener);
+        super.removeNotify();
+    }
+
     /**
      * Creates the top header section.
      * @return The header JPanel.
@@ -102,6 +118,10 @@ public class DashboardView extends JPanel {
         lastUpdateLabel.setFont(new Font("Inter", Font.PLAIN, 12));
         lastUpdateLabel.setForeground(Color.GRAY);
 
+        printStatsLabel = new JLabel();
+        printStatsLabel.setFont(new Font("Inter", Font.PLAIN, 12));
+        printStatsLabel.setForeground(Color.GRAY);
+
         JButton refreshBtn = new JButton("↻ Actualizar");
         refreshBtn.setFont(new Font("Inter", Font.BOLD, 12));
         refreshBtn.setBackground(MainFrame.COLOR_PRIMARY_BLUE);
@@ -109,6 +129,8 @@ public class DashboardView extends JPanel {
         refreshBtn.setFocusPainted(false);
         refreshBtn.addActionListener(e -> refreshDashboard());
 
+        actionPanel.add(printStatsLabel);
+        actionPanel.add(Box.createHorizontalStrut(10));
         actionPanel.add(lastUpdateLabel);
         actionPanel.add(Box.createHorizontalStrut(10));
         actionPanel.add(refreshBtn);
@@ -209,10 +231,23 @@ public class DashboardView extends JPanel {
         updateRecentSalesTable();
         updateLowStockTable();
 
-        // 5. Update timestamp
+        // 5. Update receipt printer figures
+        updatePrintStats();
+
+        // 6. Update timestamp
         lastUpdateLabel.setText("Actualizado: " + java.time.LocalTime.now().toString().substring(0, 8));
     }
     
+    /**
+     * Shows the receipt queue's figures: receipts printed and failed, and time from queueing to printing.
+     */
+    private void updatePrintStats() {
+        PrintQueue queue = system.getPrintQueue();
+        printStatsLabel.setText(String.format("Recibos: %d impresos, %d fallidos, %d en cola | %.0f ms prom. (máx. %.0f ms) | %.1f/s",
+                queue.getPrintedCount(), queue.getFailedCount(), queue.getPendingCount(),
+                queue.getAverageLatencyMillis(), queue.getMaxLatencyMillis(), queue.getThroughputPerSecond()));
+    }
+
     /**
      * Reloads the Low Stock table.
      */
@@ -232,42 +267,22 @@ public class DashboardView extends JPanel {
     }
 
     /**
-     * Updates the Analysis Panel (Charts).
+     * Updates the Analysis Panel (Charts) from the running sales aggregates.
      */
     private void updateAnalysisPanel() {
         analysisPanel.removeAll();
 
-        double shoeSales = 0, clotheSales = 0, accSales = 0;
-        String topProductName = "N/A";
-        int maxSoldQty = 0;
-        
-        Map<String, Integer> productSalesCount = new HashMap<>();
-
-        Invoice[] invoices = system.getSaleManager().getInvoicesForDisplay();
-        for (Invoice inv : invoices) {
-            if (inv != null && inv.getItems() != null) {
-                for (InvoiceItem item : inv.getItems()) {
-                    if (item != null) {
-                        productSalesCount.put(item.productId, productSalesCount.getOrDefault(item.productId, 0) + item.quantity);
-                        
-                        Product p = system.findProductById(item.productId);
-                        if (p != null) {
-                            double amount = item.quantity * item.unitPrice;
-                            if (p instanceof Shoe) shoeSales += amount;
-                            else if (p instanceof Clothe) clotheSales += amount;
-                            else if (p instanceof Accessories) accSales += amount;
-                        }
-                    }
-                }
-            }
-        }
+        StoreMetrics metrics = system.getMetrics();
+        double shoeSales = metrics.getCategoryRevenue(Category.SHOES);
+        double clotheSales = metrics.getCategoryRevenue(Category.CLOTHES);
+        double accSales = metrics.getCategoryRevenue(Category.ACCESSORIES);
 
-        for (Map.Entry<String, Integer> entry : productSalesCount.entrySet()) {
-            if (entry.getValue() > maxSoldQty) {
-                maxSoldQty = entry.getValue();
-                Product p = system.findProductById(entry.getKey());
-                topProductName = (p != null) ? p.getName() : "ID: " + entry.getKey();
-            }
+        String topProductName = "N/A";
+        int maxSoldQty = metrics.getTopProductUnits();
+        String topProductId = metrics.getTopProductId();
+        if (topProductId != null) {
+            Product p = system.findProductById(topProductId);
+            topProductName = (p != null) ? p.getName() : "ID: " + topProductId;
         }
 
         // --- Left Panel: Charts ---
@@ -340,18 +355,18 @@ public class DashboardView extends JPanel {
      */
     private void updateRecentSalesTable() {
         recentSalesModel.setRowCount(0);
-        Invoice[] allInvoices = system.getSaleManager().getInvoicesForDisplay();
+        Invoice[] recentInvoices = Sale.getInvoicesPage(Sale.getInvoiceCount() - 10, 10);
         
         int count = 0;
-        for (int i = allInvoices.length - 1; i >= 0 && count < 10; i--) { 
-            Invoice inv = allInvoices[i];
+        for (int i = recentInvoices.length - 1; i >= 0 && count < 10; i--) { 
+            Invoice inv = recentInvoices[i];
             if (inv != null) {
-                double finalTotal = inv.getTotal() * 1.13; 
+                long finalTotal = TaxCalculator.IVA.withTax(inv.getTotalCents()); 
                 
                 recentSalesModel.addRow(new Object[]{
                     "#" + inv.getId(),
                     (inv.getDate().length() > 16) ? inv.getDate().substring(0, 16) : inv.getDate(),
-                    String.format("₡%.2f", finalTotal)
+                    Money.format(finalTotal)
                 });
                 count++;
             }
@@ -36,7 +36,7 @@ public class DiscountDialog extends JDialog {
         // Default logic: If item selected, default to item discount, else global
         if (selectedItemIndex != -1) {
             applyToGlobal = false;
-            currentPercent = currentSale.getItems()[selectedItemIndex].getDiscountPercent();
+            currentPercent = currentSale.getItem(selectedItemIndex).getDiscountPercent();
         } else {
             applyToGlobal = true;
             currentPercent = currentSale.getGlobalDiscountPercent();
@@ -95,7 +95,7 @@ public class DiscountDialog extends JDialog {
             applyToGlobal = isGlobalMode;
             // Reset percent when switching context to avoid accidents
             currentPercent = isGlobalMode ? currentSale.getGlobalDiscountPercent() 
-                                          : currentSale.getItems()[selectedItemIndex].getDiscountPercent();
+                                          : currentSale.getItem(selectedItemIndex).getDiscountPercent();
             updateModeState();
         });
         
@@ -185,7 +185,7 @@ public class DiscountDialog extends JDialog {
         } else {
             styleActiveButton(btnModeItem);
             styleInactiveButton(btnModeGlobal);
-            CartItem item = currentSale.getItems()[selectedItemIndex];
+            CartItem item = currentSale.getItem(selectedItemIndex);
             targetLabel.setText("Aplicando a: " + item.getProduct().getName());
         }
         updateValueDisplay();
@@ -222,7 +222,7 @@ public class DiscountDialog extends JDialog {
         } else {
             currentSale.setItemDiscount(selectedItemIndex, currentPercent);
         }
-        parentView.updateCartDisplay(); // Refresh UI
+        parentView.updateCartRow(applyToGlobal ? -1 : selectedItemIndex); // Refresh UI
         dispose();
     }
 
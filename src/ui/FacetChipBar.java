@@ -0,0 +1,175 @@
+package ui;
+
+import possportstore.FacetIndex;
+import possportstore.FacetIndex.Facet;
+import possportstore.InventoryModel;
+import possportstore.Product;
+import possportstore.StoreSystem;
+
+import javax.swing.*;
+import java.awt.*;
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.function.Consumer;
+
+/**
+ * Filter chips for browsing the catalog by category, type, size, color and brand.
+ * <p>
+ * Each chip is a facet value with the number of products it would give, read from the
+ * {@link FacetIndex}; clicking it toggles the value and re-runs the query at once.
+ * Only the category row is shown until a category is chosen, since the types, sizes
+ * and brands on offer depend on it.
+ * </p>
+ * <p>
+ * While shown, the bar listens to the {@link InventoryModel} like the index does, and
+ * recounts once per turn of the EDT after products are added, removed or change stock.
+ * The chips are only rebuilt if a count changed, and the products are not passed on
+ * again: each view keeps its own rows up to date.
+ * </p>
+ */
+public class FacetChipBar extends JPanel {
+
+    private static final Font CHIP_FONT = new Font("Inter", Font.PLAIN, 12);
+    private static final Map<Facet, String> FACET_LABELS = Map.of(
+            Facet.CATEGORY, "Categoría:", Facet.TYPE, "Tipo:", Facet.SIZE, "Talla:",
+            Facet.COLOR, "Color:", Facet.BRAND, "Marca:");
+    private static final Map<String, String> CATEGORY_LABELS = Map.of(
+            "SHOES", "Zapatos", "CLOTHES", "Ropa", "ACCESSORIES", "Accesorios");
+
+    private final StoreSystem system;
+    private final FacetIndex.Query query = new FacetIndex.Query();
+    private final Consumer<FacetIndex.Result> onResult;
+    private final boolean showStockChip;
+    private final JPanel rows = new JPanel();
+    private final Map<Facet, Map<String, Integer>> shownCounts = new EnumMap<>(Facet.class);
+    private boolean recountScheduled; // Guarded by this
+    private final InventoryModel.Listener inventoryListener = new InventoryModel.Listener() {
+        @Override
+        public void productAdded(Product product) { scheduleRecount(); }
+
+        @Override
+        public void productRemoved(Product product) { scheduleRecount(); }
+
+        @Override
+        public void productChanged(Product product) { scheduleRecount(); }
+    };
+
+    /**
+     * Creates the chip bar. Call {@link #refresh()} to run the first query.
+     *
+     * @param system      The store controller the products are filtered from.
+     * @param inStockOnly true to always leave out-of-stock products out; false to offer it as a chip.
+     * @param onResult    Called with the matching products every time the filters change.
+     */
+    public FacetChipBar(StoreSystem system, boolean inStockOnly, Consumer<FacetIndex.Result> onResult) {
+        super(new BorderLayout());
+        this.system = system;
+        this.onResult = onResult;
+        this.showStockChip = !inStockOnly;
+        query.setInStockOnly(inStockOnly);
+
+        setBackground(Color.WHITE);
+        rows.setLayout(new BoxLayout(rows, BoxLayout.Y_AXIS));
+        rows.setBackground(Color.WHITE);
+        JScrollPane scrollPane = new JScrollPane(rows, JScrollPane.VERTICAL_SCROLLBAR_NEVER, JScrollPane.HORIZONTAL_SCROLLBAR_AS_NEEDED);
+        scrollPane.setBorder(null);
+        add(scrollPane, BorderLayout.CENTER);
+    }
+
+    @Override
+    public void addNotify() {
+        super.addNotify();
+        system.getInventoryModel().addListener(inventoryListener);
+    }
+
+    @Override
+    public void removeNotify() {
+        system.getInventoryModel().removeListener(inventoryListener);
+        super.removeNotify();
+    }
+
+    /**
+     * Gets the filters currently chosen.
+     * @return The query; a product can be checked against it with {@link FacetIndex.Query#matches}.
+     */
+    public FacetIndex.Query getQuery() { return query; }
+
+    /**
+     * Re-runs the query, updates the chip counts and passes the matching products on.
+     */
+    public void refresh() {
+        FacetIndex.Result result = system.filterProducts(query);
+        rebuildChips(result);
+        onResult.accept(result);
+    }
+
+    private void scheduleRecount() {
+        synchronized (this) {
+            if (recountScheduled) return;
+            recountScheduled = true;
+        }
+        SwingUtilities.invokeLater(this::recount);
+    }
+
+    /**
+     * Updates the chip counts after inventory changes, keeping the shown products.
+     */
+    private void recount() {
+        synchronized (this) {
+            recountScheduled = false;
+        }
+        FacetIndex.Result result = system.filterProducts(query);
+        for (Facet facet : Facet.values()) {
+            if (!result.getCounts(facet).equals(shownCounts.get(facet))) {
+                rebuildChips(result);
+                return;
+            }
+        }
+    }
+
+    private void rebuildChips(FacetIndex.Result result) {
+        for (Facet facet : Facet.values()) {
+            shownCounts.put(facet, result.getCounts(facet));
+        }
+        rows.removeAll();
+        boolean categoryChosen = result.getCounts(Facet.CATEGORY).keySet().stream()
+                .anyMatch(category -> query.isSelected(Facet.CATEGORY, category));
+        for (Facet facet : Facet.values()) {
+            if (facet != Facet.CATEGORY && !categoryChosen) break;
+            Map<String, Integer> counts = result.getCounts(facet);
+            if (counts.isEmpty()) continue;
+
+            JPanel row = new JPanel(new FlowLayout(FlowLayout.LEFT, 5, 2));
+            row.setBackground(Color.WHITE);
+            JLabel label = new JLabel(FACET_LABELS.get(facet));
+            label.setFont(CHIP_FONT.deriveFont(Font.BOLD));
+            row.add(label);
+            for (Map.Entry<String, Integer> entry : counts.entrySet()) {
+                String value = entry.getKey();
+                String text = (facet == Facet.CATEGORY) ? CATEGORY_LABELS.getOrDefault(value, value) : value;
+                row.add(createChip(text + " (" + entry.getValue() + ")", query.isSelected(facet, value), () -> query.toggle(facet, value)));
+            }
+            if (facet == Facet.CATEGORY) {
+                if (showStockChip) {
+                    row.add(createChip("Solo con stock", query.isInStockOnly(), () -> query.setInStockOnly(!query.isInStockOnly())));
+                }
+                if (query.hasSelection()) row.add(createChip("✕ Limpiar", false, query::clear));
+            }
+            rows.add(row);
+        }
+        rows.revalidate();
+        rows.repaint();
+    }
+
+    private JToggleButton createChip(String text, boolean selected, Runnable toggle) {
+        JToggleButton chip = new JToggleButton(text, selected);
+        chip.setFont(CHIP_FONT);
+        chip.setFocusable(false);
+        chip.setMargin(new Insets(2, 8, 2, 8));
+        chip.addActionListener(e -> {
+            toggle.run();
+            refresh();
+        });
+        return chip;
+    }
+}
@@ -1,10 +1,13 @@
 package ui;
 
+import possportstore.Money;
 import possportstore.StoreSystem;
+import possportstore.TaxCalculator;
+import possportstore.Sale;
 import possportstore.Sale.Invoice;
 import javax.swing.*;
 import javax.swing.border.EmptyBorder;
-import javax.swing.table.DefaultTableModel;
+import javax.swing.table.AbstractTableModel;
 import java.awt.*;
 import javax.swing.border.TitledBorder;
 
@@ -14,7 +17,7 @@ import javax.swing.border.TitledBorder;
 public class InvoicesView extends JPanel {
 
     private final StoreSystem system;
-    private DefaultTableModel invoiceTableModel;
+    private InvoiceTableModel invoiceTableModel;
     private JTable invoiceTable;
 
     private JLabel detailIdLabel;
@@ -24,6 +27,7 @@ public class InvoicesView extends JPanel {
     
     // New button
     private JButton returnButton; 
+    private JButton reprintButton;
 
     /**
      * Initializes the Invoices view.
@@ -47,16 +51,46 @@ public class InvoicesView extends JPanel {
         loadInvoicesData();
     }
 
+    /**
+     * Read-only table model that fetches rows from the paged invoice history on demand,
+     * so only the rows being painted are ever loaded.
+     */
+    private static class InvoiceTableModel extends AbstractTableModel {
+        private static final String[] COLUMNS = {"ID", "Total Final (₡)", "Fecha", "Cajero"};
+        private int rowCount;
+
+        /** Re-reads the number of invoices and repaints the table. */
+        void reload() {
+            rowCount = Sale.getInvoiceCount();
+            fireTableDataChanged();
+        }
+
+        /** Gets the invoice shown at a row. */
+        Invoice getInvoiceAt(int row) { return Sale.getInvoiceAt(row); }
+
+        @Override public int getRowCount() { return rowCount; }
+        @Override public int getColumnCount() { return COLUMNS.length; }
+        @Override public String getColumnName(int column) { return COLUMNS[column]; }
+
+        @Override
+        public Object getValueAt(int row, int column) {
+            Invoice invoice = getInvoiceAt(row);
+            if (invoice == null) return null; // Defensive check
+
+            return switch (column) {
+                case 0 -> invoice.id;
+                case 1 -> Money.format(TaxCalculator.IVA.withTax(invoice.totalCents)); // VAT applied
+                case 2 -> invoice.date;
+                default -> invoice.cashier;
+            };
+        }
+    }
+
     /**
      * Configures the invoice list table.
      */
     private void setupInvoiceTable() {
-        invoiceTableModel = new DefaultTableModel(new Object[]{"ID", "Total Final (₡)", "Fecha", "Cajero"}, 0) {
-            @Override
-            public boolean isCellEditable(int row, int column) {
-                return false;
-            }
-        };
+        invoiceTableModel = new InvoiceTableModel();
 
         invoiceTable = new JTable(invoiceTableModel);
         invoiceTable.setRowHeight(25);
@@ -111,8 +145,19 @@ public class InvoicesView extends JPanel {
         
         returnButton.addActionListener(e -> openReturnDialog());
         
+        reprintButton = new JButton("Reimprimir Factura");
+        reprintButton.setFont(new Font("Inter", Font.BOLD, 12));
+        reprintButton.setEnabled(false); // Disabled until an invoice is selected
+        reprintButton.addActionListener(e -> reprintInvoice());
+        
+        JButton lookupButton = new JButton("Devolución por Nº de Factura");
+        lookupButton.setFont(new Font("Inter", Font.BOLD, 12));
+        lookupButton.addActionListener(e -> lookupInvoice());
+
         panel.add(Box.createVerticalStrut(10));
         panel.add(returnButton);
+        panel.add(reprintButton);
+        panel.add(lookupButton);
         // --------------------------
 
         panel.add(Box.createVerticalGlue());
@@ -124,26 +169,10 @@ public class InvoicesView extends JPanel {
      * Populates the table with data from the system.
      */
     private void loadInvoicesData() {
-        invoiceTableModel.setRowCount(0);
-        Invoice[] invoices = system.getSaleManager().getInvoicesForDisplay();
+        invoiceTableModel.reload();
 
-        if (invoices.length == 0) {
+        if (invoiceTableModel.getRowCount() == 0) {
             JOptionPane.showMessageDialog(this, "No se encontraron facturas registradas.", "Información", JOptionPane.INFORMATION_MESSAGE);
-            return;
-        }
-
-        for (Invoice invoice : invoices) {
-            if (invoice != null) { // Defensive check
-                double subtotal = invoice.total;
-                double finalTotal = subtotal * 1.13; // VAT applied
-
-                invoiceTableModel.addRow(new Object[]{
-                        invoice.id,
-                        String.format("₡%.2f", finalTotal),
-                        invoice.date,
-                        invoice.cashier
-                });
-            }
         }
     }
 
@@ -152,25 +181,24 @@ public class InvoicesView extends JPanel {
      * @param rowIndex The selected row index.
      */
     private void showInvoiceDetails(int rowIndex) {
-        Invoice[] invoices = system.getSaleManager().getInvoicesForDisplay();
-        if (rowIndex >= 0 && rowIndex < invoices.length) {
-            Invoice invoice = invoices[rowIndex];
+        if (rowIndex >= 0 && rowIndex < invoiceTableModel.getRowCount()) {
+            Invoice invoice = invoiceTableModel.getInvoiceAt(rowIndex);
 
             if (invoice != null) {
-                double subtotal = invoice.total;
-                double iva = subtotal * 0.13;
-                double finalTotal = subtotal * 1.13;
+                long subtotal = invoice.totalCents;
+                long iva = TaxCalculator.IVA.taxOf(subtotal);
+                long finalTotal = subtotal + iva;
 
                 detailIdLabel.setText("ID de Factura: " + invoice.id);
-                detailTotalLabel.setText(String.format(
-                        "Total: Subtotal ₡%.2f + IVA ₡%.2f = Total Final ₡%.2f",
-                        subtotal, iva, finalTotal));
+                detailTotalLabel.setText("Total: Subtotal " + Money.format(subtotal)
+                        + " + IVA " + Money.format(iva) + " = Total Final " + Money.format(finalTotal));
 
                 detailDateLabel.setText("Fecha: " + invoice.date);
                 detailCashierLabel.setText("Cajero: " + invoice.cashier);
                 
-                // Enable button when invoice is selected
+                // Enable buttons when invoice is selected
                 returnButton.setEnabled(true);
+                reprintButton.setEnabled(true);
             }
         }
     }
@@ -181,18 +209,79 @@ public class InvoicesView extends JPanel {
     private void openReturnDialog() {
         int selectedRow = invoiceTable.getSelectedRow();
         if (selectedRow != -1) {
-            Invoice[] invoices = system.getSaleManager().getInvoicesForDisplay();
-            Invoice invoice = invoices[selectedRow];
-            
-            // Check if invoice has item details (compatibility check)
-            if (invoice != null && (invoice.getItems() == null || invoice.getItems().length == 0)) {
-                JOptionPane.showMessageDialog(this, "Esta factura es antigua y no tiene detalle de productos para devolución.", "Error", JOptionPane.ERROR_MESSAGE);
-                return;
+            Invoice invoice = invoiceTableModel.getInvoiceAt(selectedRow);
+            if (invoice != null) {
+                openReturnDialog(invoice.getId());
             }
+        }
+    }
 
-            JFrame parentFrame = (JFrame) SwingUtilities.getWindowAncestor(this);
-            ReturnDialog dialog = new ReturnDialog(parentFrame, system, this, invoice);
-            dialog.setVisible(true);
+    /**
+     * Sends the selected invoice to the printer again.
+     * <p>
+     * The invoice is fetched by ID so the receipt shows every return applied so far;
+     * an unchanged invoice reuses its cached receipt and is queued at once.
+     * </p>
+     */
+    private void reprintInvoice() {
+        int selectedRow = invoiceTable.getSelectedRow();
+        if (selectedRow == -1) return;
+        Invoice selected = invoiceTableModel.getInvoiceAt(selectedRow);
+        if (selected == null) return;
+
+        Invoice invoice = Sale.findInvoiceById(selected.getId());
+        if (invoice == null) {
+            JOptionPane.showMessageDialog(this, "No se encontró la factura #" + selected.getId() + ".", "Error", JOptionPane.ERROR_MESSAGE);
+            return;
+        }
+
+        system.printInvoice(invoice).whenComplete((done, error) -> {
+            if (error != null) {
+                SwingUtilities.invokeLater(() -> JOptionPane.showMessageDialog(this,
+                        "No se pudo imprimir la factura #" + invoice.getId() + ".", "Error de Impresión", JOptionPane.ERROR_MESSAGE));
+            }
+        });
+    }
+
+    /**
+     * Asks for an invoice number and opens the Return Dialog for it.
+     * Works for any invoice in the history, however old, without paging through the table.
+     */
+    private void lookupInvoice() {
+        String input = JOptionPane.showInputDialog(this, "Número de factura:", "Buscar Factura", JOptionPane.QUESTION_MESSAGE);
+        if (input == null || input.isBlank()) return;
+
+        try {
+            openReturnDialog(Integer.parseInt(input.trim()));
+        } catch (NumberFormatException e) {
+            JOptionPane.showMessageDialog(this, "Número de factura inválido.", "Error", JOptionPane.ERROR_MESSAGE);
         }
     }
-}
\ No newline at end of file
+
+    /**
+     * Opens the Return Dialog for an invoice ID.
+     * <p>
+     * The invoice is fetched by ID, which reads only that invoice from the archive,
+     * so the dialog always shows it with every return applied so far.
+     * </p>
+     *
+     * @param invoiceId The invoice ID.
+     */
+    private void openReturnDialog(int invoiceId) {
+        Invoice invoice = Sale.findInvoiceById(invoiceId);
+        if (invoice == null) {
+            JOptionPane.showMessageDialog(this, "No se encontró la factura #" + invoiceId + ".", "Error", JOptionPane.ERROR_MESSAGE);
+            return;
+        }
+
+        // Check if invoice has item details (compatibility check)
+        if (invoice.getItems() == null || invoice.getItems().length == 0) {
+            JOptionPane.showMessageDialog(this, "Esta factura es antigua y no tiene detalle de productos para devolución.", "Error", JOptionPane.ERROR_MESSAGE);
+            return;
+        }
+
+        JFrame parentFrame = (JFrame) SwingUtilities.getWindowAncestor(this);
+        ReturnDialog dialog = new ReturnDialog(parentFrame, system, this, invoice);
+        dialog.setVisible(true);
+    }
+}
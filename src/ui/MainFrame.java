@@ -77,8 +77,9 @@ public class MainFrame extends JFrame {
                 );
 
                 if (confirm == JOptionPane.YES_OPTION) {
-                    system.saveProducts(); // Save state before exit
-                    System.exit(0);
+                    // Save state before exit, off the EDT
+                    setEnabled(false);
+                    system.getService().saveProducts().whenComplete((done, error) -> System.exit(0));
                 }
             }
         });
@@ -218,9 +219,11 @@ public class MainFrame extends JFrame {
 
     private void logout() {
         if (JOptionPane.showConfirmDialog(this, "¿Cerrar sesión?", "Confirmar", JOptionPane.YES_NO_OPTION) == JOptionPane.YES_OPTION) {
-            system.saveProducts();
-            dispose();
-            new LoginUI(system).setVisible(true);
+            setEnabled(false);
+            system.getService().saveProducts().whenComplete((done, error) -> SwingUtilities.invokeLater(() -> {
+                dispose();
+                new LoginUI(system).setVisible(true);
+            }));
         }
     }
 
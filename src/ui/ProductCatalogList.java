@@ -0,0 +1,260 @@
+package ui;
+
+import possportstore.Money;
+import possportstore.Product;
+
+import javax.swing.*;
+import javax.swing.border.EmptyBorder;
+import java.awt.*;
+import java.awt.event.MouseAdapter;
+import java.awt.event.MouseEvent;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.Consumer;
+
+/**
+ * Virtualized product catalog grid for the sales screen.
+ * <p>
+ * A {@link JList} in {@link JList#HORIZONTAL_WRAP} layout with a fixed tile size: Swing
+ * lays it out from the product count alone and paints only the tiles in the viewport,
+ * all with one reused renderer component. The catalog therefore holds one reference
+ * per product instead of one button, and scrolling, layout and memory stay flat however
+ * many products there are. Thumbnails are requested only for tiles that get painted.
+ * </p>
+ */
+public class ProductCatalogList extends JList<Product> {
+
+    private static final int TILE_WIDTH = 170;
+    private static final int TILE_HEIGHT = 190;
+
+    private final CatalogListModel model = new CatalogListModel();
+    private final ThumbnailCache thumbnails;
+
+    // Repaints a tile once its image has loaded
+    private final ThumbnailCache.Listener thumbnailListener = productId -> {
+        int index = model.indexOf(productId);
+        if (index >= 0) model.changed(index);
+    };
+
+    /**
+     * Creates an empty catalog grid.
+     *
+     * @param thumbnails The cache the product images come from.
+     * @param onClick    Called with the product of a tile when it is clicked.
+     */
+    public ProductCatalogList(ThumbnailCache thumbnails, Consumer<Product> onClick) {
+        this.thumbnails = thumbnails;
+        setModel(model);
+        setCellRenderer(new TileRenderer());
+        setLayoutOrientation(JList.HORIZONTAL_WRAP);
+        setVisibleRowCount(-1); // As many columns as fit the width
+        setFixedCellWidth(TILE_WIDTH);
+        setFixedCellHeight(TILE_HEIGHT);
+        setSelectionMode(ListSelectionModel.SINGLE_SELECTION);
+        setBackground(Color.WHITE);
+
+        addMouseListener(new MouseAdapter() {
+            @Override
+            public void mouseClicked(MouseEvent e) {
+                int index = locationToIndex(e.getPoint());
+                if (index >= 0 && getCellBounds(index, index).contains(e.getPoint())) {
+                    onClick.accept(model.getElementAt(index));
+                    clearSelection();
+                }
+            }
+        });
+    }
+
+    @Override
+    public void addNotify() {
+        super.addNotify();
+        thumbnails.addListener(thumbnailListener);
+    }
+
+    @Override
+    public void removeNotify() {
+        thumbnails.removeListener(thumbnailListener);
+        super.removeNotify();
+    }
+
+    /**
+     * Replaces the whole catalog.
+     * @param products The products to show, in order.
+     */
+    public void setProducts(List<Product> products) {
+        model.setAll(products);
+    }
+
+    /**
+     * Checks whether a product has a tile.
+     * @param productId The product ID.
+     * @return true if the product is shown.
+     */
+    public boolean containsProduct(String productId) {
+        return model.contains(productId);
+    }
+
+    /**
+     * Gets the product shown on a tile.
+     * @param productId The product ID.
+     * @return The product of its tile, or null if it has none.
+     */
+    public Product getProduct(String productId) {
+        int index = model.indexOf(productId);
+        return (index >= 0) ? model.getElementAt(index) : null;
+    }
+
+    /**
+     * Repaints the tile of a product after its price or stock changed.
+     * @param product The product.
+     */
+    public void productChanged(Product product) {
+        int index = model.indexOf(product.getIdProduct());
+        if (index >= 0) model.changed(index);
+    }
+
+    /**
+     * Adds a tile for a product.
+     * @param position The index of the new tile.
+     * @param product  The product.
+     */
+    public void insertProduct(int position, Product product) {
+        model.insert(Math.min(position, model.getSize()), product);
+    }
+
+    /**
+     * Removes the tiles of several products in one pass.
+     * @param productIds The product IDs; those without a tile are ignored.
+     */
+    public void removeProducts(Set<String> productIds) {
+        model.removeAll(productIds);
+    }
+
+    /**
+     * List model holding the shown products, with an index by product ID.
+     * <p>
+     * The index always holds exactly the shown IDs, but adding or removing a tile shifts
+     * every tile after it, so positions from the first such tile on are only marked stale.
+     * They are renumbered by the next lookup that needs one, once for a whole batch of
+     * changes and only from the first changed tile.
+     * </p>
+     */
+    private static class CatalogListModel extends AbstractListModel<Product> {
+        private final List<Product> products = new ArrayList<>();
+        private final Map<String, Integer> positions = new HashMap<>();
+        private int staleFrom; // Positions at or after this index may be out of date
+
+        @Override
+        public int getSize() { return products.size(); }
+
+        @Override
+        public Product getElementAt(int index) { return products.get(index); }
+
+        void setAll(List<Product> all) {
+            int oldSize = products.size();
+            products.clear();
+            positions.clear();
+            if (oldSize > 0) fireIntervalRemoved(this, 0, oldSize - 1);
+            products.addAll(all);
+            staleFrom = 0;
+            renumber();
+            if (!products.isEmpty()) fireIntervalAdded(this, 0, products.size() - 1);
+        }
+
+        boolean contains(String productId) {
+            return positions.containsKey(productId);
+        }
+
+        int indexOf(String productId) {
+            Integer index = positions.get(productId);
+            if (index == null) return -1;
+            // Every shift moves only tiles at or after staleFrom, so an older position is still right
+            if (index < staleFrom) return index;
+            renumber();
+            return positions.get(productId);
+        }
+
+        void changed(int index) {
+            fireContentsChanged(this, index, index);
+        }
+
+        void insert(int index, Product p) {
+            products.add(index, p);
+            positions.put(p.getIdProduct(), index);
+            staleFrom = Math.min(staleFrom, index);
+            fireIntervalAdded(this, index, index);
+        }
+
+        void removeAll(Set<String> productIds) {
+            List<Integer> removed = new ArrayList<>();
+            for (int i = 0; i < products.size(); i++) {
+                if (productIds.contains(products.get(i).getIdProduct())) removed.add(i);
+            }
+            if (removed.isEmpty()) return;
+            products.removeIf(p -> productIds.contains(p.getIdProduct()));
+            positions.keySet().removeAll(productIds);
+            staleFrom = Math.min(staleFrom, removed.get(0));
+            // From the last to the first, so each index is still valid when reported
+            for (int i = removed.size() - 1; i >= 0; i--) {
+                fireIntervalRemoved(this, removed.get(i), removed.get(i));
+            }
+        }
+
+        private void renumber() {
+            for (int i = staleFrom; i < products.size(); i++) {
+                positions.put(products.get(i).getIdProduct(), i);
+            }
+            staleFrom = products.size();
+        }
+    }
+
+    /**
+     * The one component that paints every tile: image on top, then name, price and stock.
+     * Plain labels instead of HTML, so painting a tile never parses markup.
+     */
+    private class TileRenderer extends JPanel implements ListCellRenderer<Product> {
+        private final JLabel imageLabel = new JLabel();
+        private final JLabel nameLabel = new JLabel();
+        private final JLabel priceLabel = new JLabel();
+        private final JLabel stockLabel = new JLabel();
+
+        TileRenderer() {
+            super(new BorderLayout(0, 2));
+            setBorder(BorderFactory.createCompoundBorder(
+                new EmptyBorder(5, 5, 5, 5),
+                BorderFactory.createCompoundBorder(
+                    BorderFactory.createLineBorder(new Color(230, 230, 230), 1),
+                    BorderFactory.createEmptyBorder(5, 5, 5, 5))));
+
+            imageLabel.setHorizontalAlignment(SwingConstants.CENTER);
+            nameLabel.setFont(new Font("Inter", Font.BOLD, 12));
+            priceLabel.setFont(new Font("Inter", Font.PLAIN, 12));
+            stockLabel.setFont(new Font("Inter", Font.PLAIN, 11));
+            stockLabel.setForeground(Color.GRAY);
+
+            JPanel text = new JPanel(new GridLayout(3, 1));
+            text.setOpaque(false);
+            for (JLabel label : new JLabel[]{nameLabel, priceLabel, stockLabel}) {
+                label.setHorizontalAlignment(SwingConstants.CENTER);
+                text.add(label);
+            }
+            add(imageLabel, BorderLayout.CENTER);
+            add(text, BorderLayout.SOUTH);
+        }
+
+        @Override
+        public Component getListCellRendererComponent(JList<? extends Product> list, Product p, int index,
+                                                      boolean isSelected, boolean cellHasFocus) {
+            String productId = p.getIdProduct();
+            imageLabel.setIcon(thumbnails.get(productId));
+            nameLabel.setText(p.getName());
+            priceLabel.setText(Money.format(Money.of(p.getPrice())));
+            stockLabel.setText("Stock: " + p.getStock());
+            setBackground(isSelected ? new Color(232, 240, 254) : Color.WHITE);
+            return this;
+        }
+    }
+}
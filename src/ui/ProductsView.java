@@ -6,6 +6,7 @@ import possportstore.StoreSystem;
 import javax.swing.*;
 import javax.swing.table.DefaultTableModel;
 import java.awt.*;
+import java.util.List;
 
 /**
  * View for managing product inventory (CRUD).
@@ -15,13 +16,20 @@ public class ProductsView extends JPanel {
     private final StoreSystem system;
     private JTable productsTable;           
     private DefaultTableModel tableModel;   
+    private FacetChipBar facetChips;
 
     public ProductsView(StoreSystem system) {
         this.system = system;
         setLayout(new BorderLayout(10, 10)); 
         setBackground(Color.WHITE);
 
-        add(createHeader(), BorderLayout.NORTH);
+        facetChips = new FacetChipBar(system, false, result -> showProducts(result.getProducts()));
+
+        JPanel northPanel = new JPanel(new BorderLayout(0, 5));
+        northPanel.setBackground(Color.WHITE);
+        northPanel.add(createHeader(), BorderLayout.NORTH);
+        northPanel.add(facetChips, BorderLayout.SOUTH);
+        add(northPanel, BorderLayout.NORTH);
         add(createContent(), BorderLayout.CENTER);
         
         refreshView(); 
@@ -148,11 +156,14 @@ public class ProductsView extends JPanel {
     }
 
     /**
-     * Refreshes table data from the system backend.
+     * Refreshes table data from the system backend, keeping the chosen filter chips.
      */
     public void refreshView() {
+        facetChips.refresh();
+    }
+
+    private void showProducts(List<Product> products) {
         tableModel.setRowCount(0); 
-        Product[] products = system.getProducts();
         
         for (Product p : products) {
             tableModel.addRow(new Object[]{
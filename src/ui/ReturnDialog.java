@@ -1,6 +1,8 @@
 package ui;
 
+import possportstore.Money;
 import possportstore.StoreSystem;
+import possportstore.TaxCalculator;
 import possportstore.Sale.Invoice;
 import possportstore.Sale.InvoiceItem;
 
@@ -9,7 +11,9 @@ import javax.swing.border.EmptyBorder;
 import javax.swing.table.DefaultTableModel;
 import java.awt.*;
 import java.util.ArrayList;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
 
 /**
  * Touch-friendly dialog for managing product returns.
@@ -27,6 +31,7 @@ public class ReturnDialog extends JDialog {
     // List to keep track of the interactive rows
     private final List<ReturnItemRow> itemRows;
     private JLabel refundLabel;
+    private JButton confirmButton;
 
     /**
      * Constructs the Touch-Friendly Return Dialog.
@@ -67,8 +72,8 @@ public class ReturnDialog extends JDialog {
         panel.add(createInfoItem("Fecha:", invoice.getDate(), fontLabel, fontValue));
         panel.add(createInfoItem("Cajero:", invoice.getCashier(), fontLabel, fontValue));
         // Show total with tax
-        double totalWithTax = invoice.getTotal() * 1.13;
-        panel.add(createInfoItem("Total Factura:", String.format("₡%.2f", totalWithTax), fontLabel, fontValue));
+        long totalWithTax = TaxCalculator.IVA.withTax(invoice.getTotalCents());
+        panel.add(createInfoItem("Total Factura:", Money.format(totalWithTax), fontLabel, fontValue));
         
         return panel;
     }
@@ -138,11 +143,11 @@ public class ReturnDialog extends JDialog {
         panel.setBackground(Color.WHITE);
         panel.setBorder(BorderFactory.createMatteBorder(1, 0, 0, 0, Color.LIGHT_GRAY));
 
-        refundLabel = new JLabel("Reembolso Total: ₡0.00");
+        refundLabel = new JLabel("Reembolso Total: " + Money.format(0));
         refundLabel.setFont(new Font("Inter", Font.BOLD, 24));
         refundLabel.setForeground(new Color(220, 53, 69)); // Red for refund
 
-        JButton confirmButton = new JButton("CONFIRMAR DEVOLUCIÓN");
+        confirmButton = new JButton("CONFIRMAR DEVOLUCIÓN");
         confirmButton.setFont(new Font("Inter", Font.BOLD, 18));
         confirmButton.setBackground(new Color(0, 123, 255)); // Blue
         confirmButton.setForeground(Color.WHITE);
@@ -162,41 +167,53 @@ public class ReturnDialog extends JDialog {
      * Recalculates the total refund amount based on user selection.
      */
     private void recalculateTotalRefund() {
-        double totalRefund = 0;
+        long totalRefund = 0;
         for (ReturnItemRow row : itemRows) {
-            totalRefund += row.getReturnAmount();
+            totalRefund += row.getReturnCents();
         }
         // Apply tax to refund
-        totalRefund = totalRefund * 1.13;
-        refundLabel.setText(String.format("Reembolso Total: ₡%.2f", totalRefund));
+        totalRefund = TaxCalculator.IVA.withTax(totalRefund);
+        refundLabel.setText("Reembolso Total: " + Money.format(totalRefund));
     }
 
     /**
      * Processes the return for all rows with quantity > 0.
+     * The returns are written in the background; the dialog closes once they are saved.
      */
     private void processReturnAction() {
-        StringBuilder log = new StringBuilder("Devolución procesada:\n\n");
-        boolean anyReturn = false;
-
+        Map<String, Integer> quantities = new LinkedHashMap<>();
         for (ReturnItemRow row : itemRows) {
             int qty = row.getReturnQuantity();
             if (qty > 0) {
-                // Call backend WITH INVOICE ID
-                boolean success = system.processReturn(invoice.getId(), row.getProductId(), qty);
-                if (success) {
-                    log.append("• ").append(row.getProductName())
-                       .append(": ").append(qty).append(" unidades.\n");
-                    anyReturn = true;
-                }
+                quantities.put(row.getProductId(), qty);
             }
         }
 
-        if (anyReturn) {
-            JOptionPane.showMessageDialog(this, log.toString(), "Devolución Exitosa", JOptionPane.INFORMATION_MESSAGE);
-            dispose();
-        } else {
+        if (quantities.isEmpty()) {
             JOptionPane.showMessageDialog(this, "No has seleccionado ningún producto para devolver.", "Aviso", JOptionPane.WARNING_MESSAGE);
+            return;
         }
+
+        // Call backend WITH INVOICE ID, off the EDT
+        confirmButton.setEnabled(false);
+        system.getService().processReturns(invoice.getId(), quantities)
+              .whenComplete((returned, error) -> SwingUtilities.invokeLater(() -> {
+                  confirmButton.setEnabled(true);
+                  if (error != null || returned.isEmpty()) {
+                      JOptionPane.showMessageDialog(this, "No se pudo registrar la devolución.", "Error", JOptionPane.ERROR_MESSAGE);
+                      return;
+                  }
+
+                  StringBuilder log = new StringBuilder("Devolución procesada:\n\n");
+                  for (ReturnItemRow row : itemRows) {
+                      if (returned.contains(row.getProductId())) {
+                          log.append("• ").append(row.getProductName())
+                             .append(": ").append(quantities.get(row.getProductId())).append(" unidades.\n");
+                      }
+                  }
+                  JOptionPane.showMessageDialog(this, log.toString(), "Devolución Exitosa", JOptionPane.INFORMATION_MESSAGE);
+                  dispose();
+              }));
     }
 
     // =================================================================================
@@ -234,7 +251,7 @@ public class ReturnDialog extends JDialog {
             JLabel nameLabel = new JLabel(item.productName);
             nameLabel.setFont(new Font("Inter", Font.BOLD, 18));
             
-            JLabel detailLabel = new JLabel(String.format("Vendidos: %d  |  Precio: ₡%.2f", item.quantity, item.unitPrice));
+            JLabel detailLabel = new JLabel("Vendidos: " + item.quantity + "  |  Precio: " + Money.format(item.getUnitCents()));
             detailLabel.setFont(new Font("Inter", Font.PLAIN, 14));
             detailLabel.setForeground(Color.GRAY);
             
@@ -319,7 +336,7 @@ public class ReturnDialog extends JDialog {
         public String getProductName() { return item.productName; }
         /** @return The user-selected quantity to return. */
         public int getReturnQuantity() { return returnQty; }
-        /** @return The monetary value of the return selection. */
-        public double getReturnAmount() { return returnQty * item.unitPrice; }
+        /** @return The monetary value of the return selection, before tax, in cents. */
+        public long getReturnCents() { return item.getReturnCents(returnQty); }
     }
 }
\ No newline at end of file
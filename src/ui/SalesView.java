@@ -2,20 +2,28 @@ package ui;
 
 import possportstore.StoreSystem;
 import possportstore.CurrentSale;
+import possportstore.InventoryModel;
+import possportstore.Money;
 import possportstore.Product;
+import possportstore.TaxCalculator;
 import possportstore.CurrentSale.CartItem;
 
 import javax.swing.*;
 import javax.swing.border.EmptyBorder;
 import javax.swing.table.DefaultTableModel;
 import java.awt.*;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
 
 /**
  * Point of Sale (POS) view for processing sales transactions.
  * <p>
  * This panel provides the main interface for cashiers to:
  * <ul>
- * <li>Search for products by ID or Name.</li>
+ * <li>Search for products by ID or Name, or scan their barcode.</li>
  * <li>Select products from a visual catalog (Optimized with large images).</li>
  * <li>View and manage the current shopping cart.</li>
  * <li>Apply discounts (Global or Item-specific).</li>
@@ -39,7 +47,27 @@ public class SalesView extends JPanel {
     private JLabel discountLabel;
     private JLabel ivaLabel;
     private JLabel finalTotalValueLabel;
-    private JPanel catalogPanel;
+    private ProductCatalogList catalogList;
+    private FacetChipBar facetChips;
+    private JTextField searchField;
+    private JPopupMenu suggestionPopup;
+    private JList<Product> suggestionList;
+    private BarcodeScanListener scanListener;
+    private JButton payButton;
+
+    // Catalog tiles are updated as the inventory changes, in one batch per turn of the EDT
+    private final Set<String> pendingTiles = new LinkedHashSet<>(); // Guarded by itself
+    private boolean tilesFlushScheduled;
+    private final InventoryModel.Listener inventoryListener = new InventoryModel.Listener() {
+        @Override
+        public void productAdded(Product product) { queueCatalogTile(product.getIdProduct()); }
+
+        @Override
+        public void productRemoved(Product product) { queueCatalogTile(product.getIdProduct()); }
+
+        @Override
+        public void productChanged(Product product) { queueCatalogTile(product.getIdProduct()); }
+    };
 
     // Color Constants
     private static final Color COLOR_WARNING_ORANGE = new Color(255, 165, 0);
@@ -47,6 +75,14 @@ public class SalesView extends JPanel {
     private static final Color COLOR_ACTION_CANCEL = new Color(220, 53, 69);
     private static final Color COLOR_ACTION_DISCOUNT = new Color(108, 117, 125); 
 
+    private static final String SEARCH_PLACEHOLDER = "Buscar por ID o Nombre...";
+    private static final int MAX_SUGGESTIONS = 8;
+
+    // Shared by every SalesView, so thumbnails survive switching screens
+    private static final int THUMBNAIL_SIZE = 110;
+    private static final ThumbnailCache THUMBNAILS = new ThumbnailCache(
+            new java.io.File("images"), new java.io.File("images/.thumbs"), THUMBNAIL_SIZE, 32L * 1024 * 1024);
+
     /**
      * Initializes the Sales View panel.
      * <p>
@@ -68,10 +104,28 @@ public class SalesView extends JPanel {
         add(createCatalogPanel(), BorderLayout.CENTER);
         add(createCartAndActionPanel(), BorderLayout.EAST);
 
-        loadProductsIntoCatalog();
         updateTotalsDisplay();
     }
 
+    /**
+     * Builds the catalog and starts following inventory changes when the view is shown.
+     */
+    @Override
+    public void addNotify() {
+        super.addNotify();
+        system.getInventoryModel().addListener(inventoryListener);
+        loadProductsIntoCatalog();
+    }
+
+    /**
+     * Stops following inventory changes when the view is closed, so it can be collected.
+     */
+    @Override
+    public void removeNotify() {
+        system.getInventoryModel().removeListener(inventoryListener);
+        super.removeNotify();
+    }
+
     /**
      * Creates the top panel containing the search bar and sale summary.
      * @return A JPanel with the search field and total labels.
@@ -81,17 +135,20 @@ public class SalesView extends JPanel {
         panel.setBackground(Color.WHITE);
 
         // Search Field
-        JTextField searchField = new JTextField("Buscar por ID o Nombre...");
+        searchField = new JTextField(SEARCH_PLACEHOLDER);
         searchField.setFont(new Font("Inter", Font.PLAIN, 16));
         searchField.setPreferredSize(new Dimension(400, 40)); // Compact height
+        createSuggestionPopup();
+        scanListener = new BarcodeScanListener(searchField, this::addScannedProduct);
 
         // Placeholder logic
         searchField.addFocusListener(new java.awt.event.FocusAdapter() {
             public void focusGained(java.awt.event.FocusEvent evt) {
-                if (searchField.getText().equals("Buscar por ID o Nombre...")) searchField.setText("");
+                if (searchField.getText().equals(SEARCH_PLACEHOLDER)) searchField.setText("");
             }
             public void focusLost(java.awt.event.FocusEvent evt) {
-                if (searchField.getText().isEmpty()) searchField.setText("Buscar por ID o Nombre...");
+                suggestionPopup.setVisible(false);
+                if (searchField.getText().isEmpty()) searchField.setText(SEARCH_PLACEHOLDER);
             }
         });
 
@@ -103,6 +160,14 @@ public class SalesView extends JPanel {
         searchButton.setBorderPainted(false);
         searchButton.setPreferredSize(new Dimension(120, 40));
         searchButton.addActionListener(e -> searchAndAddToCart(searchField.getText()));
+        searchField.addActionListener(e -> {
+            Product selected = suggestionPopup.isVisible() ? suggestionList.getSelectedValue() : null;
+            if (selected != null) {
+                addSuggestionToCart(selected);
+            } else {
+                searchAndAddToCart(searchField.getText());
+            }
+        });
 
         // Totals Display (Top Right)
         JPanel totalsDisplay = new JPanel(new GridLayout(2, 2, 5, 5));
@@ -112,7 +177,7 @@ public class SalesView extends JPanel {
         itemsCountLabel.setFont(new Font("Inter", Font.BOLD, 14));
         itemsCountLabel.setForeground(MainFrame.COLOR_TEXT_DARK);
         
-        totalLabel = new JLabel("TOTAL: ₡0.00");
+        totalLabel = new JLabel("TOTAL: " + Money.format(0));
         totalLabel.setFont(new Font("Inter", Font.BOLD, 20)); 
         totalLabel.setForeground(MainFrame.COLOR_PRIMARY_BLUE);
 
@@ -127,84 +192,200 @@ public class SalesView extends JPanel {
         return panel;
     }
 
+    /**
+     * Creates the type-ahead dropdown under the search field.
+     * <p>
+     * Suggestions are refreshed on every keystroke from the product search index, which
+     * matches partial words ("ultra", "chuck") and small typos. Up/Down choose a
+     * suggestion, Enter or a click adds it to the cart, and Escape closes the list.
+     * The popup never takes the focus, so the cashier keeps typing.
+     * </p>
+     */
+    private void createSuggestionPopup() {
+        suggestionList = new JList<>();
+        suggestionList.setFont(new Font("Inter", Font.PLAIN, 14));
+        suggestionList.setSelectionMode(ListSelectionModel.SINGLE_SELECTION);
+        suggestionList.setFocusable(false);
+        suggestionList.setCellRenderer(new DefaultListCellRenderer() {
+            @Override
+            public Component getListCellRendererComponent(JList<?> list, Object value, int index, boolean isSelected, boolean cellHasFocus) {
+                Product p = (Product) value;
+                String text = p.getName() + "  -  " + Money.format(Money.of(p.getPrice())) + "  (Stock: " + p.getStock() + ")";
+                return super.getListCellRendererComponent(list, text, index, isSelected, cellHasFocus);
+            }
+        });
+        suggestionList.addMouseListener(new java.awt.event.MouseAdapter() {
+            @Override
+            public void mouseClicked(java.awt.event.MouseEvent e) {
+                int index = suggestionList.locationToIndex(e.getPoint());
+                if (index >= 0) addSuggestionToCart(suggestionList.getModel().getElementAt(index));
+            }
+        });
+
+        suggestionPopup = new JPopupMenu();
+        suggestionPopup.setFocusable(false);
+        suggestionPopup.add(new JScrollPane(suggestionList));
+
+        searchField.getDocument().addDocumentListener(new javax.swing.event.DocumentListener() {
+            public void insertUpdate(javax.swing.event.DocumentEvent e) { updateSuggestions(); }
+            public void removeUpdate(javax.swing.event.DocumentEvent e) { updateSuggestions(); }
+            public void changedUpdate(javax.swing.event.DocumentEvent e) { updateSuggestions(); }
+        });
+
+        InputMap keys = searchField.getInputMap(JComponent.WHEN_FOCUSED);
+        ActionMap actions = searchField.getActionMap();
+        keys.put(KeyStroke.getKeyStroke("DOWN"), "nextSuggestion");
+        keys.put(KeyStroke.getKeyStroke("UP"), "previousSuggestion");
+        keys.put(KeyStroke.getKeyStroke("ESCAPE"), "closeSuggestions");
+        actions.put("nextSuggestion", new AbstractAction() {
+            public void actionPerformed(java.awt.event.ActionEvent e) { moveSuggestion(1); }
+        });
+        actions.put("previousSuggestion", new AbstractAction() {
+            public void actionPerformed(java.awt.event.ActionEvent e) { moveSuggestion(-1); }
+        });
+        actions.put("closeSuggestions", new AbstractAction() {
+            public void actionPerformed(java.awt.event.ActionEvent e) { suggestionPopup.setVisible(false); }
+        });
+    }
+
+    /**
+     * Refreshes the dropdown with the best matches for the text typed so far.
+     */
+    private void updateSuggestions() {
+        String query = searchField.getText();
+        List<Product> matches = (query.isBlank() || scanListener.isScanning() || query.equals(SEARCH_PLACEHOLDER))
+                ? List.of() : system.searchProducts(query, MAX_SUGGESTIONS);
+        if (matches.isEmpty()) {
+            suggestionPopup.setVisible(false);
+            return;
+        }
+
+        suggestionList.setListData(matches.toArray(new Product[0]));
+        suggestionList.setSelectedIndex(0);
+        suggestionList.setVisibleRowCount(matches.size());
+        if (searchField.isShowing()) {
+            suggestionPopup.setPopupSize(searchField.getWidth(), suggestionList.getPreferredScrollableViewportSize().height + 6);
+            suggestionPopup.show(searchField, 0, searchField.getHeight());
+            searchField.requestFocusInWindow();
+        }
+    }
+
+    private void moveSuggestion(int step) {
+        int size = suggestionList.getModel().getSize();
+        if (!suggestionPopup.isVisible() || size == 0) return;
+        int index = Math.floorMod(suggestionList.getSelectedIndex() + step, size);
+        suggestionList.setSelectedIndex(index);
+        suggestionList.ensureIndexIsVisible(index);
+    }
+
+    /**
+     * Adds a product chosen from the dropdown and clears the search for the next one.
+     */
+    private void addSuggestionToCart(Product p) {
+        suggestionPopup.setVisible(false);
+        addProductToCart(p, 1);
+        searchField.setText("");
+    }
+
     /**
      * Creates the center panel that displays the product catalog grid.
-     * @return A JPanel containing a scrollable grid of products.
+     * @return A JPanel containing a scrollable, virtualized grid of products.
      */
     private JPanel createCatalogPanel() {
         JPanel mainPanel = new JPanel(new BorderLayout());
         mainPanel.setBackground(Color.WHITE);
         
-        // Grid layout for product cards
-        catalogPanel = new JPanel(new GridLayout(0, 3, 10, 10)); // 3 columns
-        catalogPanel.setBackground(Color.WHITE);
+        // Virtualized grid of product cards: only the visible ones are painted
+        catalogList = new ProductCatalogList(THUMBNAILS, p -> addProductToCart(p, 1));
+        facetChips = new FacetChipBar(system, true, result -> catalogList.setProducts(result.getProducts()));
         
-        JScrollPane scrollPane = new JScrollPane(catalogPanel);
+        JScrollPane scrollPane = new JScrollPane(catalogList);
         scrollPane.setVerticalScrollBarPolicy(JScrollPane.VERTICAL_SCROLLBAR_AS_NEEDED);
         scrollPane.setHorizontalScrollBarPolicy(JScrollPane.HORIZONTAL_SCROLLBAR_NEVER);
         scrollPane.getVerticalScrollBar().setUnitIncrement(25);
         scrollPane.setBorder(null); // Clean look
         
+        mainPanel.add(facetChips, BorderLayout.NORTH);
         mainPanel.add(scrollPane, BorderLayout.CENTER);
         return mainPanel;
     }
     
     /**
-     * Loads products from the system inventory into the catalog panel.
+     * Loads products from the system inventory into the catalog grid.
+     * <p>
+     * The grid is a {@link ProductCatalogList}: it keeps only references to the
+     * in-stock products that pass the filter chips, and paints just the tiles in view,
+     * with images from the {@link ThumbnailCache} filled in as they finish loading.
+     * The products come from the {@link possportstore.FacetIndex}, which also counts
+     * the products behind every chip.
+     * </p>
      * <p>
-     * Clears existing components and recreates buttons for each product.
-     * NOW INCLUDES IMAGE LOADING based on Product ID.
-     * <b>Images are scaled larger (110px) and text is smaller (10px).</b>
+     * This full load only runs when the view is shown. Afterwards the
+     * {@link InventoryModel} reports each changed product and only its tile is
+     * repainted, added or removed, so a sale costs as much as its cart lines, not the catalog.
      * </p>
      */
     private void loadProductsIntoCatalog() {
-        catalogPanel.removeAll();
-        for (Product p : system.getProducts()) {
-            if (p != null && p.getStock() > 0) {
-                // 1. Text Configuration (HTML) - Smaller fonts
-                String buttonText = "<html><div style='text-align:center;'>" 
-                        + "<b style='font-size:10px;'>" + p.getName() + "</b><br>" // Name size 10px
-                        + String.format("<span style='font-size:10px;'>₡%.2f</span><br>"
-                        + "<span style='color:gray; font-size:9px;'>Stock: %d</span>", p.getPrice(), p.getStock())
-                        + "</div></html>";
-                
-                JButton productButton = new JButton(buttonText);
-                
-                // --- Image Logic ---
-                // Looks for ID.png in 'images' folder
-                String imagePath = "images/" + p.getIdProduct() + ".png";
-                java.io.File imgFile = new java.io.File(imagePath);
-
-                if (imgFile.exists()) {
-                    ImageIcon originalIcon = new ImageIcon(imagePath);
-                    // Larger Image Scale (110x110)
-                    Image scaledImg = originalIcon.getImage().getScaledInstance(110, 110, Image.SCALE_SMOOTH);
-                    productButton.setIcon(new ImageIcon(scaledImg));
-                    
-                    productButton.setHorizontalTextPosition(SwingConstants.CENTER);
-                    productButton.setVerticalTextPosition(SwingConstants.BOTTOM);
-                } 
-
-                // Button Visual Adjustments
-                // Increased height to 180 to fit larger image
-                productButton.setPreferredSize(new Dimension(160, 180)); 
-                productButton.setBackground(Color.WHITE);
-                productButton.setFont(new Font("Inter", Font.PLAIN, 12));
-                productButton.setFocusPainted(false);
-                // Soft border
-                productButton.setBorder(BorderFactory.createCompoundBorder(
-                    BorderFactory.createLineBorder(new Color(230, 230, 230), 1),
-                    BorderFactory.createEmptyBorder(5, 5, 5, 5)
-                ));
-                
-                // Action
-                productButton.addActionListener(e -> addProductToCart(p, 1));
-                
-                catalogPanel.add(productButton);
+        facetChips.refresh();
+    }
+
+    /**
+     * Marks the tile of a product for updating, from any thread. Products changed
+     * before the EDT gets to them are updated together by {@link #flushCatalogTiles()}.
+     * @param productId The changed product's ID.
+     */
+    private void queueCatalogTile(String productId) {
+        synchronized (pendingTiles) {
+            pendingTiles.add(productId);
+            if (tilesFlushScheduled) return;
+            tilesFlushScheduled = true;
+        }
+        SwingUtilities.invokeLater(this::flushCatalogTiles);
+    }
+
+    /**
+     * Brings the tiles of the queued products up to date: repaints them, removes those
+     * deleted, out of stock or no longer passing the filters, and adds back those restocked.
+     * Removals and additions are applied once for the whole batch.
+     */
+    private void flushCatalogTiles() {
+        List<String> batch;
+        synchronized (pendingTiles) {
+            batch = new ArrayList<>(pendingTiles);
+            pendingTiles.clear();
+            tilesFlushScheduled = false;
+        }
+        Set<String> removed = new HashSet<>();
+        Set<Product> added = new HashSet<>();
+        for (String productId : batch) {
+            Product current = system.findProductById(productId);
+            Product shown = catalogList.getProduct(productId);
+            if (current == null || !facetChips.getQuery().matches(current)) {
+                if (shown != null) removed.add(productId);
+            } else if (shown == current) {
+                catalogList.productChanged(current);
+            } else {
+                if (shown != null) removed.add(productId); // Replaced by a new product with the same ID
+                added.add(current);
+            }
+        }
+        if (!removed.isEmpty()) catalogList.removeProducts(removed);
+        if (!added.isEmpty()) insertCatalogTiles(added);
+    }
+
+    /**
+     * Adds tiles for products that came back into stock or passed the filters, keeping
+     * catalog order. Only runs when products are restocked or added, never for a sale.
+     */
+    private void insertCatalogTiles(Set<Product> added) {
+        int position = 0;
+        for (Product other : system.getProducts()) {
+            if (added.contains(other)) {
+                catalogList.insertProduct(position++, other);
+            } else if (catalogList.containsProduct(other.getIdProduct())) {
+                position++;
             }
         }
-        catalogPanel.revalidate();
-        catalogPanel.repaint();
     }
 
     /**
@@ -247,11 +428,11 @@ public class SalesView extends JPanel {
         Font fontLabels = new Font("Inter", Font.PLAIN, 12);
         Font fontValues = new Font("Inter", Font.BOLD, 12);
 
-        subtotalLabel = new JLabel("₡0.00", SwingConstants.RIGHT);
-        discountLabel = new JLabel("-₡0.00", SwingConstants.RIGHT);
+        subtotalLabel = new JLabel(Money.format(0), SwingConstants.RIGHT);
+        discountLabel = new JLabel("-" + Money.format(0), SwingConstants.RIGHT);
         discountLabel.setForeground(COLOR_ACTION_CANCEL);
-        ivaLabel = new JLabel("₡0.00", SwingConstants.RIGHT);
-        finalTotalValueLabel = new JLabel("₡0.00", SwingConstants.RIGHT);
+        ivaLabel = new JLabel(Money.format(0), SwingConstants.RIGHT);
+        finalTotalValueLabel = new JLabel(Money.format(0), SwingConstants.RIGHT);
         
         // Apply fonts
         subtotalLabel.setFont(fontValues);
@@ -261,7 +442,7 @@ public class SalesView extends JPanel {
 
         addTotalRow(finalTotalsPanel, "Subtotal:", subtotalLabel, fontLabels);
         addTotalRow(finalTotalsPanel, "Desc. Global:", discountLabel, fontLabels);
-        addTotalRow(finalTotalsPanel, "IVA (13%):", ivaLabel, fontLabels);
+        addTotalRow(finalTotalsPanel, TaxCalculator.IVA.getLabel() + ":", ivaLabel, fontLabels);
         addTotalRow(finalTotalsPanel, "TOTAL:", finalTotalValueLabel, new Font("Inter", Font.BOLD, 16));
 
         southPanel.add(finalTotalsPanel, BorderLayout.NORTH);
@@ -274,7 +455,7 @@ public class SalesView extends JPanel {
         Font buttonFont = new Font("Inter", Font.BOLD, 14); // Smaller font for buttons
 
         // PAY Button
-        JButton payButton = createActionButton("Pagar", COLOR_ACTION_PAY, Color.WHITE, buttonFont);
+        payButton = createActionButton("Pagar", COLOR_ACTION_PAY, Color.WHITE, buttonFont);
         payButton.addActionListener(e -> finalizeSale());
 
         // DISCOUNT Button
@@ -330,7 +511,7 @@ public class SalesView extends JPanel {
      * </p>
      */
     private void openDiscountDialog() {
-        if (currentSale.getItems().length == 0) {
+        if (currentSale.getItemCount() == 0) {
             JOptionPane.showMessageDialog(this, "El carrito está vacío.", "Aviso", JOptionPane.WARNING_MESSAGE);
             return;
         }
@@ -344,67 +525,110 @@ public class SalesView extends JPanel {
     }
     
     /**
-     * Callback method to refresh the cart table after external changes (like discounts).
+     * Rebuilds the whole cart table, e.g. after the cart is cleared.
      */
     public void updateCartDisplay() {
         cartTableModel.setRowCount(0);
         for (CartItem item : currentSale.getItems()) {
-            String discountStr = (item.getDiscountPercent() > 0) ? String.format("-%.0f%%", item.getDiscountPercent()*100) : "-";
-            cartTableModel.addRow(new Object[]{
-                item.getProduct().getName(),
-                item.getQuantity(),
-                discountStr,
-                String.format("₡%.2f", item.getItemSubtotal())
-            });
+            cartTableModel.addRow(cartRow(item));
         }
         updateTotalsDisplay();
     }
 
+    /**
+     * Callback to refresh one cart row and the totals after external changes (like discounts).
+     * Only the row's cells are replaced, so the cost does not grow with the cart.
+     * @param index The row of the changed line, or -1 if only the totals changed.
+     */
+    public void updateCartRow(int index) {
+        CartItem item = currentSale.getItem(index);
+        if (item != null) {
+            Object[] row = cartRow(item);
+            for (int column = 0; column < row.length; column++) {
+                cartTableModel.setValueAt(row[column], index, column);
+            }
+        }
+        updateTotalsDisplay();
+    }
+
+    /**
+     * Formats a cart line as the cells of its table row.
+     */
+    private static Object[] cartRow(CartItem item) {
+        String discountStr = (item.getDiscountPercent() > 0) ? String.format("-%.0f%%", item.getDiscountPercent()*100) : "-";
+        return new Object[]{
+            item.getProduct().getName(),
+            item.getQuantity(),
+            discountStr,
+            Money.format(item.getItemSubtotalCents())
+        };
+    }
+
     /**
      * Updates the text labels for Subtotal, Discount, VAT, and Total.
      */
     private void updateTotalsDisplay() {
-        double subtotalNet = currentSale.getCurrentTotal(); // Net subtotal (after discounts)
+        long subtotalNet = currentSale.getCurrentTotalCents(); // Net subtotal (after discounts)
         
-        // Calculate Gross Total (List Price)
-        double grossTotal = 0;
-        for(CartItem i : currentSale.getItems()) {
-            grossTotal += i.getProduct().getPrice() * i.getQuantity();
-        }
+        // Gross Total (List Price), kept running by the cart
+        long grossTotal = currentSale.getListTotalCents();
         
-        double discountAmount = grossTotal - subtotalNet;
-        double iva = subtotalNet * 0.13;
-        double finalTotal = subtotalNet + iva;
+        long discountAmount = grossTotal - subtotalNet;
+        long iva = TaxCalculator.IVA.taxOf(subtotalNet);
+        long finalTotal = subtotalNet + iva;
 
         // Update Top Labels
-        totalLabel.setText(String.format("TOTAL: ₡%.2f", finalTotal));
-        itemsCountLabel.setText("Artículos: " + currentSale.getItems().length);
+        totalLabel.setText("TOTAL: " + Money.format(finalTotal));
+        itemsCountLabel.setText("Artículos: " + currentSale.getItemCount());
         
         // Update Detailed Labels
-        subtotalLabel.setText(String.format("₡%.2f", grossTotal)); 
-        discountLabel.setText(String.format("-₡%.2f", discountAmount)); 
-        ivaLabel.setText(String.format("₡%.2f", iva));
-        finalTotalValueLabel.setText(String.format("₡%.2f", finalTotal));
+        subtotalLabel.setText(Money.format(grossTotal)); 
+        discountLabel.setText("-" + Money.format(discountAmount)); 
+        ivaLabel.setText(Money.format(iva));
+        finalTotalValueLabel.setText(Money.format(finalTotal));
     }
 
     /**
      * Searches for a product by ID or Name and adds it to the cart if found.
+     * Without an exact match, the suggestions for the query are offered instead.
      * @param search The search query string.
      */
     private void searchAndAddToCart(String search) {
         Product p = system.searchProduct(search);
         if (p != null) {
             addProductToCart(p, 1);
+        } else if (!system.searchProducts(search, 1).isEmpty()) {
+            updateSuggestions();
         } else {
             JOptionPane.showMessageDialog(this, "Producto no encontrado.", "Error", JOptionPane.ERROR_MESSAGE);
         }
     }
 
+    /**
+     * Adds the product of a scanned barcode to the cart.
+     * <p>
+     * Goes straight to the {@link possportstore.BarcodeIndex}: no text search and no
+     * suggestions, so a scan costs a hash lookup and one cart update. Product IDs
+     * printed as barcodes on older labels are still found.
+     * </p>
+     * @param code The scanned digits.
+     */
+    private void addScannedProduct(String code) {
+        Product p = system.findProductByBarcode(code);
+        if (p == null) p = system.findProductById(code);
+        if (p != null) {
+            addProductToCart(p, 1);
+        } else {
+            Toolkit.getDefaultToolkit().beep();
+            JOptionPane.showMessageDialog(this, "Código de barras no registrado: " + code, "Error", JOptionPane.ERROR_MESSAGE);
+        }
+    }
+
     /**
      * Adds a specific product to the shopping cart.
      * <p>
      * Checks inventory levels before adding. If sufficient stock exists,
-     * the item is added and the catalog is refreshed (to update stock display).
+     * the item is added. Stock is only taken at checkout, so the catalog does not change.
      * </p>
      * @param p        The product to add.
      * @param quantity The quantity to add.
@@ -415,8 +639,14 @@ public class SalesView extends JPanel {
             return;
         }
         currentSale.addItem(p, quantity);
-        updateCartDisplay();
-        loadProductsIntoCatalog();
+
+        int row = currentSale.indexOf(p.getIdProduct());
+        if (row == cartTableModel.getRowCount()) {
+            cartTableModel.addRow(cartRow(currentSale.getItem(row))); // New line, always last
+            updateTotalsDisplay();
+        } else {
+            updateCartRow(row);
+        }
     }
 
     /**
@@ -426,46 +656,76 @@ public class SalesView extends JPanel {
         int selectedRow = cartTable.getSelectedRow();
         if (selectedRow == -1) return;
         
-        CartItem itemToRemove = currentSale.getItems()[selectedRow];
+        CartItem itemToRemove = currentSale.getItem(selectedRow);
+        if (itemToRemove == null) return;
         currentSale.removeItem(itemToRemove.getProduct());
-        updateCartDisplay();
-        loadProductsIntoCatalog();
+
+        if (currentSale.indexOf(itemToRemove.getProduct().getIdProduct()) == -1) {
+            cartTableModel.removeRow(selectedRow);
+            updateTotalsDisplay();
+        } else {
+            updateCartRow(selectedRow);
+        }
     }
 
    /**
      * Finalizes the sale and opens the touch-friendly print dialog.
+     * <p>
+     * The stock is reserved at once and the invoice is queued for the background
+     * writer, so the screen never waits on the disk. The print dialog opens when the
+     * invoice is acknowledged as durable; until then the pay button is disabled.
+     * </p>
      */
     private void finalizeSale() {
-        if (currentSale.getItems().length == 0) {
+        if (currentSale.getItemCount() == 0) {
             JOptionPane.showMessageDialog(this, "Carrito vacío.", "Error", JOptionPane.ERROR_MESSAGE);
             return;
         }
         
-        possportstore.Sale.Invoice finalInvoice = system.finalizeSale(currentSale);
+        java.util.concurrent.CompletableFuture<possportstore.Sale.Invoice> durable;
+        try {
+            durable = system.getService().submitSale(currentSale);
+        } catch (IllegalArgumentException ex) {
+            // Another register sold the last units; nothing was taken from stock
+            JOptionPane.showMessageDialog(this, "Stock insuficiente: " + ex.getMessage(), "Error", JOptionPane.ERROR_MESSAGE);
+            return;
+        }
         
-        if (finalInvoice != null) {
+        payButton.setEnabled(false);
+        durable.whenComplete((finalInvoice, error) -> SwingUtilities.invokeLater(() -> {
+            payButton.setEnabled(true);
+            if (error != null) {
+                Throwable cause = (error.getCause() != null) ? error.getCause() : error;
+                if (cause instanceof IllegalArgumentException) {
+                    // Checked after a snapshot released the stock; nothing was taken from it
+                    JOptionPane.showMessageDialog(this, "Stock insuficiente: " + cause.getMessage(), "Error", JOptionPane.ERROR_MESSAGE);
+                    return;
+                }
+                // The invoice could not be saved; the sale was rolled back and the cart is kept
+                JOptionPane.showMessageDialog(this, "No se pudo registrar la venta. Intente de nuevo.", "Error", JOptionPane.ERROR_MESSAGE);
+                return;
+            }
+            
             // OPEN THE NEW TOUCH DIALOG instead of JOptionPane
             JFrame parentFrame = (JFrame) SwingUtilities.getWindowAncestor(this);
             PrintOptionDialog printDialog = new PrintOptionDialog(parentFrame, finalInvoice);
             printDialog.setVisible(true);
 
-            // Cleanup after dialog closes
+            // Cleanup after dialog closes; the catalog already follows the stock change
             currentSale.clear();
             updateCartDisplay();
-            loadProductsIntoCatalog();
-        }
+        }));
     }
 
     /**
      * Cancels the current transaction and clears the cart after confirmation.
      */
     private void cancelSale() {
-        if (currentSale.getItems().length > 0) {
+        if (currentSale.getItemCount() > 0) {
             int confirm = JOptionPane.showConfirmDialog(this, "¿Cancelar venta?", "Confirmar", JOptionPane.YES_NO_OPTION);
             if (confirm == JOptionPane.YES_OPTION) {
                 currentSale.clear();
                 updateCartDisplay();
-                loadProductsIntoCatalog();
             }
         }
     }
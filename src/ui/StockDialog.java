@@ -16,6 +16,7 @@ public class StockDialog extends JDialog {
     private final ProductsView parentView;
     private final Product product;
     private JTextField stockField;
+    private JButton saveButton;
     
     private static final Dimension ACTION_BUTTON_SIZE = new Dimension(120, 35); 
 
@@ -51,7 +52,7 @@ public class StockDialog extends JDialog {
     private JPanel createButtonPanel() {
         JPanel panel = new JPanel(new FlowLayout(FlowLayout.RIGHT));
         
-        JButton saveButton = new JButton("Guardar");
+        saveButton = new JButton("Guardar");
         saveButton.setFont(new Font("Inter", Font.BOLD, 14));
         saveButton.setBackground(MainFrame.COLOR_PRIMARY_BLUE);
         saveButton.setForeground(Color.WHITE);
@@ -86,15 +87,19 @@ public class StockDialog extends JDialog {
                 return;
             }
 
-            boolean success = system.updateProductStock(product.getIdProduct(), newStock);
-            
-            if (success) {
-                JOptionPane.showMessageDialog(this, "Stock de '" + product.getName() + "' actualizado a " + newStock + ".", "Éxito", JOptionPane.INFORMATION_MESSAGE);
-                parentView.refreshView(); 
-                dispose();
-            } else {
-                JOptionPane.showMessageDialog(this, "Error: No se pudo actualizar el stock.", "Error Interno", JOptionPane.ERROR_MESSAGE);
-            }
+            // Saved in the background; the dialog stays responsive until the write completes
+            saveButton.setEnabled(false);
+            system.getService().updateProductStock(product.getIdProduct(), newStock)
+                  .whenComplete((success, error) -> SwingUtilities.invokeLater(() -> {
+                      saveButton.setEnabled(true);
+                      if (error == null && success) {
+                          JOptionPane.showMessageDialog(this, "Stock de '" + product.getName() + "' actualizado a " + newStock + ".", "Éxito", JOptionPane.INFORMATION_MESSAGE);
+                          parentView.refreshView(); 
+                          dispose();
+                      } else {
+                          JOptionPane.showMessageDialog(this, "Error: No se pudo actualizar el stock.", "Error Interno", JOptionPane.ERROR_MESSAGE);
+                      }
+                  }));
             
         } catch (NumberFormatException e) {
             JOptionPane.showMessageDialog(this, "Por favor, introduce un número entero válido para el stock.", "Error de Formato", JOptionPane.ERROR_MESSAGE);
@@ -0,0 +1,239 @@
+package ui;
+
+import javax.imageio.ImageIO;
+import javax.imageio.ImageReadParam;
+import javax.imageio.ImageReader;
+import javax.imageio.stream.ImageInputStream;
+import javax.swing.ImageIcon;
+import javax.swing.SwingUtilities;
+import java.awt.Graphics2D;
+import java.awt.RenderingHints;
+import java.awt.image.BufferedImage;
+import java.io.File;
+import java.io.IOException;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Product thumbnails for the sales catalog, decoded in the background and kept in memory.
+ * <p>
+ * Product images ({@code images/<id>.png}) can be several megabytes each. Decoding and
+ * scaling them on the Event Dispatch Thread froze the catalog, so {@link #get} returns a
+ * thumbnail only if it is already in memory; otherwise it schedules the work on a small
+ * background pool, once per product however often the tile is painted meanwhile, and
+ * tells its {@link Listener listeners} on the EDT when the thumbnail is ready.
+ * </p>
+ * <p>
+ * Large images are subsampled while they are decoded, so a full-size bitmap never has
+ * to be built. Finished thumbnails are kept in an LRU bounded by their pixel memory,
+ * and also written to a disk cache that is reused as long as it is newer than its image.
+ * Products without an image are remembered too, so their file is not looked up again.
+ * </p>
+ */
+public class ThumbnailCache {
+
+    /**
+     * Receives notice of thumbnails that finished loading.
+     */
+    @FunctionalInterface
+    public interface Listener {
+        /**
+         * Called on the EDT after a product's thumbnail was loaded into memory.
+         * @param productId The product ID; {@link #get} now returns its thumbnail.
+         */
+        void thumbnailLoaded(String productId);
+    }
+
+    private static final int POOL_SIZE = Math.max(1, Math.min(4, Runtime.getRuntime().availableProcessors() - 1));
+    private static final ImageIcon NO_IMAGE = new ImageIcon();
+
+    private final File imageDirectory;
+    private final File diskCacheDirectory;
+    private final int size;
+    private final long maxBytes;
+
+    private final LinkedHashMap<String, ImageIcon> memory = new LinkedHashMap<>(64, 0.75f, true);
+    private final Set<String> loading = new HashSet<>();
+    private final List<Listener> listeners = new CopyOnWriteArrayList<>();
+    private long usedBytes;
+
+    private final ExecutorService pool = Executors.newFixedThreadPool(POOL_SIZE, new ThreadFactory() {
+        private final AtomicInteger count = new AtomicInteger();
+
+        @Override
+        public Thread newThread(Runnable r) {
+            Thread t = new Thread(r, "thumbnail-" + count.incrementAndGet());
+            t.setDaemon(true);
+            t.setPriority(Thread.MIN_PRIORITY);
+            return t;
+        }
+    });
+
+    /**
+     * Creates a thumbnail cache.
+     *
+     * @param imageDirectory     Directory holding the product images, named {@code <id>.png}.
+     * @param diskCacheDirectory Directory for scaled thumbnails, or null to keep them in memory only.
+     * @param size               Width and height of a thumbnail, in pixels.
+     * @param maxBytes           Memory budget for the thumbnails held in memory.
+     */
+    public ThumbnailCache(File imageDirectory, File diskCacheDirectory, int size, long maxBytes) {
+        this.imageDirectory = imageDirectory;
+        this.diskCacheDirectory = diskCacheDirectory;
+        this.size = size;
+        this.maxBytes = maxBytes;
+    }
+
+    /**
+     * Gets the thumbnail of a product if it is in memory, and loads it in the background otherwise.
+     * <p>
+     * Listeners are told when a load finishes, unless the product has no image. A
+     * product already loading is not queued again.
+     * </p>
+     *
+     * @param productId The product ID.
+     * @return The thumbnail, or null if the product has no image or it is still loading.
+     */
+    public ImageIcon get(String productId) {
+        synchronized (this) {
+            ImageIcon icon = memory.get(productId);
+            if (icon != null) return (icon == NO_IMAGE) ? null : icon;
+            if (!loading.add(productId)) return null;
+        }
+        pool.execute(() -> load(productId));
+        return null;
+    }
+
+    /**
+     * Registers a listener for finished thumbnails.
+     * @param listener The listener.
+     */
+    public void addListener(Listener listener) { listeners.add(listener); }
+
+    /**
+     * Unregisters a thumbnail listener.
+     * @param listener The listener.
+     */
+    public void removeListener(Listener listener) { listeners.remove(listener); }
+
+    /**
+     * Forgets the thumbnail of a product, e.g. after its image was replaced.
+     * @param productId The product ID.
+     */
+    public synchronized void invalidate(String productId) {
+        ImageIcon icon = memory.remove(productId);
+        if (icon != null) usedBytes -= bytesOf(icon);
+    }
+
+    // --- Internals ---
+
+    /**
+     * Loads one thumbnail on a pool thread and tells the listeners it is ready.
+     */
+    private void load(String productId) {
+        ImageIcon icon = NO_IMAGE;
+        try {
+            BufferedImage thumbnail = readThumbnail(productId);
+            if (thumbnail != null) icon = new ImageIcon(thumbnail);
+        } catch (IOException | RuntimeException e) {
+            System.err.println("ERROR loading image of product " + productId + ": " + e.getMessage());
+        }
+
+        synchronized (this) {
+            loading.remove(productId);
+            put(productId, icon);
+        }
+        if (icon != NO_IMAGE) {
+            SwingUtilities.invokeLater(() -> {
+                for (Listener listener : listeners) {
+                    listener.thumbnailLoaded(productId);
+                }
+            });
+        }
+    }
+
+    private BufferedImage readThumbnail(String productId) throws IOException {
+        File source = new File(imageDirectory, productId + ".png");
+        if (!source.isFile()) return null;
+
+        File cached = (diskCacheDirectory != null) ? new File(diskCacheDirectory, productId + ".png") : null;
+        if (cached != null && cached.lastModified() > source.lastModified()) {
+            BufferedImage image = ImageIO.read(cached);
+            if (image != null && image.getWidth() == size && image.getHeight() == size) return image;
+        }
+
+        BufferedImage thumbnail = scale(decodeSubsampled(source));
+        if (thumbnail != null && cached != null) {
+            try {
+                diskCacheDirectory.mkdirs();
+                ImageIO.write(thumbnail, "png", cached);
+            } catch (IOException e) {
+                System.err.println("ERROR caching thumbnail of product " + productId + ": " + e.getMessage());
+            }
+        }
+        return thumbnail;
+    }
+
+    /**
+     * Decodes an image, skipping pixels so the result is no smaller than twice the thumbnail.
+     */
+    private BufferedImage decodeSubsampled(File file) throws IOException {
+        try (ImageInputStream in = ImageIO.createImageInputStream(file)) {
+            if (in == null) return null;
+            Iterator<ImageReader> readers = ImageIO.getImageReaders(in);
+            if (!readers.hasNext()) return null;
+
+            ImageReader reader = readers.next();
+            try {
+                reader.setInput(in, true, true);
+                int step = Math.max(1, Math.min(reader.getWidth(0), reader.getHeight(0)) / (size * 2));
+                ImageReadParam param = reader.getDefaultReadParam();
+                param.setSourceSubsampling(step, step, 0, 0);
+                return reader.read(0, param);
+            } finally {
+                reader.dispose();
+            }
+        }
+    }
+
+    private BufferedImage scale(BufferedImage image) {
+        if (image == null) return null;
+        BufferedImage thumbnail = new BufferedImage(size, size, BufferedImage.TYPE_INT_ARGB);
+        Graphics2D g = thumbnail.createGraphics();
+        try {
+            g.setRenderingHint(RenderingHints.KEY_INTERPOLATION, RenderingHints.VALUE_INTERPOLATION_BILINEAR);
+            g.setRenderingHint(RenderingHints.KEY_RENDERING, RenderingHints.VALUE_RENDER_QUALITY);
+            g.drawImage(image, 0, 0, size, size, null);
+        } finally {
+            g.dispose();
+        }
+        return thumbnail;
+    }
+
+    /**
+     * Adds a thumbnail to memory and evicts the least recently used ones over budget.
+     */
+    private void put(String productId, ImageIcon icon) {
+        ImageIcon previous = memory.put(productId, icon);
+        if (previous != null) usedBytes -= bytesOf(previous);
+        usedBytes += bytesOf(icon);
+
+        Iterator<ImageIcon> eldest = memory.values().iterator();
+        while (usedBytes > maxBytes && memory.size() > 1) {
+            usedBytes -= bytesOf(eldest.next());
+            eldest.remove();
+        }
+    }
+
+    private static long bytesOf(ImageIcon icon) {
+        return (icon == NO_IMAGE) ? 64 : (long) icon.getIconWidth() * icon.getIconHeight() * 4;
+    }
+}
@@ -0,0 +1,82 @@
+package possportstore;
+
+import java.util.HashSet;
+import java.util.Random;
+import java.util.Set;
+import possportstore.Accessories.TypeAccessories;
+
+/**
+ * Command-line benchmark of the scanner path at checkout.
+ * <p>
+ * Builds a {@link BarcodeIndex} of 100,000 products with random 13-digit barcodes and
+ * times, per scan of a random code: the lookup alone ({@link BarcodeIndex#parse} plus
+ * {@link BarcodeIndex#find}), and the whole scan-to-cart step, which also adds the
+ * product to a {@link CurrentSale} of 40 lines. For comparison it times the text
+ * search scanned codes used to go through, a case-insensitive scan of every product's
+ * ID and name.
+ * </p>
+ * <p>
+ * Usage: {@code java possportstore.BarcodeScanBenchmark [products]}. Nothing is written to disk.
+ * </p>
+ */
+public class BarcodeScanBenchmark {
+
+    private static final int CART_LINES = 40;
+
+    /**
+     * Runs the benchmark.
+     * @param args Optional product count; defaults to 100000.
+     */
+    public static void main(String[] args) {
+        int n = (args.length > 0) ? Integer.parseInt(args[0]) : 100_000;
+
+        Random random = new Random(42);
+        BarcodeIndex index = new BarcodeIndex();
+        Product[] products = new Product[n];
+        String[] codes = new String[n];
+        Set<Long> used = new HashSet<>();
+        for (int i = 0; i < n; i++) {
+            long code;
+            do {
+                code = 7_400_000_000_000L + (long) (random.nextDouble() * 99_999_999_999L);
+            } while (!used.add(code));
+            codes[i] = String.format("%013d", code);
+            products[i] = new Accessories(String.valueOf(i + 1), "Producto " + (i + 1), 9000, 50, "", "Puma", TypeAccessories.CAP);
+            products[i].setBarcode(BarcodeIndex.parse(codes[i]));
+            index.add(products[i]);
+        }
+
+        int[] order = new int[1024];
+        for (int i = 0; i < order.length; i++) order[i] = random.nextInt(n);
+        int mask = order.length - 1;
+        CurrentSale[] cart = {new CurrentSale(null)};
+
+        double lookup = Bench.nanosPerOp(1_000_000, i -> index.find(BarcodeIndex.parse(codes[order[i & mask]])).getStock());
+        double toCart = Bench.nanosPerOp(1_000_000, i -> {
+            if (i % CART_LINES == 0) cart[0] = new CurrentSale(null);
+            cart[0].addItem(index.find(BarcodeIndex.parse(codes[order[i & mask]])), 1);
+            return cart[0].getItemCount();
+        });
+        double textSearch = Bench.nanosPerOp(Math.max(20, 2_000_000 / n), i -> search(products, codes[order[i & mask]]));
+
+        System.out.printf("%d products%n", n);
+        System.out.printf("%-22s %10s %14s%n", "", "per scan", "scans/s");
+        print("barcode lookup", lookup);
+        print("scan to cart", toCart);
+        print("text search (before)", textSearch);
+    }
+
+    private static void print(String label, double nanos) {
+        System.out.printf("%-22s %10s %,14.0f%n", label, Bench.format(nanos), 1e9 / nanos);
+    }
+
+    /**
+     * The search scanned codes went through before the index, which finds nothing for a barcode.
+     */
+    private static long search(Product[] products, String text) {
+        for (Product p : products) {
+            if (p.getIdProduct().equalsIgnoreCase(text) || p.getName().equalsIgnoreCase(text)) return p.getStock();
+        }
+        return 0;
+    }
+}
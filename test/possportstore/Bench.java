@@ -0,0 +1,68 @@
+package possportstore;
+
+/**
+ * Timing loop shared by the command-line benchmarks, e.g. {@link CatalogBenchmark}.
+ * <p>
+ * The project has no benchmark harness, so each benchmark is a plain class with a
+ * {@code main()}. An operation is run a few rounds to let the JIT compile it, then
+ * timed over several more, and the best round is reported: the other rounds only add
+ * noise from the collector and the rest of the machine. Operations return a value,
+ * which is summed into a field so the JIT cannot drop the work being measured.
+ * Run with a fixed heap, e.g. {@code -Xms2g -Xmx2g}, so resizing does not skew the rounds.
+ * </p>
+ */
+final class Bench {
+
+    private static final int WARMUP_ROUNDS = 3;
+    private static final int ROUNDS = 5;
+
+    /**
+     * One benchmarked operation.
+     */
+    @FunctionalInterface
+    interface Op {
+        /**
+         * Runs the operation once.
+         * @param i The number of the run within the round, e.g. to pick a key.
+         * @return Any value derived from the result.
+         */
+        long run(int i);
+    }
+
+    static volatile long sink;
+
+    private Bench() {}
+
+    /**
+     * Times an operation.
+     * @param ops Number of runs per round.
+     * @param op  The operation.
+     * @return The best round's time per run, in nanoseconds.
+     */
+    static double nanosPerOp(int ops, Op op) {
+        for (int r = 0; r < WARMUP_ROUNDS; r++) round(ops, op);
+        double best = Double.MAX_VALUE;
+        for (int r = 0; r < ROUNDS; r++) best = Math.min(best, round(ops, op));
+        return best;
+    }
+
+    /**
+     * Formats a time per operation with a fitting unit.
+     * @param nanos The time in nanoseconds.
+     * @return The time, e.g. {@code "41 ns"} or {@code "2.3 ms"}.
+     */
+    static String format(double nanos) {
+        if (nanos < 1_000) return String.format("%.0f ns", nanos);
+        if (nanos < 1_000_000) return String.format("%.1f us", nanos / 1_000);
+        return String.format("%.1f ms", nanos / 1_000_000);
+    }
+
+    private static double round(int ops, Op op) {
+        long acc = 0;
+        long start = System.nanoTime();
+        for (int i = 0; i < ops; i++) acc += op.run(i);
+        long elapsed = System.nanoTime() - start;
+        sink += acc;
+        return (double) elapsed / ops;
+    }
+}
@@ -0,0 +1,72 @@
+package possportstore;
+
+import java.util.Random;
+import possportstore.Shoe.TypeShoe;
+
+/**
+ * Command-line benchmark of product lookups in the {@link ProductCatalog}.
+ * <p>
+ * Times a lookup by ID and by name (ignoring case) at 100, 10,000 and 1,000,000
+ * products, in the catalog and in a plain array scanned from the start, which is how
+ * {@code StoreSystem} found products before the catalog. The catalog's times should stay
+ * flat as it grows, while the scan's grow with the number of products.
+ * </p>
+ * <p>
+ * Usage: {@code java -Xms2g -Xmx2g possportstore.CatalogBenchmark [sizes...]}.
+ * Nothing is written to disk.
+ * </p>
+ */
+public class CatalogBenchmark {
+
+    /**
+     * Runs the benchmark.
+     * @param args Optional catalog sizes; defaults to 100, 10000 and 1000000.
+     */
+    public static void main(String[] args) {
+        int[] sizes = (args.length > 0) ? new int[args.length] : new int[] {100, 10_000, 1_000_000};
+        for (int i = 0; i < args.length; i++) sizes[i] = Integer.parseInt(args[i]);
+
+        System.out.printf("%10s %14s %14s %14s %14s%n", "products", "catalog id", "scan id", "catalog name", "scan name");
+        for (int n : sizes) {
+            ProductCatalog catalog = new ProductCatalog();
+            Product[] array = new Product[n];
+            for (int i = 0; i < n; i++) {
+                array[i] = new Shoe(String.valueOf(i + 1), "Modelo " + (i + 1), 50000, 10, "", "42", "Negro", TypeShoe.RUNNING);
+                catalog.add(array[i]);
+            }
+
+            // Random keys, so the scan's average is half the catalog
+            Random random = new Random(42);
+            String[] ids = new String[1024];
+            String[] names = new String[ids.length];
+            for (int i = 0; i < ids.length; i++) {
+                int k = 1 + random.nextInt(n);
+                ids[i] = String.valueOf(k);
+                names[i] = "MODELO " + k;
+            }
+            int mask = ids.length - 1;
+            int scanOps = Math.max(20, 2_000_000 / n);
+
+            double catalogId = Bench.nanosPerOp(1_000_000, i -> catalog.findById(ids[i & mask]).getStock());
+            double scanId = Bench.nanosPerOp(scanOps, i -> scanById(array, ids[i & mask]).getStock());
+            double catalogName = Bench.nanosPerOp(1_000_000, i -> catalog.findByName(names[i & mask]).getStock());
+            double scanName = Bench.nanosPerOp(scanOps, i -> scanByName(array, names[i & mask]).getStock());
+            System.out.printf("%10d %14s %14s %14s %14s%n", n,
+                    Bench.format(catalogId), Bench.format(scanId), Bench.format(catalogName), Bench.format(scanName));
+        }
+    }
+
+    private static Product scanById(Product[] products, String id) {
+        for (Product p : products) {
+            if (p.getIdProduct().equals(id)) return p;
+        }
+        return null;
+    }
+
+    private static Product scanByName(Product[] products, String name) {
+        for (Product p : products) {
+            if (p.getName().equalsIgnoreCase(name)) return p;
+        }
+        return null;
+    }
+}
@@ -0,0 +1,149 @@
+package possportstore;
+
+import java.io.File;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+import possportstore.Shoe.TypeShoe;
+
+/**
+ * Command-line stress check of concurrent checkouts.
+ * <p>
+ * Several registers check out random multi-line carts against one {@link StoreSystem}
+ * at the same time, over a few products with little stock, so reservations race and
+ * many carts run short part-way through. Afterwards it checks that:
+ * </p>
+ * <ul>
+ *   <li>no stock went negative, at any point;</li>
+ *   <li>no invoice ID was handed out twice, and the log holds them in ID order;</li>
+ *   <li>every product's stock plus what was sold equals its starting stock, so a cart
+ *       that ran short put back what it had reserved;</li>
+ *   <li>the quantities in the written invoices equal what the registers were told was sold.</li>
+ * </ul>
+ * <p>
+ * Usage: {@code CheckoutStress [registers] [checkoutsPerRegister]}. It writes the
+ * store's data files to the working directory, so it refuses to run where the
+ * products file, its journal or the {@code invoices} directory already exists. The exit code is
+ * 0 if every check passed and 1 otherwise.
+ * </p>
+ */
+public class CheckoutStress {
+
+    private static final int PRODUCTS = 6;
+    private static final int START_STOCK = 200;
+
+    /**
+     * Runs the stress check.
+     * @param args Optional register count (default 8) and checkouts per register (default 200).
+     */
+    public static void main(String[] args) throws Exception {
+        int registers = (args.length > 0) ? Integer.parseInt(args[0]) : 8;
+        int checkouts = (args.length > 1) ? Integer.parseInt(args[1]) : 200;
+        if (new File("productos.txt").exists() || new File("productos.journal").exists() || new File("invoices").exists()) {
+            System.err.println("Run CheckoutStress from an empty directory; it writes the store's data files.");
+            System.exit(2);
+        }
+
+        StoreSystem system = new StoreSystem();
+        Product[] products = new Product[PRODUCTS];
+        for (int i = 0; i < PRODUCTS; i++) {
+            products[i] = new Shoe("STRESS-" + i, "Stress " + i, 1000 + i, START_STOCK, "", "42", "Negro", TypeShoe.RUNNING);
+            if (!system.addProduct(products[i])) {
+                System.err.println("Could not add product " + products[i].getIdProduct());
+                System.exit(2);
+            }
+        }
+        int firstId = Sale.getLastInvoiceId();
+        User cashier = new User(1, "stress", "stress", User.Role.ADMIN);
+
+        Set<Integer> ids = ConcurrentHashMap.newKeySet();
+        AtomicInteger duplicates = new AtomicInteger();
+        AtomicInteger negatives = new AtomicInteger();
+        AtomicInteger shortages = new AtomicInteger();
+        AtomicInteger failures = new AtomicInteger();
+        int[] sold = new int[PRODUCTS];
+
+        ExecutorService pool = Executors.newFixedThreadPool(registers);
+        List<Future<?>> done = new ArrayList<>();
+        long start = System.nanoTime();
+        for (int r = 0; r < registers; r++) {
+            done.add(pool.submit(() -> {
+                Random random = new Random();
+                for (int k = 0; k < checkouts; k++) {
+                    CurrentSale cart = new CurrentSale(cashier);
+                    int lines = 1 + random.nextInt(3);
+                    for (int l = 0; l < lines; l++) {
+                        cart.addItem(products[random.nextInt(PRODUCTS)], 1 + random.nextInt(3));
+                    }
+                    try {
+                        Sale.Invoice invoice = system.submitSale(cart).join();
+                        if (!ids.add(invoice.getId())) duplicates.incrementAndGet();
+                        synchronized (sold) {
+                            for (CurrentSale.CartItem item : cart.getItems()) {
+                                sold[indexOf(products, item.getProduct())] += item.getQuantity();
+                            }
+                        }
+                    } catch (IllegalArgumentException e) {
+                        shortages.incrementAndGet();
+                    } catch (CompletionException e) {
+                        if (e.getCause() instanceof IllegalArgumentException) {
+                            shortages.incrementAndGet();
+                        } else {
+                            failures.incrementAndGet();
+                        }
+                    }
+                    for (Product p : products) {
+                        if (p.getStock() < 0) negatives.incrementAndGet();
+                    }
+                }
+                return null;
+            }));
+        }
+        for (Future<?> f : done) f.get();
+        pool.shutdown();
+        long millis = (System.nanoTime() - start) / 1_000_000;
+
+        boolean ok = true;
+        if (duplicates.get() > 0) ok = fail(duplicates.get() + " duplicate invoice IDs");
+        if (negatives.get() > 0) ok = fail("stock seen negative " + negatives.get() + " times");
+        if (failures.get() > 0) ok = fail(failures.get() + " invoices could not be written");
+        for (int i = 0; i < PRODUCTS; i++) {
+            if (products[i].getStock() + sold[i] != START_STOCK) {
+                ok = fail(products[i].getIdProduct() + ": stock " + products[i].getStock() + " + sold " + sold[i] + " != " + START_STOCK);
+            }
+        }
+
+        int[] invoiced = new int[PRODUCTS];
+        int[] previous = {firstId};
+        int[] outOfOrder = {0};
+        Sale.forEachInvoice(invoice -> {
+            if (invoice.getId() <= firstId) return;
+            if (invoice.getId() <= previous[0]) outOfOrder[0]++;
+            previous[0] = invoice.getId();
+            for (Sale.InvoiceItem item : invoice.getItems()) {
+                if (item == null) continue;
+                for (int i = 0; i < PRODUCTS; i++) {
+                    if (products[i].getIdProduct().equals(item.productId)) invoiced[i] += item.quantity;
+                }
+            }
+        });
+        if (outOfOrder[0] > 0) ok = fail(outOfOrder[0] + " invoices out of ID order in the log");
+        if (!Arrays.equals(invoiced, sold)) ok = fail("invoiced " + Arrays.toString(invoiced) + " != sold " + Arrays.toString(sold));
+
+        System.out.println(registers + " registers, " + ids.size() + " checkouts, " + shortages.get()
+                + " short of stock, " + millis + " ms: " + (ok ? "OK" : "FAILED"));
+        System.exit(ok ? 0 : 1);
+    }
+
+    private static int indexOf(Product[] products, Product p) {
+        for (int i = 0; i < products.length; i++) {
+            if (products[i] == p) return i;
+        }
+        return -1;
+    }
+
+    private static boolean fail(String message) {
+        System.err.println("FAILED: " + message);
+        return false;
+    }
+}
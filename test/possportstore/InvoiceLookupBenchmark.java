@@ -0,0 +1,101 @@
+package possportstore;
+
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.time.LocalDate;
+import java.time.format.DateTimeFormatter;
+import java.util.Comparator;
+import java.util.Random;
+import java.util.stream.Stream;
+
+/**
+ * Command-line benchmark of finding an invoice by ID.
+ * <p>
+ * Builds an {@link InvoiceLog} of 1,000, 100,000 and 1,000,000 invoices spread over
+ * 50 daily segments in a temporary directory, then times {@link InvoiceLog#locate(int)}
+ * alone and followed by {@link InvoiceLog#readInvoiceLine} for random IDs, which is
+ * what a return or a reprint does. For comparison it times a scan of the same
+ * invoices held in an array, which is how {@code Sale.findInvoiceById} found them
+ * before the index. The log's times should stay flat as the history grows, while
+ * the scan's grows with it.
+ * </p>
+ * <p>
+ * Usage: {@code java -Xms2g -Xmx2g possportstore.InvoiceLookupBenchmark [sizes...]}.
+ * The temporary directory is deleted afterwards.
+ * </p>
+ */
+public class InvoiceLookupBenchmark {
+
+    private static final int SEGMENTS = 50;
+    private static final String LINE = "%d;55000.0;Fri Nov 28 00:58:26 CST 2025;admin;0.0;2:1:55000.0:Vans Old Skool:0.0";
+
+    /**
+     * Runs the benchmark.
+     * @param args Optional history sizes; defaults to 1000, 100000 and 1000000.
+     */
+    public static void main(String[] args) throws IOException {
+        int[] sizes = (args.length > 0) ? new int[args.length] : new int[] {1_000, 100_000, 1_000_000};
+        for (int i = 0; i < args.length; i++) sizes[i] = Integer.parseInt(args[i]);
+
+        System.out.printf("%10s %16s %16s %16s%n", "invoices", "locate", "locate + read", "array scan");
+        for (int n : sizes) {
+            File directory = Files.createTempDirectory("invoice-bench").toFile();
+            try {
+                writeSegments(directory, n);
+                InvoiceLog log = new InvoiceLog(directory, new File(directory, "none.txt"));
+                log.open();
+
+                Sale.Invoice sample = Sale.parseInvoice(String.format(LINE, 1));
+                Sale.Invoice[] array = new Sale.Invoice[n];
+                for (int i = 0; i < n; i++) {
+                    array[i] = new Sale.Invoice(i + 1, sample.totalCents, sample.date, sample.cashier, sample.globalDiscount, sample.items);
+                }
+
+                Random random = new Random(42);
+                int[] ids = new int[1024];
+                for (int i = 0; i < ids.length; i++) ids[i] = 1 + random.nextInt(n);
+                int mask = ids.length - 1;
+
+                double locate = Bench.nanosPerOp(1_000_000, i -> log.locate(ids[i & mask]).offset);
+                double read = Bench.nanosPerOp(100_000, i -> log.readInvoiceLine(log.locate(ids[i & mask])).length());
+                double scan = Bench.nanosPerOp(Math.max(20, 2_000_000 / n), i -> scan(array, ids[i & mask]).id);
+                System.out.printf("%10d %16s %16s %16s%n", n, Bench.format(locate), Bench.format(read), Bench.format(scan));
+            } finally {
+                delete(directory);
+            }
+        }
+    }
+
+    /**
+     * Writes the invoices as past daily segments, which the log seals and indexes when opened.
+     */
+    private static void writeSegments(File directory, int n) throws IOException {
+        LocalDate day = LocalDate.of(2000, 1, 1);
+        int perSegment = Math.max(1, n / SEGMENTS);
+        int id = 1;
+        while (id <= n) {
+            File segment = new File(directory, "invoices-" + DateTimeFormatter.ofPattern("yyyyMMdd").format(day) + ".log");
+            try (Writer writer = new BufferedWriter(new OutputStreamWriter(new FileOutputStream(segment), StandardCharsets.UTF_8))) {
+                for (int k = 0; k < perSegment && id <= n; k++, id++) {
+                    writer.write(String.format(LINE, id));
+                    writer.write('\n');
+                }
+            }
+            day = day.plusDays(1);
+        }
+    }
+
+    private static Sale.Invoice scan(Sale.Invoice[] invoices, int id) {
+        for (Sale.Invoice invoice : invoices) {
+            if (invoice.getId() == id) return invoice;
+        }
+        return null;
+    }
+
+    private static void delete(File directory) throws IOException {
+        try (Stream<java.nio.file.Path> paths = Files.walk(directory.toPath())) {
+            paths.sorted(Comparator.reverseOrder()).forEach(path -> path.toFile().delete());
+        }
+    }
+}
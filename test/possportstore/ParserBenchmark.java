@@ -0,0 +1,189 @@
+package possportstore;
+
+import java.io.*;
+import java.lang.management.ManagementFactory;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.Random;
+import java.util.Scanner;
+import possportstore.Sale.Invoice;
+import possportstore.Sale.InvoiceItem;
+
+/**
+ * Command-line benchmark of reading the data files at startup.
+ * <p>
+ * Generates an invoice file of 1,000,000 invoices and a products file of 100,000
+ * products in a temporary directory, then reads each one with the streaming
+ * {@link RecordReader} and {@link FieldCursor} the store uses, and with the
+ * {@code Scanner} plus {@code String.split} loop it used before. Reports the time per
+ * file and, where the JVM can measure it, the bytes allocated while reading.
+ * </p>
+ * <p>
+ * Usage: {@code java -Xms2g -Xmx2g possportstore.ParserBenchmark [invoices] [products]}.
+ * The temporary directory is deleted afterwards.
+ * </p>
+ */
+public class ParserBenchmark {
+
+    private static final String[] NAMES = {"Vans Old Skool", "Nike Air Max", "Adidas Ultraboost", "Gorra Puma", "Camiseta Dry"};
+
+    /**
+     * Runs the benchmark.
+     * @param args Optional invoice count (default 1000000) and product count (default 100000).
+     */
+    public static void main(String[] args) throws IOException {
+        int invoiceCount = (args.length > 0) ? Integer.parseInt(args[0]) : 1_000_000;
+        int productCount = (args.length > 1) ? Integer.parseInt(args[1]) : 100_000;
+
+        File directory = Files.createTempDirectory("parser-bench").toFile();
+        File invoices = new File(directory, "invoices.txt");
+        File products = new File(directory, "productos.txt");
+        try {
+            writeInvoices(invoices, invoiceCount);
+            writeProducts(products, productCount);
+
+            System.out.printf("%-28s %12s %16s%n", "file", "time", "allocated");
+            report(invoiceCount + " invoices, streaming", () -> readInvoices(invoices));
+            report(invoiceCount + " invoices, Scanner+split", () -> scanInvoices(invoices));
+            report(productCount + " products, streaming", () -> readProducts(products));
+            report(productCount + " products, Scanner+split", () -> scanProducts(products));
+        } finally {
+            invoices.delete();
+            products.delete();
+            directory.delete();
+        }
+    }
+
+    /**
+     * A whole-file read, returning a sum over the records read.
+     */
+    @FunctionalInterface
+    private interface FileRead {
+        long read() throws IOException;
+    }
+
+    private static void report(String label, FileRead read) {
+        Bench.Op op = i -> {
+            try {
+                return read.read();
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        };
+        System.gc(); // Do not charge this read for the garbage of the previous one
+        double nanos = Bench.nanosPerOp(1, op);
+        long before = allocatedBytes();
+        op.run(0);
+        long allocated = allocatedBytes() - before;
+        System.out.printf("%-28s %12s %16s%n", label, Bench.format(nanos),
+                (before < 0) ? "n/a" : String.format("%,d MB", allocated >> 20));
+    }
+
+    // --- Current readers ---
+
+    private static long readInvoices(File file) throws IOException {
+        long count = 0;
+        try (RecordReader reader = new RecordReader(file, StandardCharsets.UTF_8, true)) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                if (!line.isEmpty()) count += Sale.parseInvoice(line).items.length;
+            }
+        }
+        return count;
+    }
+
+    private static long readProducts(File file) throws IOException {
+        long count = 0;
+        try (RecordReader reader = new RecordReader(file, StandardCharsets.UTF_8, false)) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                count += StoreSystem.parseProduct(line).getStock();
+            }
+        }
+        return count;
+    }
+
+    // --- The readers used before, for comparison ---
+
+    private static long scanInvoices(File file) throws IOException {
+        long count = 0;
+        try (Scanner scanner = new Scanner(file, StandardCharsets.UTF_8)) {
+            while (scanner.hasNextLine()) {
+                String[] data = scanner.nextLine().split(";");
+                if (data.length < 6) continue;
+                String[] itemsRaw = data[5].split("\\|");
+                InvoiceItem[] items = new InvoiceItem[itemsRaw.length];
+                for (int i = 0; i < itemsRaw.length; i++) {
+                    String[] parts = itemsRaw[i].split(":");
+                    int quantity = Integer.parseInt(parts[1]);
+                    items[i] = new InvoiceItem(parts[0], parts[3], quantity,
+                            Money.times(Money.of(Double.parseDouble(parts[2])), quantity), Double.parseDouble(parts[4]));
+                }
+                Invoice invoice = new Invoice(Integer.parseInt(data[0]), Money.of(Double.parseDouble(data[1])), data[2], data[3], Double.parseDouble(data[4]), items);
+                count += invoice.items.length;
+            }
+        }
+        return count;
+    }
+
+    private static long scanProducts(File file) throws IOException {
+        long count = 0;
+        try (Scanner scanner = new Scanner(file, StandardCharsets.UTF_8)) {
+            while (scanner.hasNextLine()) {
+                String[] data = scanner.nextLine().split(";");
+                if (data.length < 7) continue;
+                double price = Double.parseDouble(data[4]);
+                int stock = Integer.parseInt(data[5]);
+                Product p = switch (data[0]) {
+                    case "Shoe" -> new Shoe(data[1], data[2], price, stock, data[3], data[6], data[7], Shoe.TypeShoe.valueOf(data[8]));
+                    case "Clothe" -> new Clothe(data[1], data[2], price, stock, data[3], data[6], data[7], Clothe.TypeClothe.valueOf(data[8]));
+                    default -> new Accessories(data[1], data[2], price, stock, data[3], data[6], Accessories.TypeAccessories.valueOf(data[7]));
+                };
+                count += p.getStock();
+            }
+        }
+        return count;
+    }
+
+    // --- Test data ---
+
+    private static void writeInvoices(File file, int count) throws IOException {
+        Random random = new Random(42);
+        try (Writer writer = new BufferedWriter(new OutputStreamWriter(new FileOutputStream(file), StandardCharsets.UTF_8))) {
+            for (int id = 1; id <= count; id++) {
+                StringBuilder line = new StringBuilder().append(id).append(';').append(1000 + random.nextInt(90000))
+                        .append(".0;Fri Nov 28 00:58:26 CST 2025;admin;0.0;");
+                int items = 1 + random.nextInt(4);
+                for (int i = 0; i < items; i++) {
+                    if (i > 0) line.append('|');
+                    line.append(1 + random.nextInt(500)).append(':').append(1 + random.nextInt(3)).append(':')
+                        .append(1000 + random.nextInt(50000)).append(".5:").append(NAMES[random.nextInt(NAMES.length)]).append(":0.1");
+                }
+                writer.write(line.append('\n').toString());
+            }
+        }
+    }
+
+    private static void writeProducts(File file, int count) throws IOException {
+        try (Writer writer = new BufferedWriter(new OutputStreamWriter(new FileOutputStream(file), StandardCharsets.UTF_8))) {
+            for (int id = 1; id <= count; id++) {
+                String line = switch (id % 3) {
+                    case 0 -> "Shoe;" + id + ";" + NAMES[id % NAMES.length] + " " + id + ";Tenis;55000.0;12;42;Negro;RUNNING";
+                    case 1 -> "Clothe;" + id + ";Camiseta " + id + ";Algodon;15000.0;30;M;Azul;SHIRT";
+                    default -> "Accessories;" + id + ";Gorra " + id + ";Ajustable;9000.0;8;Puma;CAP";
+                };
+                writer.write(line + "\n");
+            }
+        }
+    }
+
+    /**
+     * Gets the bytes this thread has allocated so far, or -1 if the JVM cannot tell.
+     */
+    private static long allocatedBytes() {
+        if (ManagementFactory.getThreadMXBean() instanceof com.sun.management.ThreadMXBean threads) {
+            return threads.getCurrentThreadAllocatedBytes();
+        }
+        return -1;
+    }
+}